@@ -0,0 +1,55 @@
+package com.example.graphql.benchmark;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.json.stream.JsonParser;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Recorded inputs under {@code src/jmh/resources/fixtures}, so the benchmarks never need a running cluster.
+ * Search responses are in the wire format the client reads ({@code typed_keys}, e.g. {@code sterms#country_counts}),
+ * and are decoded by the same deserializers the application uses.
+ */
+public final class Fixtures {
+
+    private static final JacksonJsonpMapper JSONP_MAPPER = new JacksonJsonpMapper();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private Fixtures() {}
+
+    public static SearchResponse<JsonData> searchResponse(String name) {
+        try (InputStream in = open(name); JsonParser parser = JSONP_MAPPER.jsonProvider().createParser(in)) {
+            return SearchResponse.createSearchResponseDeserializer(JsonData._DESERIALIZER).deserialize(parser, JSONP_MAPPER);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** The aggregations of a recorded response, wrapped the way {@code SearchHits#getAggregations()} hands them out. */
+    public static ElasticsearchAggregations aggregations(String name) {
+        return new ElasticsearchAggregations(searchResponse(name).aggregations());
+    }
+
+    /** A recorded GraphQL input object, e.g. the {@code filter} variable of a search. */
+    public static <T> T read(String name, Class<T> type) {
+        try (InputStream in = open(name)) {
+            return OBJECT_MAPPER.readValue(in, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static InputStream open(String name) {
+        InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name);
+        if (in == null) {
+            throw new IllegalArgumentException("No fixture named " + name);
+        }
+        return in;
+    }
+}
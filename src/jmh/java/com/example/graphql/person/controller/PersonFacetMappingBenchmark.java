@@ -0,0 +1,59 @@
+package com.example.graphql.person.controller;
+
+import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
+import com.example.graphql.benchmark.Fixtures;
+import com.example.graphql.person.service.PersonService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/** Mapping parsed facet counts and stats onto the GraphQL response types. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PersonFacetMappingBenchmark {
+
+    @Param({"person-search-facets.json", "person-search-facets-10k-buckets.json"})
+    String fixture;
+
+    private Map<String, Long> countryCounts;
+    private PersonService.NumericStats salaryStats;
+
+    @Setup
+    public void load() {
+        ElasticsearchAggregations aggregations = Fixtures.aggregations(fixture);
+        ElasticsearchAggregation addresses = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get("address_aggs");
+        ElasticsearchAggregation salary = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get("salary_stats");
+
+        countryCounts = new HashMap<>();
+        for (StringTermsBucket bucket : addresses.aggregation().getAggregate().nested()
+                .aggregations().get("country_counts").sterms().buckets().array()) {
+            countryCounts.put(bucket.key().stringValue(), bucket.docCount());
+        }
+        StatsAggregate stats = salary.aggregation().getAggregate().stats();
+        salaryStats = new PersonService.NumericStats(stats.min(), stats.max(), stats.avg(), stats.sum(), stats.count());
+    }
+
+    @Benchmark
+    public List<PersonController.FacetBucket> mapFacets() {
+        return PersonController.mapFacets(countryCounts);
+    }
+
+    @Benchmark
+    public PersonController.NumericStats mapStats() {
+        return PersonController.mapStats(salaryStats);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.graphql.person.service;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import com.example.graphql.benchmark.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregation;
+import org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the facets and stats of a person search out of recorded responses: the usual ten buckets per facet,
+ * and 10,000 buckets per facet for the worst case.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PersonAggregationParsingBenchmark {
+
+    @Param({"person-search-facets.json", "person-search-facets-10k-buckets.json"})
+    String fixture;
+
+    private ElasticsearchAggregations aggregations;
+    private Map<String, Aggregate> addressAggregations;
+
+    @Setup
+    public void load() {
+        aggregations = Fixtures.aggregations(fixture);
+        ElasticsearchAggregation nested = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get("address_aggs");
+        addressAggregations = nested.aggregation().getAggregate().nested().aggregations();
+    }
+
+    /** String terms buckets, the nested country facet. */
+    @Benchmark
+    public Map<String, Long> populateCountryCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        PersonService.populateMap(addressAggregations.get("country_counts"), counts);
+        return counts;
+    }
+
+    /** Long terms buckets (a boolean field), looked up by name like the service does. */
+    @Benchmark
+    public Map<String, Long> parseActiveCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        PersonService.parseTerms(aggregations, "active_counts", counts);
+        return counts;
+    }
+
+    @Benchmark
+    public PersonService.NumericStats parseSalaryStats() {
+        return PersonService.parseStats(aggregations, "salary_stats");
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.graphql.platform.search;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.example.graphql.benchmark.Fixtures;
+import com.example.graphql.person.filter.PersonFilterInput;
+import com.example.graphql.platform.filter.BooleanFilter;
+import com.example.graphql.platform.filter.IntFilter;
+import com.example.graphql.platform.filter.StringFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ElasticsearchQueryBuilder#compile} over a typical search filter and over the shapes that blow up:
+ * a wide {@code or}, a deep chain of {@code not} and big {@code in} lists; {@code realisticCached} is the
+ * memoized {@link ElasticsearchQueryBuilder#build} of a filter seen before.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ElasticsearchQueryBuilderBenchmark {
+
+    private static final ElasticsearchQueryBuilder BUILDER = new ElasticsearchQueryBuilder();
+
+    @State(Scope.Benchmark)
+    public static class Realistic {
+        PersonFilterInput filter;
+
+        @Setup
+        public void load() {
+            filter = Fixtures.read("person-filter-realistic.json", PersonFilterInput.class);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Pathological {
+        /** Branches of the or, depth of the not chain, values of each in list. */
+        @Param({"16", "1024"})
+        int size;
+
+        PersonFilterInput wideOr;
+        PersonFilterInput deepNot;
+        PersonFilterInput bigIn;
+
+        @Setup
+        public void build() {
+            List<PersonFilterInput> branches = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                branches.add(switch (i % 3) {
+                    case 0 -> leaf(new StringFilter(null, null, "name-" + i, null, null), null, null, null);
+                    case 1 -> leaf(null, new IntFilter(null, null, null, i, i + 10), null, null);
+                    default -> leaf(null, null, null, new StringFilter("country-" + i, null, null, null, null));
+                });
+            }
+            wideOr = new PersonFilterInput(null, null, branches, null, null, null, null, null, null, null, null, null, null);
+
+            PersonFilterInput chain = leaf(null, null, new BooleanFilter(true), null);
+            for (int i = 0; i < size; i++) {
+                chain = new PersonFilterInput(null, null, null, chain, null, null, null, null, null, null, null, null, null);
+            }
+            deepNot = chain;
+
+            List<String> names = new ArrayList<>(size);
+            List<String> countries = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                names.add("name-" + i);
+                countries.add("country-" + i);
+            }
+            bigIn = new PersonFilterInput(null, null, null, null,
+                    new StringFilter(null, null, null, null, names), null, null, null, null, null,
+                    new StringFilter(null, null, null, null, countries), null, null);
+        }
+
+        private static PersonFilterInput leaf(StringFilter name, IntFilter age, BooleanFilter isActive, StringFilter country) {
+            return new PersonFilterInput(null, null, null, null, name, null, age, null, null, isActive, country, null, null);
+        }
+    }
+
+    @Benchmark
+    public Query realistic(Realistic state) {
+        return BUILDER.compile(state.filter);
+    }
+
+    @Benchmark
+    public Query realisticCached(Realistic state) {
+        return BUILDER.build(state.filter);
+    }
+
+    @Benchmark
+    public Query wideOr(Pathological state) {
+        return BUILDER.compile(state.wideOr);
+    }
+
+    @Benchmark
+    public Query deepNot(Pathological state) {
+        return BUILDER.compile(state.deepNot);
+    }
+
+    @Benchmark
+    public Query bigIn(Pathological state) {
+        return BUILDER.compile(state.bigIn);
+    }
+}
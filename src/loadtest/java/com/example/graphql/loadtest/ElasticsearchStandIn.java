@@ -0,0 +1,752 @@
+package com.example.graphql.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the part of the Elasticsearch HTTP API this service talks to, so load tests run without a
+ * cluster or network.
+ * <p>
+ * Documents are kept in memory per index. It is not a search engine: <b>queries are not evaluated, every document
+ * of an index matches</b>, and update-by-query scripts are not run. Everything that decides the size and shape of a
+ * response is real, though: sorting (including {@code search_after}), from/size paging, {@code _source} includes,
+ * total hits and {@code terms}/{@code stats}/{@code nested}/{@code filter}/{@code global} aggregations computed over
+ * all documents, returned with {@code typed_keys} like ES does. Sorted views and aggregation results are cached until
+ * the index changes, so after loading the stand-in answers in roughly constant time and the measured latency is the
+ * service's own. {@code latency} adds a fixed delay per search to emulate the cluster.
+ * <p>
+ * Supported: cluster info, index create/exists/delete, settings, mapping, refresh, aliases, {@code _bulk},
+ * {@code _search}, {@code _msearch}, {@code _count} and {@code _update_by_query}.
+ */
+public final class ElasticsearchStandIn implements AutoCloseable {
+
+    private static final TypeReference<Map<String, Object>> JSON_OBJECT = new TypeReference<>() {};
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final Map<String, Index> indices = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> aliases = new ConcurrentHashMap<>();
+    private final Duration latency;
+    private final HttpServer server;
+
+    private ElasticsearchStandIn(Duration latency) throws IOException {
+        this.latency = latency;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/", this::handle);
+    }
+
+    public static ElasticsearchStandIn start(Duration latency) throws IOException {
+        ElasticsearchStandIn standIn = new ElasticsearchStandIn(latency);
+        standIn.server.start();
+        return standIn;
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /** Number of documents in the index (or the indices behind the alias). */
+    public long count(String indexOrAlias) {
+        return resolve(indexOrAlias).stream().mapToLong(index -> index.documents.size()).sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private record Response(int status, Object body) {}
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Response response;
+            try {
+                List<String> path = new ArrayList<>();
+                for (String part : exchange.getRequestURI().getRawPath().split("/")) {
+                    if (!part.isEmpty()) path.add(URLDecoder.decode(part, StandardCharsets.UTF_8));
+                }
+                response = route(exchange.getRequestMethod(), path, exchange.getRequestBody().readAllBytes());
+            } catch (Exception e) {
+                response = error(500, "exception", String.valueOf(e));
+            }
+
+            exchange.getResponseHeaders().set("X-Elastic-Product", "Elasticsearch");
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            if ("HEAD".equals(exchange.getRequestMethod()) || response.body() == null) {
+                exchange.sendResponseHeaders(response.status(), -1);
+                return;
+            }
+            byte[] bytes = json.writeValueAsBytes(response.body());
+            exchange.sendResponseHeaders(response.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private Response route(String method, List<String> path, byte[] body) throws IOException, InterruptedException {
+        if (path.isEmpty()) {
+            return new Response(200, info());
+        }
+        String first = path.get(0);
+        if (path.size() == 1) {
+            switch (first) {
+                case "_bulk": return bulk(null, body);
+                case "_msearch": return multiSearch(null, body);
+                case "_aliases": return updateAliases(readObject(body));
+                default: break;
+            }
+            return switch (method) {
+                case "HEAD" -> new Response(resolve(first).isEmpty() ? 404 : 200, null);
+                case "PUT" -> createIndex(first);
+                case "DELETE" -> deleteIndex(first);
+                default -> resolve(first).isEmpty() ? indexNotFound(first) : new Response(200, Map.of(first, Map.of()));
+            };
+        }
+        if ("_alias".equals(first)) {
+            String alias = path.get(1);
+            Set<String> targets = aliases.getOrDefault(alias, Set.of());
+            if (targets.isEmpty()) return "HEAD".equals(method) ? new Response(404, null) : error(404, "aliases_not_found_exception", "alias [" + alias + "] missing");
+            Map<String, Object> result = new LinkedHashMap<>();
+            for (String index : targets) {
+                result.put(index, Map.of("aliases", Map.of(alias, Map.of())));
+            }
+            return new Response(200, result);
+        }
+
+        String index = first;
+        switch (path.get(1)) {
+            case "_bulk": return bulk(index, body);
+            case "_msearch": return multiSearch(index, body);
+            case "_search": {
+                List<Index> targets = resolve(index);
+                if (targets.isEmpty()) return indexNotFound(index);
+                return new Response(200, search(targets, body.length == 0 ? Map.of() : readObject(body)));
+            }
+            case "_count": {
+                List<Index> targets = resolve(index);
+                if (targets.isEmpty()) return indexNotFound(index);
+                return new Response(200, Map.of("count", count(index), "_shards", shards()));
+            }
+            case "_refresh": return new Response(200, Map.of("_shards", shards()));
+            case "_settings", "_mapping": return resolve(index).isEmpty() ? indexNotFound(index) : acknowledged();
+            case "_update_by_query": return new Response(200, updateByQuery());
+            default: return error(400, "illegal_argument_exception", "Not supported by the stand-in: " + method + " /" + String.join("/", path));
+        }
+    }
+
+    // --- indices and aliases ---
+
+    private static final class Index {
+        final String name;
+        final Map<String, Map<String, Object>> documents = new ConcurrentHashMap<>();
+        final AtomicLong generation = new AtomicLong();
+        volatile View view;
+
+        Index(String name) {
+            this.name = name;
+        }
+
+        View view() {
+            long current = generation.get();
+            View cached = view;
+            if (cached == null || cached.generation != current) {
+                List<Doc> docs = new ArrayList<>(documents.size());
+                documents.forEach((id, source) -> docs.add(new Doc(name, id, source)));
+                docs.sort(Comparator.comparing(Doc::id, ElasticsearchStandIn::compareIds));
+                cached = new View(current, docs);
+                view = cached;
+            }
+            return cached;
+        }
+    }
+
+    private record Doc(String index, String id, Map<String, Object> source) {}
+
+    /** The documents of an index at one generation, with the sorted orders and aggregations computed on them. */
+    private static final class View {
+        final long generation;
+        final List<Doc> documents;
+        final Map<String, List<Doc>> sorted = new ConcurrentHashMap<>();
+        final Map<String, Map<String, Object>> aggregations = new ConcurrentHashMap<>();
+
+        View(long generation, List<Doc> documents) {
+            this.generation = generation;
+            this.documents = documents;
+        }
+    }
+
+    private List<Index> resolve(String expression) {
+        List<Index> result = new ArrayList<>();
+        for (String name : expression.split(",")) {
+            Set<String> aliased = aliases.get(name);
+            if (aliased != null) {
+                aliased.forEach(index -> {
+                    Index target = indices.get(index);
+                    if (target != null) result.add(target);
+                });
+            } else if (indices.containsKey(name)) {
+                result.add(indices.get(name));
+            }
+        }
+        return result;
+    }
+
+    private Index indexForWrite(String name) {
+        Set<String> aliased = aliases.get(name);
+        if (aliased != null && !aliased.isEmpty()) {
+            return indices.computeIfAbsent(aliased.iterator().next(), Index::new);
+        }
+        return indices.computeIfAbsent(name, Index::new);
+    }
+
+    private Response createIndex(String name) {
+        if (aliases.containsKey(name) || indices.putIfAbsent(name, new Index(name)) != null) {
+            return error(400, "resource_already_exists_exception", "index [" + name + "] already exists");
+        }
+        return new Response(200, Map.of("acknowledged", true, "shards_acknowledged", true, "index", name));
+    }
+
+    private Response deleteIndex(String name) {
+        if (indices.remove(name) == null) return indexNotFound(name);
+        aliases.values().forEach(targets -> targets.remove(name));
+        aliases.values().removeIf(Set::isEmpty);
+        return acknowledged();
+    }
+
+    @SuppressWarnings("unchecked")
+    private synchronized Response updateAliases(Map<String, Object> request) {
+        for (Object action : (List<Object>) request.getOrDefault("actions", List.of())) {
+            for (Map.Entry<String, Object> entry : ((Map<String, Object>) action).entrySet()) {
+                Map<String, Object> spec = (Map<String, Object>) entry.getValue();
+                List<String> targetIndices = names(spec, "index", "indices");
+                List<String> aliasNames = names(spec, "alias", "aliases");
+                switch (entry.getKey()) {
+                    case "add" -> {
+                        for (String alias : aliasNames) {
+                            aliases.computeIfAbsent(alias, k -> ConcurrentHashMap.newKeySet()).addAll(targetIndices);
+                        }
+                    }
+                    case "remove" -> {
+                        for (String alias : aliasNames) {
+                            Set<String> targets = aliases.get(alias);
+                            if (targets != null) targets.removeAll(targetIndices);
+                        }
+                    }
+                    case "remove_index" -> targetIndices.forEach(this::deleteIndex);
+                    default -> { return error(400, "illegal_argument_exception", "Unknown alias action " + entry.getKey()); }
+                }
+            }
+        }
+        aliases.values().removeIf(Set::isEmpty);
+        return acknowledged();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<String> names(Map<String, Object> spec, String single, String plural) {
+        List<String> names = new ArrayList<>();
+        if (spec.get(single) instanceof String name) names.add(name);
+        if (spec.get(plural) instanceof List<?> list) list.forEach(name -> names.add((String) name));
+        return names;
+    }
+
+    // --- writes ---
+
+    @SuppressWarnings("unchecked")
+    private Response bulk(String defaultIndex, byte[] body) throws IOException {
+        long start = System.nanoTime();
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+        List<Object> items = new ArrayList<>();
+        Set<Index> touched = new LinkedHashSet<>();
+        boolean errors = false;
+
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].isBlank()) continue;
+            Map<String, Object> action = json.readValue(lines[i], JSON_OBJECT);
+            Map.Entry<String, Object> op = action.entrySet().iterator().next();
+            Map<String, Object> meta = (Map<String, Object>) op.getValue();
+            Index index = indexForWrite(meta.get("_index") != null ? (String) meta.get("_index") : defaultIndex);
+            String id = meta.get("_id") != null ? meta.get("_id").toString() : UUID.randomUUID().toString();
+            touched.add(index);
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("_index", index.name);
+            item.put("_id", id);
+            switch (op.getKey()) {
+                case "delete" -> {
+                    boolean found = index.documents.remove(id) != null;
+                    item.put("result", found ? "deleted" : "not_found");
+                    item.put("status", found ? 200 : 404);
+                }
+                case "create" -> {
+                    Map<String, Object> source = json.readValue(lines[++i], JSON_OBJECT);
+                    if (index.documents.putIfAbsent(id, source) != null) {
+                        item.put("status", 409);
+                        item.put("error", Map.of("type", "version_conflict_engine_exception",
+                                "reason", "[" + id + "]: version conflict, document already exists"));
+                        errors = true;
+                    } else {
+                        item.put("result", "created");
+                        item.put("status", 201);
+                    }
+                }
+                case "update" -> {
+                    Map<String, Object> update = json.readValue(lines[++i], JSON_OBJECT);
+                    Map<String, Object> doc = (Map<String, Object>) update.getOrDefault("doc", Map.of());
+                    index.documents.merge(id, new LinkedHashMap<>(doc), (current, changes) -> {
+                        Map<String, Object> merged = new LinkedHashMap<>(current);
+                        merged.putAll(changes);
+                        return merged;
+                    });
+                    item.put("result", "updated");
+                    item.put("status", 200);
+                }
+                default -> {
+                    boolean existed = index.documents.put(id, json.readValue(lines[++i], JSON_OBJECT)) != null;
+                    item.put("result", existed ? "updated" : "created");
+                    item.put("status", existed ? 200 : 201);
+                }
+            }
+            item.put("_version", 1);
+            item.put("_seq_no", 0);
+            item.put("_primary_term", 1);
+            item.put("_shards", shards());
+            items.add(Map.of(op.getKey(), item));
+        }
+        touched.forEach(index -> index.generation.incrementAndGet());
+        return new Response(200, Map.of("took", elapsedMillis(start), "errors", errors, "items", items));
+    }
+
+    private Map<String, Object> updateByQuery() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("took", 0);
+        response.put("timed_out", false);
+        response.put("total", 0);
+        response.put("updated", 0);
+        response.put("deleted", 0);
+        response.put("batches", 0);
+        response.put("version_conflicts", 0);
+        response.put("noops", 0);
+        response.put("retries", Map.of("bulk", 0, "search", 0));
+        response.put("throttled_millis", 0);
+        response.put("requests_per_second", -1.0);
+        response.put("throttled_until_millis", 0);
+        response.put("failures", List.of());
+        return response;
+    }
+
+    // --- search ---
+
+    private Response multiSearch(String defaultIndex, byte[] body) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\n");
+        List<Object> responses = new ArrayList<>();
+        for (int i = 0; i + 1 < lines.length; i += 2) {
+            Map<String, Object> header = json.readValue(lines[i], JSON_OBJECT);
+            Object index = header.getOrDefault("index", defaultIndex);
+            String expression = index instanceof List<?> list ? String.join(",", list.stream().map(String::valueOf).toList()) : (String) index;
+            List<Index> targets = resolve(expression);
+            if (targets.isEmpty()) {
+                responses.add(indexNotFound(expression).body());
+                continue;
+            }
+            Map<String, Object> response = new LinkedHashMap<>(search(targets, json.readValue(lines[i + 1], JSON_OBJECT)));
+            response.put("status", 200);
+            responses.add(response);
+        }
+        return new Response(200, Map.of("took", elapsedMillis(start), "responses", responses));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> search(List<Index> targets, Map<String, Object> request) throws InterruptedException {
+        long start = System.nanoTime();
+        if (!latency.isZero()) {
+            Thread.sleep(latency);
+        }
+
+        View view;
+        if (targets.size() == 1) {
+            view = targets.get(0).view();
+        } else {
+            List<Doc> all = new ArrayList<>();
+            targets.forEach(index -> all.addAll(index.view().documents));
+            view = new View(-1, all);
+        }
+
+        List<SortKey> sort = sortKeys(request.get("sort"));
+        List<Doc> ordered = sort.isEmpty() ? view.documents
+                : view.sorted.computeIfAbsent(sort.toString(), k -> sorted(view.documents, sort));
+
+        int size = request.get("size") instanceof Number n ? n.intValue() : 10;
+        int from = request.get("from") instanceof Number n ? n.intValue() : 0;
+        if (request.get("search_after") instanceof List<?> after && !sort.isEmpty()) {
+            from = firstAfter(ordered, sort, (List<Object>) after);
+        }
+
+        List<Object> hits = new ArrayList<>();
+        for (int i = from; i < Math.min(ordered.size(), from + size); i++) {
+            Doc doc = ordered.get(i);
+            Map<String, Object> hit = new LinkedHashMap<>();
+            hit.put("_index", doc.index());
+            hit.put("_id", doc.id());
+            hit.put("_score", sort.isEmpty() ? 1.0 : null);
+            hit.put("_source", filterSource(doc.source(), request.get("_source")));
+            if (!sort.isEmpty()) hit.put("sort", sortValues(doc, sort));
+            hits.add(hit);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("took", 0);
+        response.put("timed_out", false);
+        response.put("_shards", shards());
+        Map<String, Object> hitsSection = new LinkedHashMap<>();
+        hitsSection.put("total", Map.of("value", view.documents.size(), "relation", "eq"));
+        hitsSection.put("max_score", sort.isEmpty() && !hits.isEmpty() ? 1.0 : null);
+        hitsSection.put("hits", hits);
+        response.put("hits", hitsSection);
+
+        Object aggregations = request.containsKey("aggregations") ? request.get("aggregations") : request.get("aggs");
+        if (aggregations instanceof Map<?, ?> definitions && !definitions.isEmpty()) {
+            Map<String, Object> defs = (Map<String, Object>) definitions;
+            response.put("aggregations", view.aggregations.computeIfAbsent(definitionKey(defs), k -> {
+                List<Map<String, Object>> sources = new ArrayList<>(view.documents.size());
+                view.documents.forEach(doc -> sources.add(doc.source()));
+                return aggregate(defs, sources, "");
+            }));
+        }
+        response.put("took", elapsedMillis(start));
+        return response;
+    }
+
+    private String definitionKey(Map<String, Object> definitions) {
+        try {
+            return json.writeValueAsString(definitions);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object filterSource(Map<String, Object> source, Object filter) {
+        if (Boolean.FALSE.equals(filter)) return null;
+        List<String> includes = new ArrayList<>();
+        if (filter instanceof Map<?, ?> spec && spec.get("includes") instanceof List<?> list) {
+            list.forEach(include -> includes.add((String) include));
+        } else if (filter instanceof List<?> list) {
+            list.forEach(include -> includes.add((String) include));
+        }
+        if (includes.isEmpty()) return source;
+
+        Map<String, Object> filtered = new LinkedHashMap<>();
+        source.forEach((key, value) -> {
+            for (String include : includes) {
+                String top = include.contains(".") ? include.substring(0, include.indexOf('.')) : include;
+                if (top.equals(key) || (top.endsWith("*") && key.startsWith(top.substring(0, top.length() - 1)))) {
+                    filtered.put(key, value);
+                    break;
+                }
+            }
+        });
+        return filtered;
+    }
+
+    // --- sorting ---
+
+    private record SortKey(String field, boolean descending) {}
+
+    @SuppressWarnings("unchecked")
+    private static List<SortKey> sortKeys(Object sort) {
+        List<SortKey> keys = new ArrayList<>();
+        if (!(sort instanceof List<?> list)) return keys;
+        for (Object element : list) {
+            if (element instanceof String field) {
+                keys.add(new SortKey(field, "_score".equals(field)));
+            } else if (element instanceof Map<?, ?> map) {
+                Map.Entry<String, Object> entry = ((Map<String, Object>) map).entrySet().iterator().next();
+                Object order = entry.getValue() instanceof Map<?, ?> options ? options.get("order") : entry.getValue();
+                keys.add(new SortKey(entry.getKey(), "desc".equals(order)));
+            }
+        }
+        return keys;
+    }
+
+    private static List<Doc> sorted(List<Doc> documents, List<SortKey> sort) {
+        List<Doc> sorted = new ArrayList<>(documents);
+        sorted.sort((a, b) -> compareSortValues(sortValues(a, sort), sortValues(b, sort), sort));
+        return sorted;
+    }
+
+    private static List<Object> sortValues(Doc doc, List<SortKey> sort) {
+        List<Object> values = new ArrayList<>(sort.size());
+        for (SortKey key : sort) {
+            if ("_score".equals(key.field())) {
+                values.add(1.0);
+            } else if ("_doc".equals(key.field())) {
+                values.add(doc.id());
+            } else {
+                Object value = value(doc.source(), stripKeyword(key.field()));
+                values.add(value instanceof List<?> list ? (list.isEmpty() ? null : list.get(0)) : value);
+            }
+        }
+        return values;
+    }
+
+    private static int firstAfter(List<Doc> ordered, List<SortKey> sort, List<Object> after) {
+        int low = 0;
+        int high = ordered.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareSortValues(sortValues(ordered.get(mid), sort), after, sort) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int compareSortValues(List<Object> a, List<Object> b, List<SortKey> sort) {
+        for (int i = 0; i < sort.size(); i++) {
+            Object x = a.get(i);
+            Object y = i < b.size() ? b.get(i) : null;
+            int result;
+            if (x == null || y == null) {
+                // Missing values sort last in either direction
+                result = x == null ? (y == null ? 0 : 1) : -1;
+                if (result != 0) return result;
+                continue;
+            }
+            result = compareValues(x, y);
+            if (result != 0) return sort.get(i).descending() ? -result : result;
+        }
+        return 0;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareValues(Object x, Object y) {
+        if (x instanceof Number a && y instanceof Number b) return Double.compare(a.doubleValue(), b.doubleValue());
+        if (x instanceof Number a && y instanceof String b) return compareIds(a.toString(), b);
+        if (x instanceof String a && y instanceof Number b) return compareIds(a, b.toString());
+        if (x.getClass() == y.getClass() && x instanceof Comparable comparable) return comparable.compareTo(y);
+        return x.toString().compareTo(y.toString());
+    }
+
+    private static int compareIds(String a, String b) {
+        try {
+            return Long.compare(Long.parseLong(a), Long.parseLong(b));
+        } catch (NumberFormatException e) {
+            return a.compareTo(b);
+        }
+    }
+
+    // --- aggregations ---
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> aggregate(Map<String, Object> definitions, List<Map<String, Object>> objects, String prefix) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        definitions.forEach((name, value) -> {
+            Map<String, Object> definition = (Map<String, Object>) value;
+            Map<String, Object> subDefinitions = (Map<String, Object>) definition.getOrDefault("aggregations", definition.getOrDefault("aggs", Map.of()));
+
+            if (definition.get("terms") instanceof Map<?, ?> terms) {
+                String field = relative(prefix, (String) terms.get("field"));
+                int size = terms.get("size") instanceof Number n ? n.intValue() : 10;
+                termsAggregation(name, field, size, objects, subDefinitions, prefix, result);
+            } else if (definition.get("stats") instanceof Map<?, ?> stats) {
+                result.put("stats#" + name, stats(objects, relative(prefix, (String) stats.get("field"))));
+            } else if (definition.get("nested") instanceof Map<?, ?> nested) {
+                String path = (String) nested.get("path");
+                List<Map<String, Object>> children = new ArrayList<>();
+                for (Map<String, Object> object : objects) {
+                    Object value = value(object, relative(prefix, path));
+                    if (value instanceof List<?> list) {
+                        list.forEach(child -> children.add((Map<String, Object>) child));
+                    } else if (value instanceof Map<?, ?> child) {
+                        children.add((Map<String, Object>) child);
+                    }
+                }
+                Map<String, Object> bucket = new LinkedHashMap<>();
+                bucket.put("doc_count", children.size());
+                bucket.putAll(aggregate(subDefinitions, children, path + "."));
+                result.put("nested#" + name, bucket);
+            } else if (definition.containsKey("filter") || definition.containsKey("global")) {
+                // Every document matches (see class comment), so a filter bucket holds all of them
+                Map<String, Object> bucket = new LinkedHashMap<>();
+                bucket.put("doc_count", objects.size());
+                bucket.putAll(aggregate(subDefinitions, objects, prefix));
+                result.put((definition.containsKey("filter") ? "filter#" : "global#") + name, bucket);
+            }
+        });
+        return result;
+    }
+
+    private void termsAggregation(String name, String field, int size, List<Map<String, Object>> objects,
+                                  Map<String, Object> subDefinitions, String prefix, Map<String, Object> result) {
+        Map<Object, List<Map<String, Object>>> byValue = new HashMap<>();
+        for (Map<String, Object> object : objects) {
+            Object value = value(object, field);
+            Collection<?> values = value instanceof List<?> list ? list : value == null ? List.of() : List.of(value);
+            for (Object v : new LinkedHashSet<>(values)) {
+                byValue.computeIfAbsent(v, k -> new ArrayList<>()).add(object);
+            }
+        }
+        Object sample = byValue.keySet().stream().findFirst().orElse(null);
+        String type = sample instanceof Boolean || sample instanceof Integer || sample instanceof Long ? "lterms"
+                : sample instanceof Number ? "dterms" : "sterms";
+
+        List<Map.Entry<Object, List<Map<String, Object>>>> entries = new ArrayList<>(byValue.entrySet());
+        entries.sort((a, b) -> {
+            int byCount = Integer.compare(b.getValue().size(), a.getValue().size());
+            return byCount != 0 ? byCount : compareValues(a.getKey(), b.getKey());
+        });
+
+        List<Object> buckets = new ArrayList<>();
+        long others = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            Map.Entry<Object, List<Map<String, Object>>> entry = entries.get(i);
+            if (i >= size) {
+                others += entry.getValue().size();
+                continue;
+            }
+            Map<String, Object> bucket = new LinkedHashMap<>();
+            Object key = entry.getKey();
+            if (key instanceof Boolean b) {
+                bucket.put("key", b ? 1 : 0);
+                bucket.put("key_as_string", b.toString());
+            } else {
+                bucket.put("key", key);
+            }
+            bucket.put("doc_count", entry.getValue().size());
+            if (!subDefinitions.isEmpty()) {
+                bucket.putAll(aggregate(subDefinitions, entry.getValue(), prefix));
+            }
+            buckets.add(bucket);
+        }
+        Map<String, Object> aggregation = new LinkedHashMap<>();
+        aggregation.put("doc_count_error_upper_bound", 0);
+        aggregation.put("sum_other_doc_count", others);
+        aggregation.put("buckets", buckets);
+        result.put(type + "#" + name, aggregation);
+    }
+
+    private static Map<String, Object> stats(List<Map<String, Object>> objects, String field) {
+        long count = 0;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        double sum = 0;
+        for (Map<String, Object> object : objects) {
+            Object value = value(object, field);
+            Collection<?> values = value instanceof List<?> list ? list : value == null ? List.of() : List.of(value);
+            for (Object v : values) {
+                if (!(v instanceof Number number)) continue;
+                double d = number.doubleValue();
+                count++;
+                min = Math.min(min, d);
+                max = Math.max(max, d);
+                sum += d;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", count);
+        stats.put("min", count == 0 ? null : min);
+        stats.put("max", count == 0 ? null : max);
+        stats.put("avg", count == 0 ? null : sum / count);
+        stats.put("sum", sum);
+        return stats;
+    }
+
+    /** Value at a dotted path; lists on the way are flattened, so multi-valued paths yield a list. */
+    @SuppressWarnings("unchecked")
+    private static Object value(Map<String, Object> object, String path) {
+        Object current = object;
+        for (String part : path.split("\\.")) {
+            if (current instanceof Map<?, ?> map) {
+                current = ((Map<String, Object>) map).get(part);
+            } else if (current instanceof List<?> list) {
+                List<Object> values = new ArrayList<>();
+                for (Object element : list) {
+                    Object v = element instanceof Map<?, ?> map ? ((Map<String, Object>) map).get(part) : null;
+                    if (v instanceof List<?> nested) values.addAll(nested); else if (v != null) values.add(v);
+                }
+                current = values;
+            } else {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    private static String relative(String prefix, String field) {
+        String stripped = stripKeyword(field);
+        return !prefix.isEmpty() && stripped.startsWith(prefix) ? stripped.substring(prefix.length()) : stripped;
+    }
+
+    private static String stripKeyword(String field) {
+        return field.endsWith(".keyword") ? field.substring(0, field.length() - ".keyword".length()) : field;
+    }
+
+    // --- responses ---
+
+    private Map<String, Object> readObject(byte[] body) throws IOException {
+        return body.length == 0 ? Map.of() : json.readValue(body, JSON_OBJECT);
+    }
+
+    private static Map<String, Object> info() {
+        Map<String, Object> version = new LinkedHashMap<>();
+        version.put("number", "8.18.0");
+        version.put("build_flavor", "default");
+        version.put("build_type", "stand-in");
+        version.put("build_hash", "0");
+        version.put("build_date", "2025-01-01T00:00:00.000Z");
+        version.put("build_snapshot", false);
+        version.put("lucene_version", "9.12.0");
+        version.put("minimum_wire_compatibility_version", "7.17.0");
+        version.put("minimum_index_compatibility_version", "7.0.0");
+        return Map.of("name", "stand-in", "cluster_name", "loadtest", "cluster_uuid", "stand-in",
+                "version", version, "tagline", "You Know, for Search");
+    }
+
+    private static Map<String, Object> shards() {
+        return Map.of("total", 1, "successful", 1, "skipped", 0, "failed", 0);
+    }
+
+    private static Response acknowledged() {
+        return new Response(200, Map.of("acknowledged", true));
+    }
+
+    private static Response indexNotFound(String index) {
+        return error(404, "index_not_found_exception", "no such index [" + index + "]");
+    }
+
+    private static Response error(int status, String type, String reason) {
+        Map<String, Object> cause = Map.of("type", type, "reason", reason);
+        return new Response(status, Map.of("error", Map.of("root_cause", List.of(cause), "type", type, "reason", reason), "status", status));
+    }
+
+    private static long elapsedMillis(long start) {
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+}
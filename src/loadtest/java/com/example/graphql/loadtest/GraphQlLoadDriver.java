@@ -0,0 +1,247 @@
+package com.example.graphql.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Closed-loop GraphQL load: {@code concurrency} virtual users each send one request, wait for the answer and send
+ * the next, for a warmup period (not recorded) and then for the measured duration.
+ * <p>
+ * The request mix is a script of weighted scenarios (see {@code scenarios/search-mix.json}): a GraphQL document plus
+ * variables, where string values like {@code "${country}"} are replaced per request with values drawn from the same
+ * distributions the {@link SyntheticDataGenerator} used, so searches hit real data and the cache sees a realistic
+ * spread of keys. A request fails on a non-200 status or a response with {@code errors}.
+ */
+public final class GraphQlLoadDriver {
+
+    public record Scenario(String name, int weight, String query, Map<String, Object> variables) {}
+
+    /** Latencies in nanoseconds, sorted. */
+    public record Result(String name, long requests, long errors, double seconds, long[] latencies) {
+
+        public double throughput() {
+            return requests / seconds;
+        }
+
+        public double percentileMillis(double percentile) {
+            if (latencies.length == 0) return 0;
+            int index = (int) Math.ceil(percentile / 100.0 * latencies.length) - 1;
+            return latencies[Math.max(0, Math.min(latencies.length - 1, index))] / 1_000_000.0;
+        }
+
+        public String format() {
+            return String.format("%-24s %9d req %7d err %9.1f req/s   p50 %8.2f ms   p99 %8.2f ms   p999 %8.2f ms   max %8.2f ms",
+                    name, requests, errors, throughput(),
+                    percentileMillis(50), percentileMillis(99), percentileMillis(99.9), percentileMillis(100));
+        }
+    }
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final URI endpoint;
+    private final List<Scenario> scenarios;
+    private final int totalWeight;
+    private final int concurrency;
+    private final long persons;
+    private final long firstPersonId;
+    private final long seed;
+    private final HttpClient client;
+
+    public GraphQlLoadDriver(URI endpoint, List<Scenario> scenarios, int concurrency, long firstPersonId, long persons, long seed) {
+        this.endpoint = endpoint;
+        this.scenarios = scenarios;
+        this.totalWeight = scenarios.stream().mapToInt(Scenario::weight).sum();
+        this.concurrency = concurrency;
+        this.firstPersonId = firstPersonId;
+        this.persons = persons;
+        this.seed = seed;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    public static List<Scenario> loadScenarios(String resource) {
+        try (InputStream in = GraphQlLoadDriver.class.getResourceAsStream("/" + resource)) {
+            if (in == null) throw new IllegalArgumentException("No scenario script " + resource);
+            return JSON.readValue(in, new TypeReference<List<Scenario>>() {});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** @return one result per scenario, followed by the total */
+    public List<Result> run(Duration warmup, Duration duration) throws Exception {
+        long startAt = System.nanoTime();
+        long measureFrom = startAt + warmup.toNanos();
+        long stopAt = measureFrom + duration.toNanos();
+
+        List<Future<Recorder>> workers = new ArrayList<>(concurrency);
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < concurrency; u++) {
+                long userSeed = seed + u;
+                workers.add(users.submit(() -> runUser(new Random(userSeed), measureFrom, stopAt)));
+            }
+        }
+
+        double seconds = duration.toNanos() / 1e9;
+        List<Result> results = new ArrayList<>();
+        Recorder total = new Recorder();
+        for (int s = 0; s < scenarios.size(); s++) {
+            Recorder merged = new Recorder();
+            for (Future<Recorder> worker : workers) {
+                Recorder perScenario = worker.get().children[s];
+                merged.addAll(perScenario);
+                total.addAll(perScenario);
+            }
+            results.add(merged.result(scenarios.get(s).name(), seconds));
+        }
+        results.add(total.result("TOTAL", seconds));
+        return results;
+    }
+
+    private Recorder runUser(Random random, long measureFrom, long stopAt) {
+        Recorder recorder = new Recorder(scenarios.size());
+        while (true) {
+            int index = pickScenario(random);
+            Scenario scenario = scenarios.get(index);
+            byte[] body = requestBody(scenario, random);
+
+            long start = System.nanoTime();
+            if (start >= stopAt) break;
+            boolean ok = send(body);
+            long end = System.nanoTime();
+            if (start >= measureFrom && end <= stopAt) {
+                recorder.children[index].record(end - start, ok);
+            }
+        }
+        return recorder;
+    }
+
+    private boolean send(byte[] body) {
+        try {
+            HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder(endpoint)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() != 200) return false;
+            Map<String, Object> result = JSON.readValue(response.body(), new TypeReference<Map<String, Object>>() {});
+            return result.get("errors") == null;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private int pickScenario(Random random) {
+        int r = random.nextInt(totalWeight);
+        for (int i = 0; i < scenarios.size(); i++) {
+            r -= scenarios.get(i).weight();
+            if (r < 0) return i;
+        }
+        return scenarios.size() - 1;
+    }
+
+    private byte[] requestBody(Scenario scenario, Random random) {
+        Map<String, Object> values = placeholderValues(random);
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("query", scenario.query());
+        request.put("variables", substitute(scenario.variables(), values));
+        try {
+            return JSON.writeValueAsBytes(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Map<String, Object> placeholderValues(Random random) {
+        SyntheticDataGenerator.Country country = SyntheticDataGenerator.country(random);
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("country", country.name());
+        values.put("state", country.states().get(Math.min(random.nextInt(country.states().size()), random.nextInt(country.states().size()))));
+        // Most users stay on the first pages
+        values.put("page", Math.min(random.nextInt(10), random.nextInt(10)));
+        values.put("age", 18 + random.nextInt(50));
+        values.put("lastName", SyntheticDataGenerator.LAST_NAMES.get(random.nextInt(SyntheticDataGenerator.LAST_NAMES.size())));
+        values.put("titleWord", SyntheticDataGenerator.TITLE_WORDS.get(random.nextInt(SyntheticDataGenerator.TITLE_WORDS.size())));
+        values.put("personId", String.valueOf(firstPersonId + (persons > 0 ? (long) (random.nextDouble() * persons) : 0)));
+        return values;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object substitute(Object template, Map<String, Object> values) {
+        if (template instanceof String text && text.startsWith("${") && text.endsWith("}")) {
+            String name = text.substring(2, text.length() - 1);
+            if (!values.containsKey(name)) throw new IllegalArgumentException("Unknown placeholder " + text);
+            return values.get(name);
+        }
+        if (template instanceof Map<?, ?> map) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            ((Map<String, Object>) map).forEach((key, value) -> result.put(key, substitute(value, values)));
+            return result;
+        }
+        if (template instanceof List<?> list) {
+            List<Object> result = new ArrayList<>(list.size());
+            list.forEach(value -> result.add(substitute(value, values)));
+            return result;
+        }
+        return template;
+    }
+
+    /** Per virtual user, so recording needs no synchronization; merged after the run. */
+    private static final class Recorder {
+        final Recorder[] children;
+        long[] latencies = new long[1024];
+        int size;
+        long errors;
+
+        Recorder() {
+            this(0);
+        }
+
+        Recorder(int scenarios) {
+            children = new Recorder[scenarios];
+            for (int i = 0; i < scenarios; i++) children[i] = new Recorder();
+        }
+
+        void record(long nanos, boolean ok) {
+            if (size == latencies.length) latencies = Arrays.copyOf(latencies, size * 2);
+            latencies[size++] = nanos;
+            if (!ok) errors++;
+        }
+
+        void addAll(Recorder other) {
+            if (size + other.size > latencies.length) latencies = Arrays.copyOf(latencies, Math.max(size + other.size, latencies.length * 2));
+            System.arraycopy(other.latencies, 0, latencies, size, other.size);
+            size += other.size;
+            errors += other.errors;
+        }
+
+        Result result(String name, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return new Result(name, size, errors, seconds, sorted);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.graphql.loadtest;
+
+import com.example.graphql.GraphqlApplication;
+import com.example.graphql.person.service.PersonSearchDocuments;
+import com.example.graphql.platform.indexing.reindex.SearchReindexer;
+import com.example.graphql.publications.service.PublicationSearchDocuments;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the whole service against an {@link ElasticsearchStandIn}: starts the stand-in and the application, generates
+ * the data set, loads it into the stand-in with a full reindex and drives the scenario mix over HTTP.
+ * <p>
+ * Options (defaults in brackets): {@code --persons} [100000], {@code --publications} [50000],
+ * {@code --concurrency} [32], {@code --warmup} [10s], {@code --duration} [30s], {@code --es-latency} [0ms],
+ * {@code --seed} [42], {@code --scenarios} [scenarios/search-mix.json]. Any other argument is passed to the
+ * application, e.g. {@code --search.cache.person.max-size=0} to measure without the result cache.
+ * <pre>./gradlew loadTest -PloadTestArgs="--persons=1000000 --concurrency=64"</pre>
+ */
+public final class LoadTestHarness {
+
+    private LoadTestHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        List<String> applicationArgs = new ArrayList<>();
+        for (String arg : args) {
+            String[] option = arg.startsWith("--") ? arg.substring(2).split("=", 2) : new String[0];
+            if (option.length == 2 && isHarnessOption(option[0])) {
+                options.put(option[0], option[1]);
+            } else {
+                applicationArgs.add(arg);
+            }
+        }
+        int persons = Integer.parseInt(options.getOrDefault("persons", "100000"));
+        int publications = Integer.parseInt(options.getOrDefault("publications", "50000"));
+        int concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        Duration warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "10s"));
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "30s"));
+        Duration esLatency = DurationStyle.detectAndParse(options.getOrDefault("es-latency", "0ms"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String scenarios = options.getOrDefault("scenarios", "scenarios/search-mix.json");
+
+        try (ElasticsearchStandIn elasticsearch = ElasticsearchStandIn.start(esLatency);
+             ConfigurableApplicationContext app = new SpringApplicationBuilder(GraphqlApplication.class)
+                     .properties(
+                             "server.port=0",
+                             "search.elasticsearch.host-and-port=localhost:" + elasticsearch.port(),
+                             "spring.jpa.show-sql=false",
+                             "spring.graphql.graphiql.enabled=false")
+                     .run(applicationArgs.toArray(new String[0]))) {
+
+            long start = System.nanoTime();
+            SyntheticDataGenerator.Summary data = new SyntheticDataGenerator(app.getBean(JdbcTemplate.class), seed)
+                    .generate(persons, publications);
+            System.out.printf("Generated %d persons, %d addresses, %d publications, %d authors in %d s%n",
+                    data.persons(), data.addresses(), data.publications(), data.authors(),
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+
+            SearchReindexer reindexer = app.getBean(SearchReindexer.class);
+            reindex(reindexer, PersonSearchDocuments.AGGREGATE_TYPE);
+            reindex(reindexer, PublicationSearchDocuments.AGGREGATE_TYPE);
+            System.out.printf("Stand-in holds %d person and %d publication documents%n",
+                    elasticsearch.count("person"), elasticsearch.count("publication"));
+
+            URI endpoint = URI.create("http://localhost:" + app.getEnvironment().getProperty("local.server.port") + "/graphql");
+            GraphQlLoadDriver driver = new GraphQlLoadDriver(endpoint, GraphQlLoadDriver.loadScenarios(scenarios),
+                    concurrency, data.firstPersonId(), data.persons(), seed);
+            System.out.printf("Driving %s with %d users: %s warmup, %s measured%n", scenarios, concurrency, warmup, duration);
+            for (GraphQlLoadDriver.Result result : driver.run(warmup, duration)) {
+                System.out.println(result.format());
+            }
+            printStages(app.getBean(MeterRegistry.class));
+        }
+    }
+
+    private static boolean isHarnessOption(String name) {
+        return switch (name) {
+            case "persons", "publications", "concurrency", "warmup", "duration", "es-latency", "seed", "scenarios" -> true;
+            default -> false;
+        };
+    }
+
+    private static void reindex(SearchReindexer reindexer, String aggregateType) throws InterruptedException {
+        long start = System.nanoTime();
+        reindexer.start(aggregateType);
+        SearchReindexer.ReindexStatus status;
+        do {
+            Thread.sleep(500);
+            status = reindexer.status(aggregateType);
+        } while (!"COMPLETED".equals(status.state()) && !"FAILED".equals(status.state()));
+        if ("FAILED".equals(status.state())) {
+            throw new IllegalStateException("Reindex of " + aggregateType + " failed: " + status.error());
+        }
+        System.out.printf("Reindexed %d %s documents in %d s%n", status.indexedDocuments(), aggregateType,
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start));
+    }
+
+    /** Where the time went inside the service, from the pipeline timers (warmup included). */
+    private static void printStages(MeterRegistry registry) {
+        System.out.println();
+        for (String name : List.of("graphql.stage", "search.stage", "search.es.took", "search.es.overhead", "graphql.response.serialization")) {
+            for (Timer timer : registry.find(name).timers()) {
+                System.out.printf("%-32s %-60s %9d calls   mean %8.3f ms   max %8.3f ms%n", name,
+                        timer.getId().getTags(), timer.count(), timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS));
+            }
+        }
+    }
+}
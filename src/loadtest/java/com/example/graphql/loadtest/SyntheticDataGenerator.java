@@ -0,0 +1,266 @@
+package com.example.graphql.loadtest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Fills the database with a deterministic (seeded), production shaped data set: persons with their addresses, and
+ * publications with their authors.
+ * <p>
+ * Distributions: countries are weighted by a fixed table, states within a country and cities within a state follow
+ * a Zipf curve, most persons have one or two addresses (mostly in one country), ages are normal around 41, salaries
+ * log-normal, 82% of persons are active. Publications have mostly 1-6 authors with a long tail up to 30, and authors
+ * are drawn with a power law, so a few prolific persons appear on many publications.
+ * <p>
+ * Rows are written with plain JDBC batches, bypassing JPA and the search outbox: load them into ES with a full
+ * reindex afterwards.
+ */
+public final class SyntheticDataGenerator {
+
+    public record Country(String name, double weight, List<String> states) {}
+
+    public static final List<Country> COUNTRIES = List.of(
+            new Country("USA", 0.38, List.of("CA", "TX", "NY", "FL", "IL", "PA", "OH", "GA", "NC", "MI", "WA", "MA")),
+            new Country("Germany", 0.10, List.of("BY", "NW", "BW", "BE", "HE", "NI", "HH", "SN")),
+            new Country("India", 0.10, List.of("MH", "KA", "DL", "TN", "TG", "GJ", "WB")),
+            new Country("United Kingdom", 0.09, List.of("England", "Scotland", "Wales", "Northern Ireland")),
+            new Country("Canada", 0.08, List.of("ON", "QC", "BC", "AB", "MB", "NS")),
+            new Country("France", 0.07, List.of("IDF", "ARA", "PACA", "NAQ", "OCC", "HDF")),
+            new Country("Japan", 0.06, List.of("Tokyo", "Osaka", "Kanagawa", "Aichi", "Fukuoka")),
+            new Country("Brazil", 0.06, List.of("SP", "RJ", "MG", "RS", "PR")),
+            new Country("Australia", 0.04, List.of("NSW", "VIC", "QLD", "WA", "SA")),
+            new Country("Mexico", 0.02, List.of("CDMX", "JAL", "NL", "PUE")));
+
+    private static final List<String> FIRST_NAMES = List.of(
+            "James", "Mary", "John", "Patricia", "Robert", "Jennifer", "Michael", "Linda", "David", "Elizabeth",
+            "William", "Barbara", "Richard", "Susan", "Joseph", "Jessica", "Thomas", "Sarah", "Wei", "Priya",
+            "Hiroshi", "Yuki", "Lukas", "Sophie", "Mateo", "Camila", "Arjun", "Ananya", "Olivier", "Chloe",
+            "Noah", "Emma", "Liam", "Olivia", "Ethan", "Ava", "Lucas", "Mia", "Mohammed", "Fatima");
+    static final List<String> LAST_NAMES = List.of(
+            "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+            "Hernandez", "Lopez", "Wilson", "Anderson", "Thomas", "Taylor", "Moore", "Martin", "Lee", "Perez",
+            "Müller", "Schmidt", "Schneider", "Fischer", "Patel", "Sharma", "Singh", "Kumar", "Tanaka", "Suzuki",
+            "Sato", "Dubois", "Bernard", "Silva", "Santos", "Oliveira", "Nguyen", "Chen", "Wang", "Kim");
+    private static final List<String> EMAIL_DOMAINS = List.of(
+            "example.com", "mail.example.org", "university.example.edu", "hospital.example.net", "lab.example.io");
+    private static final List<String> STREETS = List.of(
+            "Main St", "Oak Ave", "Pine Ln", "Maple Dr", "Cedar Blvd", "Birch Rd", "Elm St", "Park Ave",
+            "Lake View", "Hill Rd", "Station Rd", "High St", "Church St", "Mill Ln", "River Rd");
+    private static final List<String> JOURNALS = List.of(
+            "Journal of Medical AI", "Tech Medicine Review", "Clinical Informatics", "Nature Digital Medicine",
+            "The Lancet Digital Health", "JAMA Network Open", "BMJ Health & Care Informatics",
+            "Journal of Biomedical Informatics", "Artificial Intelligence in Medicine", "Health Data Science",
+            "Bioinformatics", "PLOS Computational Biology", "Medical Image Analysis", "Radiology: AI",
+            "Journal of Clinical Epidemiology", "Epidemiology Review", "Public Health Genomics", "Cell Systems",
+            "Scientific Data", "Journal of Healthcare Engineering");
+    static final List<String> TITLE_WORDS = List.of(
+            "Deep", "Learning", "Clinical", "Trials", "Search", "Graph", "Models", "Outcomes", "Genomic", "Cohort",
+            "Prediction", "Imaging", "Federated", "Survival", "Analysis", "Patients", "Risk", "Scalable", "Records",
+            "Electronic", "Health", "Language", "Retrieval", "Biomarkers", "Randomized", "Bayesian", "Networks");
+    private static final List<String> AFFILIATIONS = List.of(
+            "Harvard Medical School", "Johns Hopkins University", "Mayo Clinic", "Stanford University",
+            "University of Oxford", "Charité Berlin", "Karolinska Institutet", "University of Toronto",
+            "University of Tokyo", "AIIMS New Delhi", "Sorbonne Université", "University of São Paulo",
+            "University of Melbourne", "UNAM", "Imperial College London", "ETH Zürich", "MIT", "UCSF",
+            "Cleveland Clinic", "Max Planck Institute");
+    private static final String[] STATUSES = {"PUBLISHED", "PUBLISHED", "PUBLISHED", "PUBLISHED", "PUBLISHED",
+            "PUBLISHED", "PUBLISHED", "SUBMITTED", "SUBMITTED", "IN_REVIEW"};
+
+    private static final int BATCH_SIZE = 1000;
+
+    public record Summary(long persons, long addresses, long publications, long authors, long firstPersonId, long firstPublicationId) {}
+
+    private final JdbcTemplate jdbc;
+    private final Random random;
+
+    public SyntheticDataGenerator(JdbcTemplate jdbc, long seed) {
+        this.jdbc = jdbc;
+        this.random = new Random(seed);
+    }
+
+    public Summary generate(int persons, int publications) {
+        long firstPersonId = nextId("person");
+        long firstAddressId = nextId("address");
+        long firstPublicationId = nextId("publication");
+        long firstAuthorId = nextId("publication_author");
+
+        List<Object[]> personRows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> addressRows = new ArrayList<>(BATCH_SIZE * 2);
+        long addressId = firstAddressId;
+        LocalDate today = LocalDate.now();
+
+        for (int i = 0; i < persons; i++) {
+            long id = firstPersonId + i;
+            String first = pick(FIRST_NAMES);
+            String last = pick(LAST_NAMES);
+            int age = (int) Math.round(Math.max(18, Math.min(85, 41 + random.nextGaussian() * 12)));
+            double salary = Math.round(Math.exp(Math.log(60_000) + random.nextGaussian() * 0.5) * 100) / 100.0;
+            personRows.add(new Object[]{
+                    id, first + " " + last, age,
+                    (first + "." + last + "." + id).toLowerCase() + "@" + pick(EMAIL_DOMAINS),
+                    String.format("555-%07d", random.nextInt(10_000_000)),
+                    Date.valueOf(today.minusYears(age).minusDays(random.nextInt(365))),
+                    random.nextDouble() < 0.82, salary});
+
+            Country home = country();
+            int addressCount = addressCount();
+            for (int a = 0; a < addressCount; a++) {
+                // Most people keep their addresses in one country
+                Country country = random.nextDouble() < 0.9 ? home : country();
+                String state = zipf(country.states());
+                addressRows.add(new Object[]{
+                        addressId++, (1 + random.nextInt(9999)) + " " + pick(STREETS),
+                        state + " City " + (1 + zipfIndex(50)), state,
+                        String.format("%05d", random.nextInt(100_000)), country.name(), a == 0, id});
+            }
+
+            if (personRows.size() == BATCH_SIZE) {
+                flushPersons(personRows, addressRows);
+            }
+        }
+        flushPersons(personRows, addressRows);
+
+        List<Object[]> publicationRows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> authorRows = new ArrayList<>(BATCH_SIZE * 4);
+        long authorId = firstAuthorId;
+        for (int i = 0; i < publications; i++) {
+            long id = firstPublicationId + i;
+            String journal = zipf(JOURNALS);
+            LocalDate date = today.minusDays(random.nextInt(15 * 365));
+            publicationRows.add(new Object[]{
+                    id, title(), journal, Date.valueOf(date), STATUSES[random.nextInt(STATUSES.length)],
+                    "10." + (1000 + journal.length() * 37) + "/" + date.getYear() + "." + id});
+
+            Set<Long> authors = new LinkedHashSet<>();
+            int authorCount = Math.min(authorCount(), persons);
+            while (authors.size() < authorCount) {
+                // Power law: low ids are the prolific authors
+                authors.add(firstPersonId + (long) (persons * Math.pow(random.nextDouble(), 2.5)));
+            }
+            boolean lastIsCorresponding = authorCount > 2 && random.nextDouble() < 0.3;
+            int rank = 1;
+            for (Long personId : authors) {
+                boolean corresponding = lastIsCorresponding ? rank == authorCount : rank == 1;
+                authorRows.add(new Object[]{authorId++, rank, corresponding, pick(AFFILIATIONS), id, personId});
+                rank++;
+            }
+
+            if (publicationRows.size() == BATCH_SIZE) {
+                flushPublications(publicationRows, authorRows);
+            }
+        }
+        flushPublications(publicationRows, authorRows);
+
+        restartIdentity("person", firstPersonId + persons);
+        restartIdentity("address", addressId);
+        restartIdentity("publication", firstPublicationId + publications);
+        restartIdentity("publication_author", authorId);
+        return new Summary(persons, addressId - firstAddressId, publications, authorId - firstAuthorId, firstPersonId, firstPublicationId);
+    }
+
+    /** A country drawn by the weights of {@link #COUNTRIES}; shared with the load driver so queries hit real data. */
+    public static Country country(Random random) {
+        double r = random.nextDouble();
+        for (Country country : COUNTRIES) {
+            r -= country.weight();
+            if (r < 0) return country;
+        }
+        return COUNTRIES.get(0);
+    }
+
+    private Country country() {
+        return country(random);
+    }
+
+    private int addressCount() {
+        double r = random.nextDouble();
+        if (r < 0.04) return 0;
+        if (r < 0.62) return 1;
+        if (r < 0.88) return 2;
+        if (r < 0.97) return 3;
+        if (r < 0.99) return 4;
+        return 5;
+    }
+
+    private int authorCount() {
+        double r = random.nextDouble();
+        if (r < 0.12) return 1;
+        if (r < 0.30) return 2;
+        if (r < 0.50) return 3;
+        if (r < 0.66) return 4;
+        if (r < 0.78) return 5;
+        if (r < 0.88) return 6;
+        if (r < 0.96) return 7 + random.nextInt(4);
+        // Consortium papers
+        return 11 + random.nextInt(20);
+    }
+
+    private String title() {
+        int words = 4 + random.nextInt(7);
+        StringBuilder title = new StringBuilder();
+        for (int w = 0; w < words; w++) {
+            if (w > 0) title.append(' ');
+            title.append(pick(TITLE_WORDS));
+        }
+        return title.toString();
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private <T> T zipf(List<T> values) {
+        return values.get(zipfIndex(values.size()));
+    }
+
+    /** Index in [0, n) where index k is drawn with weight 1/(k+1). */
+    private int zipfIndex(int n) {
+        double harmonic = 0;
+        for (int k = 1; k <= n; k++) harmonic += 1.0 / k;
+        double r = random.nextDouble() * harmonic;
+        for (int k = 1; k <= n; k++) {
+            r -= 1.0 / k;
+            if (r < 0) return k - 1;
+        }
+        return n - 1;
+    }
+
+    private void flushPersons(List<Object[]> persons, List<Object[]> addresses) {
+        if (!persons.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO person (id, name, age, email, phone_number, birth_date, is_active, salary) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", persons);
+        }
+        if (!addresses.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO address (id, street, city, state, zip, country, is_primary, person_id) VALUES (?, ?, ?, ?, ?, ?, ?, ?)", addresses);
+        }
+        persons.clear();
+        addresses.clear();
+    }
+
+    private void flushPublications(List<Object[]> publications, List<Object[]> authors) {
+        if (!publications.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO publication (id, title, journal_name, publication_date, status, doi) VALUES (?, ?, ?, ?, ?, ?)", publications);
+        }
+        if (!authors.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO publication_author (id, rank, is_corresponding, affiliation_at_time_of_publication, publication_id, person_id) VALUES (?, ?, ?, ?, ?, ?)", authors);
+        }
+        publications.clear();
+        authors.clear();
+    }
+
+    private long nextId(String table) {
+        Long max = jdbc.queryForObject("SELECT MAX(id) FROM " + table, Long.class);
+        return max == null ? 1 : max + 1;
+    }
+
+    /** Explicit ids were inserted, so the identity must continue after them for rows created through JPA later. */
+    private void restartIdentity(String table, long next) {
+        jdbc.execute("ALTER TABLE " + table + " ALTER COLUMN id RESTART WITH " + next);
+    }
+}
@@ -6,14 +6,16 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.elasticsearch.repository.config.EnableElasticsearchRepositories;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import com.example.graphql.person.service.PersonService;
 import com.example.graphql.publications.service.PublicationService;
 import com.example.graphql.person.model.Person;
 import com.example.graphql.publications.model.Publication;
 
 @SpringBootApplication
-@EnableJpaRepositories(basePackages = {"com.example.graphql.person.repository.jpa", "com.example.graphql.publications.repository.jpa"})
+@EnableJpaRepositories(basePackages = {"com.example.graphql.person.repository.jpa", "com.example.graphql.publications.repository.jpa", "com.example.graphql.platform.indexing.outbox", "com.example.graphql.platform.indexing.reindex"})
 @EnableElasticsearchRepositories(basePackages = {"com.example.graphql.person.repository.search", "com.example.graphql.publications.repository.search"})
+@EnableScheduling
 public class GraphqlApplication {
 
     public static void main(String[] args) {
@@ -3,14 +3,30 @@ package com.example.graphql.person.controller;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
 import org.springframework.stereotype.Controller;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
+import org.dataloader.DataLoader;
+import org.hibernate.Hibernate;
+import reactor.core.publisher.Mono;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 import com.example.graphql.person.filter.PersonFilterInput;
 import com.example.graphql.person.filter.PersonSort;
 import com.example.graphql.person.filter.PersonSortField;
+import com.example.graphql.platform.filter.FacetMode;
 import com.example.graphql.platform.filter.SortDirection;
+import com.example.graphql.platform.graphql.FetcherExecutor;
+import com.example.graphql.platform.search.MultiSearchBatcher;
+import com.example.graphql.platform.search.SearchCost;
+import com.example.graphql.platform.search.SearchCursor;
+import com.example.graphql.platform.search.SearchLimits;
+import com.example.graphql.platform.search.SearchMetrics;
+import com.example.graphql.platform.search.SourceFilters;
+import com.example.graphql.person.model.Address;
 import com.example.graphql.person.model.Person;
 import com.example.graphql.person.service.PersonService;
 
@@ -18,23 +34,51 @@ import com.example.graphql.person.service.PersonService;
 public class PersonController {
 
     private final PersonService personService;
+    private final FetcherExecutor fetcherExecutor;
+    private final MultiSearchBatcher multiSearch;
+    private final SearchMetrics searchMetrics;
+    private final SearchLimits searchLimits;
 
-    public PersonController(PersonService personService) {
+    public PersonController(PersonService personService, BatchLoaderRegistry batchLoaderRegistry, FetcherExecutor fetcherExecutor, MultiSearchBatcher multiSearch, SearchMetrics searchMetrics, SearchLimits searchLimits) {
         this.personService = personService;
+        this.fetcherExecutor = fetcherExecutor;
+        this.multiSearch = multiSearch;
+        this.searchMetrics = searchMetrics;
+        this.searchLimits = searchLimits;
+        // DataLoaders are created per request, so this cache never outlives one query
+        batchLoaderRegistry.<Long, List<Address>>forName("personAddresses")
+                .registerMappedBatchLoader((personIds, env) -> Mono.fromCallable(() -> personService.findAddressesByPersonIds(personIds)));
+    }
+
+    /**
+     * Addresses of all persons on one level of the response in a single select.
+     * Search results and freshly created persons already carry theirs; only lazy JPA collections go to the loader.
+     */
+    @SchemaMapping(typeName = "Person")
+    public CompletableFuture<List<Address>> addresses(Person person, DataLoader<Long, List<Address>> personAddresses) {
+        if (person.getId() == null || Hibernate.isInitialized(person.getAddresses())) {
+            return CompletableFuture.completedFuture(person.getAddresses());
+        }
+        return personAddresses.load(person.getId());
     }
 
     @QueryMapping
-    public Optional<Person> personById(@Argument Long id) {
-        return personService.findById(id);
+    public CompletableFuture<Person> personById(@Argument Long id) {
+        return fetcherExecutor.supply(() -> personService.findById(id).orElse(null));
     }
 
     @QueryMapping
-    public PersonConnection searchPeople(
+    public CompletableFuture<PersonConnection> searchPeople(
             @Argument String text, 
             @Argument PersonFilterInput filter,
             @Argument Integer page,
             @Argument Integer size,
-            @Argument List<PersonSort> sort) {
+            @Argument List<PersonSort> sort,
+            @Argument Integer first,
+            @Argument String after,
+            @Argument FacetMode facetMode,
+            DataFetchingFieldSelectionSet selectionSet,
+            DataFetchingEnvironment env) {
         
         int pageNum = (page != null) ? page : 0;
         int pageSize = (size != null) ? size : 10;
@@ -58,8 +102,28 @@ public class PersonController {
             springSort = org.springframework.data.domain.Sort.by(orders);
         }
         
-        PersonService.PersonSearchResponse response = personService.searchWithFacets(text, filter, org.springframework.data.domain.PageRequest.of(pageNum, pageSize, springSort));
-        
+        // Cursor mode: search_after from the decoded cursor instead of from/size
+        boolean cursorMode = first != null || after != null;
+        // Pathological filters and pages are refused before a query is built (see SearchLimits)
+        searchLimits.checkPaging(cursorMode ? 0 : pageNum, cursorMode && first != null ? first : pageSize);
+        searchLimits.check(cursorMode
+                ? SearchCost.of(filter, 0, (first != null) ? first : pageSize)
+                : SearchCost.of(filter, (long) pageNum * pageSize, pageSize));
+        // Arguments and selection are resolved here, so bad input fails before anything is scheduled
+        List<Object> searchAfter = (after != null) ? SearchCursor.decode(after) : null;
+        PersonService.SearchSelection selection = toSelection(selectionSet, facetMode == FacetMode.MULTI_SELECT);
+        org.springframework.data.domain.Sort finalSort = springSort;
+
+        // The ES call runs on the fetcher executor and goes out in one _msearch with the document's other search fields
+        return multiSearch.supply(env, () -> cursorMode
+                ? personService.searchAfter(text, filter, finalSort, (first != null) ? first : pageSize, searchAfter, selection)
+                : personService.searchWithFacets(text, filter, org.springframework.data.domain.PageRequest.of(pageNum, pageSize, finalSort), selection))
+            .thenApply(response -> searchMetrics.time(SearchMetrics.STAGE_RESPONSE_MAPPING,
+                    SearchMetrics.tags(PersonService.SEARCH_OPERATION, selection.facetsTag()),
+                    () -> toConnection(response, cursorMode)));
+    }
+
+    private PersonConnection toConnection(PersonService.PersonSearchResponse response, boolean cursorMode) {
         List<FacetBucket> active = mapFacets(response.activeCounts());
         List<FacetBucket> country = mapFacets(response.countryCounts());
         List<FacetBucket> state = mapFacets(response.stateCounts());
@@ -74,23 +138,57 @@ public class PersonController {
             new PersonFacets(active, country, state),
             stats,
             (int) response.totalElements(),
-            response.totalPages()
+            response.totalPages(),
+            cursorMode ? mapEdges(response) : null,
+            cursorMode ? mapPageInfo(response) : null
+        );
+    }
+
+    private List<PersonEdge> mapEdges(PersonService.PersonSearchResponse response) {
+        List<PersonEdge> edges = new java.util.ArrayList<>(response.results().size());
+        for (int i = 0; i < response.results().size(); i++) {
+            edges.add(new PersonEdge(SearchCursor.encode(response.sortValues().get(i)), response.results().get(i)));
+        }
+        return edges;
+    }
+
+    private PageInfo mapPageInfo(PersonService.PersonSearchResponse response) {
+        List<List<Object>> sortValues = response.sortValues();
+        String endCursor = sortValues.isEmpty() ? null : SearchCursor.encode(sortValues.get(sortValues.size() - 1));
+        return new PageInfo(response.hasNextPage(), endCursor);
+    }
+
+    // Only ask ES for what the client selected; e.g. { totalElements } becomes a size=0 search without aggregations
+    // and { results { name } } only reads "id" and "name" from _source
+    private PersonService.SearchSelection toSelection(DataFetchingFieldSelectionSet selectionSet, boolean multiSelectFacets) {
+        return new PersonService.SearchSelection(
+            selectionSet.contains("results") || selectionSet.contains("edges") || selectionSet.contains("pageInfo"),
+            selectionSet.contains("facets/byActive"),
+            selectionSet.contains("facets/byCountry"),
+            selectionSet.contains("facets/byState"),
+            selectionSet.contains("stats/age"),
+            selectionSet.contains("stats/salary"),
+            SourceFilters.includes(selectionSet, "results", "edges/node"),
+            multiSelectFacets
         );
     }
 
-    private List<FacetBucket> mapFacets(java.util.Map<String, Long> counts) {
+    // Static and package-private for the jmh benchmarks
+    static List<FacetBucket> mapFacets(java.util.Map<String, Long> counts) {
         return counts.entrySet().stream()
                 .map(e -> new FacetBucket(e.getKey(), e.getValue().intValue()))
                 .collect(java.util.stream.Collectors.toList());
     }
     
-    private NumericStats mapStats(PersonService.NumericStats stats) {
+    static NumericStats mapStats(PersonService.NumericStats stats) {
         if (stats == null) return null;
         return new NumericStats(stats.min(), stats.max(), stats.avg(), stats.sum(), (int) stats.count());
     }
 
     public record NameFacet(String value, int count) {}
-    public record PersonConnection(List<Person> results, PersonFacets facets, PersonStats stats, int totalElements, int totalPages) {}
+    public record PersonConnection(List<Person> results, PersonFacets facets, PersonStats stats, int totalElements, int totalPages, List<PersonEdge> edges, PageInfo pageInfo) {}
+    public record PersonEdge(String cursor, Person node) {}
+    public record PageInfo(boolean hasNextPage, String endCursor) {}
     public record PersonFacets(List<FacetBucket> byActive, List<FacetBucket> byCountry, List<FacetBucket> byState) {}
     public record PersonStats(NumericStats salary, NumericStats age) {}
     public record NumericStats(Double min, Double max, Double avg, Double sum, Integer count) {}
@@ -0,0 +1,63 @@
+package com.example.graphql.person.controller;
+
+import com.example.graphql.person.filter.PersonFilterInput;
+import com.example.graphql.person.service.PersonService;
+import com.example.graphql.platform.search.SearchCost;
+import com.example.graphql.platform.search.SearchExporter;
+import com.example.graphql.platform.search.SearchLimitExceededException;
+import com.example.graphql.platform.search.SearchLimits;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Bulk export of everyone matching a person search, beyond the 10k window of searchPeople:
+ * <pre>POST /export/people?format=csv  {"text": "...", "filter": { ...PersonFilterInput... }}</pre>
+ * The body is written as it is read from Elasticsearch, on the request's (virtual) thread; nothing is buffered
+ * beyond one slice, so blocking on a slow client is the backpressure.
+ */
+@RestController
+public class PersonExportController {
+
+    /** Same arguments as searchPeople, minus paging; both may be omitted to export everyone. */
+    public record PersonExportRequest(String text, PersonFilterInput filter) {}
+
+    private final PersonService personService;
+    private final SearchLimits searchLimits;
+
+    public PersonExportController(PersonService personService, SearchLimits searchLimits) {
+        this.personService = personService;
+        this.searchLimits = searchLimits;
+    }
+
+    @PostMapping("/export/people")
+    public void exportPeople(@RequestBody(required = false) PersonExportRequest request,
+                             @RequestParam(defaultValue = "ndjson") String format,
+                             HttpServletResponse response) throws IOException {
+        String extension = format.toLowerCase(Locale.ROOT);
+        SearchExporter.Format exportFormat = switch (extension) {
+            case "ndjson" -> SearchExporter.Format.NDJSON;
+            case "csv" -> SearchExporter.Format.CSV;
+            default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown export format '" + format + "', expected ndjson or csv");
+        };
+        PersonExportRequest export = request != null ? request : new PersonExportRequest(null, null);
+        try {
+            // An export has no page; only the filter is limited
+            searchLimits.check(SearchCost.of(export.filter(), 0, 0));
+        } catch (SearchLimitExceededException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+
+        response.setContentType(exportFormat.contentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"people." + extension + "\"");
+        personService.export(export.text(), export.filter(), exportFormat, response.getOutputStream());
+    }
+}
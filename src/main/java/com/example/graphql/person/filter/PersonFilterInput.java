@@ -1,8 +1,10 @@
 package com.example.graphql.person.filter;
 
+import com.example.graphql.person.model.Person;
 import com.example.graphql.platform.filter.*;
 import java.util.List;
 
+@SearchFilter(Person.class)
 public record PersonFilterInput(
     StringFilter id,
     List<PersonFilterInput> and, 
@@ -21,12 +21,23 @@ public class Address {
 
     @org.springframework.data.elasticsearch.annotations.Field(type = org.springframework.data.elasticsearch.annotations.FieldType.Text, copyTo = "allSearchContent")
     private String street;
-    @org.springframework.data.elasticsearch.annotations.Field(type = org.springframework.data.elasticsearch.annotations.FieldType.Text, copyTo = "allSearchContent")
+    @org.springframework.data.elasticsearch.annotations.MultiField(
+            mainField = @org.springframework.data.elasticsearch.annotations.Field(type = org.springframework.data.elasticsearch.annotations.FieldType.Text, copyTo = "allSearchContent"),
+            otherFields = {
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = org.springframework.data.elasticsearch.annotations.FieldType.Keyword),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "ngram", type = org.springframework.data.elasticsearch.annotations.FieldType.Text, analyzer = "trigram"),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "reversed", type = org.springframework.data.elasticsearch.annotations.FieldType.Text, analyzer = "reversed_keyword")
+            }
+    )
     private String city;
 
     @org.springframework.data.elasticsearch.annotations.MultiField(
             mainField = @org.springframework.data.elasticsearch.annotations.Field(type = org.springframework.data.elasticsearch.annotations.FieldType.Text, copyTo = "allSearchContent"),
-            otherFields = { @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = org.springframework.data.elasticsearch.annotations.FieldType.Keyword) }
+            otherFields = {
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = org.springframework.data.elasticsearch.annotations.FieldType.Keyword),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "ngram", type = org.springframework.data.elasticsearch.annotations.FieldType.Text, analyzer = "trigram"),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "reversed", type = org.springframework.data.elasticsearch.annotations.FieldType.Text, analyzer = "reversed_keyword")
+            }
     )
     private String state;
 
@@ -35,7 +46,11 @@ public class Address {
 
     @org.springframework.data.elasticsearch.annotations.MultiField(
             mainField = @org.springframework.data.elasticsearch.annotations.Field(type = org.springframework.data.elasticsearch.annotations.FieldType.Text, copyTo = "allSearchContent"),
-            otherFields = { @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = org.springframework.data.elasticsearch.annotations.FieldType.Keyword) }
+            otherFields = {
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = org.springframework.data.elasticsearch.annotations.FieldType.Keyword),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "ngram", type = org.springframework.data.elasticsearch.annotations.FieldType.Text, analyzer = "trigram"),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "reversed", type = org.springframework.data.elasticsearch.annotations.FieldType.Text, analyzer = "reversed_keyword")
+            }
     )
     private String country;
     
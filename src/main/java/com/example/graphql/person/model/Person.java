@@ -13,6 +13,8 @@ import org.springframework.data.elasticsearch.annotations.FieldType;
 
 @Entity
 @Document(indexName = "person")
+// Analyzers for the .ngram and .reversed subfields that back StringFilter contains/endsWith
+@org.springframework.data.elasticsearch.annotations.Setting(settingPath = "/elasticsearch/person-settings.json")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -28,7 +30,11 @@ public class Person {
 
     @org.springframework.data.elasticsearch.annotations.MultiField(
             mainField = @Field(type = FieldType.Text, analyzer = "standard", copyTo = "allSearchContent"),
-            otherFields = { @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = FieldType.Keyword) }
+            otherFields = {
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = FieldType.Keyword),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "ngram", type = FieldType.Text, analyzer = "trigram"),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "reversed", type = FieldType.Text, analyzer = "reversed_keyword")
+            }
     )
     private String name;
     
@@ -37,7 +43,11 @@ public class Person {
 
     @org.springframework.data.elasticsearch.annotations.MultiField(
             mainField = @Field(type = FieldType.Text, analyzer = "standard", copyTo = "allSearchContent"),
-            otherFields = { @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = FieldType.Keyword) }
+            otherFields = {
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "keyword", type = FieldType.Keyword),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "ngram", type = FieldType.Text, analyzer = "trigram"),
+                    @org.springframework.data.elasticsearch.annotations.InnerField(suffix = "reversed", type = FieldType.Text, analyzer = "reversed_keyword")
+            }
     )
     private String email;
 
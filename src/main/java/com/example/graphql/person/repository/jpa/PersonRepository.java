@@ -3,9 +3,27 @@ package com.example.graphql.person.repository.jpa;
 import com.example.graphql.person.model.Person;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface PersonRepository extends JpaRepository<Person, Long> {
+public interface PersonRepository extends JpaRepository<Person, Long>, JpaSpecificationExecutor<Person> {
     java.util.List<Person> findByAddresses_City(String city);
+
+    // Everything the search document embeds, in one select
+    @Query("select distinct p from Person p left join fetch p.addresses where p.id in :ids")
+    java.util.List<Person> findAllWithAddressesByIdIn(@Param("ids") java.util.Collection<Long> ids);
+
+    // Keyset pages for full reindexing; the fetch join happens in a second select so the limit stays in SQL
+    @Query("select p.id from Person p where p.id > :after and p.id <= :upTo order by p.id")
+    java.util.List<Long> findIdsAfter(@Param("after") long after, @Param("upTo") long upTo, org.springframework.data.domain.Pageable pageable);
+
+    @Query("select coalesce(max(p.id), 0) from Person p")
+    long findMaxId();
+
+    // [personId, address] pairs for GraphQL batch loading: all addresses of a request level in one select
+    @Query("select a.person.id, a from Address a where a.person.id in :personIds order by a.id")
+    java.util.List<Object[]> findAddressesByPersonIdIn(@Param("personIds") java.util.Collection<Long> personIds);
 }
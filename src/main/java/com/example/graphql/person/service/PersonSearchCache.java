@@ -0,0 +1,86 @@
+package com.example.graphql.person.service;
+
+import com.example.graphql.person.filter.PersonFilterInput;
+import com.example.graphql.platform.search.FilterCanonicalizer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache in front of {@link PersonService#searchWithFacets}.
+ * Keys are built from a canonical form of (text, filter, pageable, search_after values) plus the requested selection,
+ * so equivalent requests share an entry.
+ * Every key also carries the write generation it was computed in; {@link #invalidate()} bumps the
+ * generation, so a search that raced with a write can never be served after the write.
+ * Hit/miss/eviction counts are published as the "person.search" cache metrics.
+ * Misses are single-flighted by {@link PersonService} under the same key, so a burst of identical searches
+ * costs one ES request.
+ */
+@Component
+public class PersonSearchCache {
+
+    record Key(long generation, String text, String filter, int page, int size, String sort, List<Object> searchAfter, PersonService.SearchSelection selection) {}
+
+    private final Cache<Key, PersonService.PersonSearchResponse> cache;
+    private final AtomicLong generation = new AtomicLong();
+
+    public PersonSearchCache(MeterRegistry meterRegistry,
+                             @Value("${search.cache.person.max-size:1000}") long maxSize,
+                             @Value("${search.cache.person.ttl:30s}") Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "person.search");
+        Gauge.builder("person.search.cache.generation", generation, AtomicLong::get)
+                .description("Number of person writes that invalidated the search cache")
+                .register(meterRegistry);
+    }
+
+    public PersonService.PersonSearchResponse get(String text, PersonFilterInput filter, Pageable pageable, List<Object> searchAfter,
+                                                  PersonService.SearchSelection selection, Supplier<PersonService.PersonSearchResponse> loader) {
+        return get(key(text, filter, pageable, searchAfter, selection), loader);
+    }
+
+    /** Same as above for a key the caller already built, e.g. to single-flight the miss under it. */
+    PersonService.PersonSearchResponse get(Key key, Supplier<PersonService.PersonSearchResponse> loader) {
+        PersonService.PersonSearchResponse cached = cache.getIfPresent(key);
+        if (cached != null) return cached;
+        // Load outside Caffeine's compute: it holds a map lock, which would pin a virtual thread for the whole ES call
+        PersonService.PersonSearchResponse response = loader.get();
+        if (response != null) cache.put(key, response);
+        return response;
+    }
+
+    /** Called on every person write. Entries of older generations become unreachable and are dropped. */
+    public void invalidate() {
+        generation.incrementAndGet();
+        cache.invalidateAll();
+    }
+
+    /** The canonical form of a search; also the key under which identical in-flight searches are shared. */
+    Key key(String text, PersonFilterInput filter, Pageable pageable, List<Object> searchAfter, PersonService.SearchSelection selection) {
+        // Without results the page number and sort don't affect the response, only the page size (totalPages) does
+        boolean hits = selection.results();
+        return new Key(
+                generation.get(),
+                FilterCanonicalizer.normalizeText(text),
+                FilterCanonicalizer.canonicalize(filter),
+                hits ? pageable.getPageNumber() : 0,
+                pageable.getPageSize(),
+                hits ? pageable.getSort().toString() : "",
+                hits ? searchAfter : null,
+                selection);
+    }
+}
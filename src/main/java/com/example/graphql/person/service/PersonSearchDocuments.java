@@ -0,0 +1,58 @@
+package com.example.graphql.person.service;
+
+import com.example.graphql.person.repository.jpa.PersonRepository;
+import com.example.graphql.person.model.Person;
+import com.example.graphql.platform.indexing.outbox.SearchDocumentSource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Search document source for the "person" index: a person with its addresses.
+ */
+@Component
+public class PersonSearchDocuments implements SearchDocumentSource {
+
+    public static final String AGGREGATE_TYPE = "person";
+
+    private final PersonRepository personRepository;
+    private final PersonSearchCache searchCache;
+
+    public PersonSearchDocuments(PersonRepository personRepository, PersonSearchCache searchCache) {
+        this.personRepository = personRepository;
+        this.searchCache = searchCache;
+    }
+
+    @Override
+    public String aggregateType() {
+        return AGGREGATE_TYPE;
+    }
+
+    @Override
+    public Class<?> documentType() {
+        return Person.class;
+    }
+
+    @Override
+    public long maxId() {
+        return personRepository.findMaxId();
+    }
+
+    @Override
+    public List<Long> idsAfter(long afterId, long upToId, int limit) {
+        return personRepository.findIdsAfter(afterId, upToId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<?> loadForIndexing(Collection<Long> ids) {
+        return personRepository.findAllWithAddressesByIdIn(ids);
+    }
+
+    @Override
+    public void afterIndexed(Collection<Long> ids) {
+        // ES now serves the new documents, so cached search results may be stale
+        searchCache.invalidate();
+    }
+}
@@ -1,12 +1,12 @@
 package com.example.graphql.person.service;
 
 import com.example.graphql.person.repository.jpa.PersonRepository;
-import com.example.graphql.person.repository.search.PersonSearchRepository;
 import com.example.graphql.person.model.Person;
 import com.example.graphql.person.model.Address;
 import org.springframework.stereotype.Service;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import co.elastic.clients.elasticsearch._types.aggregations.StringTermsAggregate;
 import co.elastic.clients.elasticsearch._types.aggregations.StringTermsBucket;
@@ -25,25 +25,277 @@ import co.elastic.clients.elasticsearch._types.aggregations.LongTermsBucket;
 
 import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
 
+import com.example.graphql.platform.indexing.outbox.SearchOutbox;
+import com.example.graphql.platform.search.ElasticsearchHealth;
 import com.example.graphql.platform.search.ElasticsearchQueryBuilder;
+import com.example.graphql.platform.search.InvalidCursorException;
+import com.example.graphql.platform.search.JpaSpecificationBuilder;
+import com.example.graphql.platform.search.SearchExporter;
+import com.example.graphql.platform.search.MultiSearchBatcher;
+import com.example.graphql.platform.search.SearchMetrics;
+import com.example.graphql.platform.search.SearchOverloadedException;
+import com.example.graphql.platform.search.SingleFlight;
+import com.example.graphql.platform.search.SourceFilters;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
 import com.example.graphql.person.filter.PersonFilterInput;
 
 @Service
 public class PersonService {
 
+    /** The {@code operation} tag of this service's search pipeline metrics. */
+    public static final String SEARCH_OPERATION = "searchPeople";
+
+    /** CSV columns of {@link #export}; addresses are nested, so their columns hold the values of all of them. */
+    private static final List<String> EXPORT_COLUMNS = List.of("id", "name", "email", "phoneNumber", "age", "birthDate", "isActive", "salary",
+            "addresses.street", "addresses.city", "addresses.state", "addresses.zip", "addresses.country");
+
+    /** Filter aggregations of the multi-select mode, each holding the aggregations of one facet (or the stats). */
+    private static final List<String> FACET_SCOPES = List.of("active_facet", "country_facet", "state_facet", "stats_facet");
+
     private final PersonRepository personRepository;
-    private final PersonSearchRepository personSearchRepository;
+    private final SearchOutbox searchOutbox;
     private final ElasticsearchOperations elasticsearchOperations;
     private final ElasticsearchQueryBuilder queryBuilder;
+    private final PersonSearchCache searchCache;
+    private final MultiSearchBatcher multiSearch;
+    private final SingleFlight<PersonSearchCache.Key, PersonSearchResponse> searchFlights;
+    private final SearchMetrics searchMetrics;
+    private final SearchExporter searchExporter;
+    private final JpaSpecificationBuilder specificationBuilder;
+    private final ElasticsearchHealth elasticsearchHealth;
+    private final io.micrometer.core.instrument.MeterRegistry meterRegistry;
+    private final int routingMaxKeys;
 
-    public PersonService(PersonRepository personRepository, PersonSearchRepository personSearchRepository, ElasticsearchOperations elasticsearchOperations, ElasticsearchQueryBuilder queryBuilder) {
+    public PersonService(PersonRepository personRepository, SearchOutbox searchOutbox, ElasticsearchOperations elasticsearchOperations, ElasticsearchQueryBuilder queryBuilder, PersonSearchCache searchCache, MultiSearchBatcher multiSearch, SearchMetrics searchMetrics, SearchExporter searchExporter,
+                         JpaSpecificationBuilder specificationBuilder, ElasticsearchHealth elasticsearchHealth,
+                         io.micrometer.core.instrument.MeterRegistry meterRegistry,
+                         @org.springframework.beans.factory.annotation.Value("${search.singleflight.timeout:5s}") java.time.Duration singleFlightTimeout,
+                         @org.springframework.beans.factory.annotation.Value("${search.routing.max-keys:100}") int routingMaxKeys) {
         this.personRepository = personRepository;
-        this.personSearchRepository = personSearchRepository;
+        this.searchOutbox = searchOutbox;
         this.elasticsearchOperations = elasticsearchOperations;
         this.queryBuilder = queryBuilder;
+        this.searchCache = searchCache;
+        this.multiSearch = multiSearch;
+        this.searchMetrics = searchMetrics;
+        this.searchExporter = searchExporter;
+        this.specificationBuilder = specificationBuilder;
+        this.elasticsearchHealth = elasticsearchHealth;
+        this.meterRegistry = meterRegistry;
+        this.routingMaxKeys = routingMaxKeys;
+        this.searchFlights = new SingleFlight<>("person.search", singleFlightTimeout, meterRegistry, multiSearch::leaveBatch);
     }
 
     public PersonSearchResponse searchWithFacets(String text, PersonFilterInput filter, org.springframework.data.domain.Pageable pageable) {
+        return searchWithFacets(text, filter, pageable, SearchSelection.ALL);
+    }
+
+    /**
+     * Same as {@link #searchWithFacets(String, PersonFilterInput, org.springframework.data.domain.Pageable)} but only
+     * asks ES for the parts of the response the caller will read. Unselected facets come back empty, unselected stats null.
+     * <p>
+     * Searches without text, facets or stats are plain filtered selects, which the database can answer as well (see
+     * {@link JpaSpecificationBuilder}). Those go there when the filter pins the id to at most {@code search.routing.max-keys}
+     * values (a primary key lookup beats a search round trip), while {@link ElasticsearchHealth} says ES is degraded,
+     * and when ES sheds the search. Everything else, and every cursor page (its sort values come from ES), stays on ES.
+     * The {@code search.route} counter tells which backend answered and why.
+     */
+    public PersonSearchResponse searchWithFacets(String text, PersonFilterInput filter, org.springframework.data.domain.Pageable pageable, SearchSelection selection) {
+        PersonSearchCache.Key key = searchCache.key(text, filter, pageable, null, selection);
+        return searchCache.get(key, () -> searchFlights.execute(key, () -> routedSearch(text, filter, pageable, selection)));
+    }
+
+    private PersonSearchResponse routedSearch(String text, PersonFilterInput filter, org.springframework.data.domain.Pageable pageable, SearchSelection selection) {
+        boolean databaseCapable = (text == null || text.trim().isEmpty()) && !selection.multiSelectFacets()
+                && !selection.hasFacetsOrStats();
+        if (databaseCapable && isKeyLookup(filter)) return databaseSearch(filter, pageable, selection, "key-lookup");
+        if (databaseCapable && elasticsearchHealth.degraded()) return databaseSearch(filter, pageable, selection, "degraded");
+        try {
+            PersonSearchResponse response = doSearchWithFacets(text, filter, pageable, null, selection);
+            meterRegistry.counter("search.route", "backend", "elasticsearch", "reason", "default").increment();
+            return response;
+        } catch (SearchOverloadedException e) {
+            if (!databaseCapable) throw e;
+            return databaseSearch(filter, pageable, selection, "overloaded");
+        }
+    }
+
+    /** Whether {@code filter} is a conjunction with an id eq/in among its clauses, i.e. selects at most a few rows by key. */
+    private boolean isKeyLookup(PersonFilterInput filter) {
+        if (filter == null) return false;
+        if (filter.id() != null) {
+            com.example.graphql.platform.filter.StringFilter id = filter.id();
+            if (id.eq() != null) return true;
+            if (id.in() != null && id.in().size() <= routingMaxKeys) return true;
+        }
+        return filter.and() != null && filter.and().stream().anyMatch(this::isKeyLookup);
+    }
+
+    /** The search as a select over the person table; facets are never asked for on this path, so they are empty. */
+    private PersonSearchResponse databaseSearch(PersonFilterInput filter, org.springframework.data.domain.Pageable pageable, SearchSelection selection, String reason) {
+        // Nothing of this goes to ES: the sibling search fields must not wait for it
+        multiSearch.leaveBatch();
+        meterRegistry.counter("search.route", "backend", "database", "reason", reason).increment();
+        org.springframework.data.jpa.domain.Specification<Person> specification = specificationBuilder.build(filter);
+        List<Person> people = List.of();
+        long totalElements;
+        if (selection.results()) {
+            org.springframework.data.domain.Page<Person> page = personRepository.findAll(specification, org.springframework.data.domain.PageRequest.of(
+                    pageable.getPageNumber(), pageable.getPageSize(), databaseSort(pageable.getSort())));
+            people = page.getContent();
+            totalElements = page.getTotalElements();
+        } else {
+            totalElements = personRepository.count(specification);
+        }
+        int totalPages = (int) Math.ceil((double) totalElements / pageable.getPageSize());
+        boolean hasNextPage = pageable.getPageNumber() + 1 < totalPages;
+        return new PersonSearchResponse(people, Map.of(), Map.of(), Map.of(), null, null, totalElements, totalPages, List.of(), hasNextPage);
+    }
+
+    /** The index sort as entity attributes ("name.keyword" sorts by "name"), with the id as tiebreaker like on ES. */
+    private static org.springframework.data.domain.Sort databaseSort(org.springframework.data.domain.Sort sort) {
+        List<org.springframework.data.domain.Sort.Order> orders = new java.util.ArrayList<>();
+        for (org.springframework.data.domain.Sort.Order order : sort) {
+            String property = order.getProperty().endsWith(".keyword")
+                    ? order.getProperty().substring(0, order.getProperty().length() - ".keyword".length())
+                    : order.getProperty();
+            if (!property.equals("_score")) orders.add(order.withProperty(property));
+        }
+        orders.add(org.springframework.data.domain.Sort.Order.asc("id"));
+        return org.springframework.data.domain.Sort.by(orders);
+    }
+
+    /**
+     * Cursor based variant backed by search_after: returns the {@code first} hits following the hit whose sort values are
+     * {@code after} (null for the first page). The sort always ends with "id" as tiebreaker, so every hit has a unique
+     * position and the cost of a page does not depend on its depth.
+     */
+    public PersonSearchResponse searchAfter(String text, PersonFilterInput filter, org.springframework.data.domain.Sort sort, int first, List<Object> after, SearchSelection selection) {
+        org.springframework.data.domain.Sort cursorSort = cursorSort(text, sort);
+        if (after != null && after.size() != cursorSort.stream().count()) {
+            throw new InvalidCursorException("Cursor does not match the requested sort", null);
+        }
+
+        // One extra hit tells us whether there is a next page
+        org.springframework.data.domain.Pageable pageable = org.springframework.data.domain.PageRequest.of(0, first + 1, cursorSort);
+        PersonSearchCache.Key key = searchCache.key(text, filter, pageable, after, selection);
+        PersonSearchResponse response = searchCache.get(key, () -> searchFlights.execute(key,
+                () -> doSearchWithFacets(text, filter, pageable, after, selection)));
+
+        List<Person> results = response.results();
+        List<List<Object>> sortValues = response.sortValues();
+        boolean hasNextPage = results.size() > first;
+        if (hasNextPage) {
+            results = results.subList(0, first);
+            sortValues = sortValues.subList(0, first);
+        }
+        int totalPages = (int) Math.ceil((double) response.totalElements() / first);
+        return new PersonSearchResponse(results, response.activeCounts(), response.countryCounts(), response.stateCounts(), response.ageStats(), response.salaryStats(), response.totalElements(), totalPages, sortValues, hasNextPage);
+    }
+
+    private org.springframework.data.domain.Sort cursorSort(String text, org.springframework.data.domain.Sort sort) {
+        org.springframework.data.domain.Sort base = sort;
+        if (base.isUnsorted() && text != null && !text.trim().isEmpty()) {
+            base = org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.DESC, "_score");
+        }
+        return base.and(org.springframework.data.domain.Sort.by(org.springframework.data.domain.Sort.Direction.ASC, "id"));
+    }
+
+    private PersonSearchResponse doSearchWithFacets(String text, PersonFilterInput filter, org.springframework.data.domain.Pageable pageable, List<Object> searchAfter, SearchSelection selection) {
+        io.micrometer.core.instrument.Tags stageTags = SearchMetrics.tags(SEARCH_OPERATION, selection.facetsTag());
+        NativeQuery query = searchMetrics.time(SearchMetrics.STAGE_QUERY_BUILD, stageTags, () -> buildSearchQuery(text, filter, pageable, searchAfter, selection));
+
+        // Joins the other search fields of the same GraphQL request in one _msearch
+        SearchHits<Person> searchHits = searchMetrics.search(stageTags, () -> multiSearch.search(query, Person.class));
+        List<org.springframework.data.elasticsearch.core.SearchHit<Person>> hits = searchHits.stream().collect(Collectors.toList());
+        List<Person> people = hits.stream().map(org.springframework.data.elasticsearch.core.SearchHit::getContent).collect(Collectors.toList());
+        List<List<Object>> sortValues = hits.stream().map(org.springframework.data.elasticsearch.core.SearchHit::getSortValues).collect(Collectors.toList());
+        long totalElements = searchHits.getTotalHits();
+        int totalPages = (int) Math.ceil((double) totalElements / pageable.getPageSize());
+        boolean hasNextPage = pageable.getPageNumber() + 1 < totalPages;
+
+        return searchMetrics.time(SearchMetrics.STAGE_AGGREGATIONS, stageTags, () -> {
+            Map<String, Long> activeCounts = new HashMap<>();
+            Map<String, Long> countryCounts = new HashMap<>();
+            Map<String, Long> stateCounts = new HashMap<>();
+            NumericStats ageStats = null;
+            NumericStats salaryStats = null;
+
+            if (searchHits.getAggregations() instanceof ElasticsearchAggregations aggregations) {
+                parseTerms(aggregations, "active_counts", activeCounts);
+
+                ElasticsearchAggregation nestedAgg = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get("address_aggs");
+                if (nestedAgg != null) {
+                    parseAddressTerms(nestedAgg.aggregation().getAggregate(), countryCounts, stateCounts);
+                }
+
+                ageStats = parseStats(aggregations, "age_stats");
+                salaryStats = parseStats(aggregations, "salary_stats");
+
+                // Multi-select mode: the same aggregations, one level down in their facet's filter aggregation
+                for (String scope : FACET_SCOPES) {
+                    ElasticsearchAggregation scoped = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get(scope);
+                    if (scoped == null) continue;
+                    Map<String, Aggregate> subAggs = scoped.aggregation().getAggregate().filter().aggregations();
+                    parseTermsFromMap(subAggs, "active_counts", activeCounts);
+                    if (subAggs.get("address_aggs") != null) {
+                        parseAddressTerms(subAggs.get("address_aggs"), countryCounts, stateCounts);
+                    }
+                    if (subAggs.get("age_stats") != null) ageStats = toStats(subAggs.get("age_stats").stats());
+                    if (subAggs.get("salary_stats") != null) salaryStats = toStats(subAggs.get("salary_stats").stats());
+                }
+            }
+
+            return new PersonSearchResponse(people, activeCounts, countryCounts, stateCounts, ageStats, salaryStats, totalElements, totalPages, sortValues, hasNextPage);
+        });
+    }
+
+    private NativeQuery buildSearchQuery(String text, PersonFilterInput filter, org.springframework.data.domain.Pageable pageable, List<Object> searchAfter, SearchSelection selection) {
+        // 1.-2. Text search and filter (see searchQuery); in multi-select mode the facet filters move to post_filter
+        FacetFilters facetFilters = selection.multiSelectFacets() && filter != null ? facetFilters(filter) : null;
+        NativeQueryBuilder nativeQuery = NativeQuery.builder()
+                .withQuery(searchQuery(text, facetFilters != null ? withoutFacetFilters(filter) : filter));
+        if (facetFilters != null) {
+            // Hits and totalElements see every filter, aggregations only what their facet's filter aggregation adds back
+            nativeQuery.withFilter(facetFilters.except(null));
+        }
+
+        // 3. Only fetch hits (and only the selected fields of them) when results are selected; totalElements alone is a size=0 search
+        if (selection.results()) {
+            nativeQuery.withPageable(pageable);
+            if (searchAfter != null) {
+                nativeQuery.withSearchAfter(searchAfter);
+            }
+            SourceFilter sourceFilter = SourceFilters.toSourceFilter(selection.sourceIncludes());
+            if (sourceFilter != null) {
+                nativeQuery.withSourceFilter(sourceFilter);
+            }
+        } else {
+            nativeQuery.withMaxResults(0);
+        }
+
+        // 4. Only compute the aggregations that were asked for (the nested one is the expensive part)
+        if (facetFilters != null) {
+            addMultiSelectAggregations(nativeQuery, selection, facetFilters);
+            return nativeQuery.build();
+        }
+        if (selection.activeCounts()) {
+            nativeQuery.withAggregation("active_counts", activeCountsAggregation());
+        }
+        if (selection.countryCounts() || selection.stateCounts()) {
+            nativeQuery.withAggregation("address_aggs", addressAggregation(selection.countryCounts(), selection.stateCounts()));
+        }
+        if (selection.ageStats()) {
+            nativeQuery.withAggregation("age_stats", statsAggregation("age"));
+        }
+        if (selection.salaryStats()) {
+            nativeQuery.withAggregation("salary_stats", statsAggregation("salary"));
+        }
+        return nativeQuery.build();
+    }
+
+    /** Text relevance over the person and its addresses, with the filter in non-scoring context. */
+    private co.elastic.clients.elasticsearch._types.query_dsl.Query searchQuery(String text, PersonFilterInput filter) {
         co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder boolBuilder = new co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery.Builder();
 
         // 1. Text Search Logic
@@ -65,72 +317,138 @@ public class PersonService {
                 boolBuilder.filter(filterQuery);
             }
         }
+        return co.elastic.clients.elasticsearch._types.query_dsl.Query.of(q -> q.bool(boolBuilder.build()));
+    }
 
-        NativeQuery query = NativeQuery.builder()
-                .withQuery(q -> q.bool(boolBuilder.build()))
-                .withPageable(pageable)
-                .withAggregation("active_counts", Aggregation.of(a -> a.terms(t -> t.field("isActive"))))
-                .withAggregation("address_aggs", Aggregation.of(a -> a.nested(n -> n.path("addresses"))
-                        .aggregations("country_counts", sub -> sub.terms(t -> t.field("addresses.country.keyword").size(10)))
-                        .aggregations("state_counts", sub -> sub.terms(t -> t.field("addresses.state.keyword").size(10)))
-                ))
-                .withAggregation("age_stats", Aggregation.of(a -> a.stats(s -> s.field("age"))))
-                .withAggregation("salary_stats", Aggregation.of(a -> a.stats(s -> s.field("salary"))))
-                .build();
+    /** Exports every person matching the search (see {@link SearchExporter}); returns the number written. */
+    public long export(String text, PersonFilterInput filter, SearchExporter.Format format, java.io.OutputStream out) throws java.io.IOException {
+        String index = elasticsearchOperations.getIndexCoordinatesFor(Person.class).getIndexName();
+        return searchExporter.export(index, searchQuery(text, filter), format, EXPORT_COLUMNS, out);
+    }
 
-        SearchHits<Person> searchHits = elasticsearchOperations.search(query, Person.class);
-        List<Person> people = searchHits.stream().map(org.springframework.data.elasticsearch.core.SearchHit::getContent).collect(Collectors.toList());
-        long totalElements = searchHits.getTotalHits();
-        int totalPages = (int) Math.ceil((double) totalElements / pageable.getPageSize());
-        
-        Map<String, Long> activeCounts = new HashMap<>();
-        Map<String, Long> countryCounts = new HashMap<>();
-        Map<String, Long> stateCounts = new HashMap<>();
-        NumericStats ageStats = null;
-        NumericStats salaryStats = null;
-
-        if (searchHits.getAggregations() instanceof ElasticsearchAggregations aggregations) {
-            parseTerms(aggregations, "active_counts", activeCounts);
-            
-            ElasticsearchAggregation nestedAgg = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get("address_aggs");
-            if (nestedAgg != null) {
-                NestedAggregate nestedBucket = nestedAgg.aggregation().getAggregate().nested();
-                Map<String, Aggregate> subAggs = nestedBucket.aggregations();
-                parseTermsFromMap(subAggs, "country_counts", countryCounts);
-                parseTermsFromMap(subAggs, "state_counts", stateCounts);
+    /**
+     * Disjunctive facets in one search: the facet filters are only applied as post_filter, and each facet is computed
+     * under a filter aggregation of all facet filters except its own. The stats are not a facet and see all of them.
+     */
+    private void addMultiSelectAggregations(NativeQueryBuilder nativeQuery, SearchSelection selection, FacetFilters facetFilters) {
+        if (selection.activeCounts()) {
+            nativeQuery.withAggregation("active_facet", Aggregation.of(a -> a.filter(facetFilters.except(FacetFilters.ACTIVE))
+                    .aggregations("active_counts", activeCountsAggregation())));
+        }
+        // Country and state each need their own scope, so they no longer share one nested aggregation
+        if (selection.countryCounts()) {
+            nativeQuery.withAggregation("country_facet", Aggregation.of(a -> a.filter(facetFilters.except(FacetFilters.COUNTRY))
+                    .aggregations("address_aggs", addressAggregation(true, false))));
+        }
+        if (selection.stateCounts()) {
+            nativeQuery.withAggregation("state_facet", Aggregation.of(a -> a.filter(facetFilters.except(FacetFilters.STATE))
+                    .aggregations("address_aggs", addressAggregation(false, true))));
+        }
+        if (selection.ageStats() || selection.salaryStats()) {
+            Map<String, Aggregation> stats = new HashMap<>();
+            if (selection.ageStats()) stats.put("age_stats", statsAggregation("age"));
+            if (selection.salaryStats()) stats.put("salary_stats", statsAggregation("salary"));
+            nativeQuery.withAggregation("stats_facet", Aggregation.of(a -> a.filter(facetFilters.except(null)).aggregations(stats)));
+        }
+    }
+
+    private static Aggregation activeCountsAggregation() {
+        return Aggregation.of(a -> a.terms(t -> t.field("isActive")));
+    }
+
+    private static Aggregation addressAggregation(boolean countryCounts, boolean stateCounts) {
+        return Aggregation.of(a -> {
+            Aggregation.Builder.ContainerBuilder nested = a.nested(n -> n.path("addresses"));
+            if (countryCounts) {
+                nested.aggregations("country_counts", sub -> sub.terms(t -> t.field("addresses.country.keyword").size(10)));
+            }
+            if (stateCounts) {
+                nested.aggregations("state_counts", sub -> sub.terms(t -> t.field("addresses.state.keyword").size(10)));
             }
+            return nested;
+        });
+    }
 
-            ageStats = parseStats(aggregations, "age_stats");
-            salaryStats = parseStats(aggregations, "salary_stats");
+    private static Aggregation statsAggregation(String field) {
+        return Aggregation.of(a -> a.stats(s -> s.field(field)));
+    }
+
+    /**
+     * The top-level filters on faceted fields, each as its own query; null where the filter does not set it.
+     * Facet fields inside and/or/not stay in the main query: they cannot be taken out without changing its meaning.
+     */
+    private record FacetFilters(co.elastic.clients.elasticsearch._types.query_dsl.Query active,
+                                co.elastic.clients.elasticsearch._types.query_dsl.Query country,
+                                co.elastic.clients.elasticsearch._types.query_dsl.Query state) {
+        static final String ACTIVE = "active";
+        static final String COUNTRY = "country";
+        static final String STATE = "state";
+
+        /** All facet filters but {@code facet} (null for all of them) as one query; match_all if that leaves none. */
+        co.elastic.clients.elasticsearch._types.query_dsl.Query except(String facet) {
+            List<co.elastic.clients.elasticsearch._types.query_dsl.Query> filters = new java.util.ArrayList<>(3);
+            if (active != null && !ACTIVE.equals(facet)) filters.add(active);
+            if (country != null && !COUNTRY.equals(facet)) filters.add(country);
+            if (state != null && !STATE.equals(facet)) filters.add(state);
+            if (filters.isEmpty()) return co.elastic.clients.elasticsearch._types.query_dsl.Query.of(q -> q.matchAll(m -> m));
+            if (filters.size() == 1) return filters.get(0);
+            return co.elastic.clients.elasticsearch._types.query_dsl.Query.of(q -> q.bool(b -> b.filter(filters)));
         }
+    }
 
-        return new PersonSearchResponse(people, activeCounts, countryCounts, stateCounts, ageStats, salaryStats, totalElements, totalPages);
+    /** @return the facet filters of {@code filter}, or null if it sets none (multi-select then equals the standard mode) */
+    private FacetFilters facetFilters(PersonFilterInput filter) {
+        co.elastic.clients.elasticsearch._types.query_dsl.Query active = filter.isActive() == null ? null
+                : queryBuilder.build(new PersonFilterInput(null, null, null, null, null, null, null, null, null, filter.isActive(), null, null, null));
+        co.elastic.clients.elasticsearch._types.query_dsl.Query country = filter.addresses_country() == null ? null
+                : queryBuilder.build(new PersonFilterInput(null, null, null, null, null, null, null, null, null, null, filter.addresses_country(), null, null));
+        co.elastic.clients.elasticsearch._types.query_dsl.Query state = filter.addresses_state() == null ? null
+                : queryBuilder.build(new PersonFilterInput(null, null, null, null, null, null, null, null, null, null, null, filter.addresses_state(), null));
+        if (active == null && country == null && state == null) return null;
+        return new FacetFilters(active, country, state);
     }
 
-    private NumericStats parseStats(ElasticsearchAggregations aggregations, String key) {
+    private static PersonFilterInput withoutFacetFilters(PersonFilterInput filter) {
+        return new PersonFilterInput(filter.id(), filter.and(), filter.or(), filter.not(), filter.name(), filter.email(), filter.age(),
+                filter.salary(), filter.birthDate(), null, null, null, filter.addresses_city());
+    }
+
+    // Static and package-private for the jmh benchmarks, as are the aggregation parsers below
+    static NumericStats parseStats(ElasticsearchAggregations aggregations, String key) {
         ElasticsearchAggregation agg = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get(key);
         if (agg != null) {
-            StatsAggregate stats = agg.aggregation().getAggregate().stats();
-            return new NumericStats(stats.min(), stats.max(), stats.avg(), stats.sum(), stats.count());
+            return toStats(agg.aggregation().getAggregate().stats());
         }
         return null;
     }
 
-    private void parseTerms(ElasticsearchAggregations aggregations, String key, Map<String, Long> target) {
+    static NumericStats toStats(StatsAggregate stats) {
+        return new NumericStats(stats.min(), stats.max(), stats.avg(), stats.sum(), stats.count());
+    }
+
+    /** The country/state terms inside the "address_aggs" nested aggregation. */
+    static void parseAddressTerms(Aggregate addressAggs, Map<String, Long> countryCounts, Map<String, Long> stateCounts) {
+        NestedAggregate nestedBucket = addressAggs.nested();
+        Map<String, Aggregate> subAggs = nestedBucket.aggregations();
+        parseTermsFromMap(subAggs, "country_counts", countryCounts);
+        parseTermsFromMap(subAggs, "state_counts", stateCounts);
+    }
+
+    static void parseTerms(ElasticsearchAggregations aggregations, String key, Map<String, Long> target) {
         ElasticsearchAggregation agg = (ElasticsearchAggregation) aggregations.aggregationsAsMap().get(key);
         if (agg != null) {
             populateMap(agg.aggregation().getAggregate(), target);
         }
     }
 
-    private void parseTermsFromMap(Map<String, Aggregate> aggs, String key, Map<String, Long> target) {
+    static void parseTermsFromMap(Map<String, Aggregate> aggs, String key, Map<String, Long> target) {
         Aggregate agg = aggs.get(key);
         if (agg != null) {
             populateMap(agg, target);
         }
     }
 
-    private void populateMap(Aggregate aggregate, Map<String, Long> target) {
+    static void populateMap(Aggregate aggregate, Map<String, Long> target) {
         if (aggregate.isSterms()) {
             for (StringTermsBucket bucket : aggregate.sterms().buckets().array()) {
                 target.put(bucket.key().stringValue(), bucket.docCount());
@@ -142,10 +460,44 @@ public class PersonService {
         }
     }
 
-    public record PersonSearchResponse(List<Person> results, Map<String, Long> activeCounts, Map<String, Long> countryCounts, Map<String, Long> stateCounts, NumericStats ageStats, NumericStats salaryStats, long totalElements, int totalPages) {}
+    /** {@code sortValues} holds the ES sort values of each result, in the same order, for building cursors. */
+    public record PersonSearchResponse(List<Person> results, Map<String, Long> activeCounts, Map<String, Long> countryCounts, Map<String, Long> stateCounts, NumericStats ageStats, NumericStats salaryStats, long totalElements, int totalPages, List<List<Object>> sortValues, boolean hasNextPage) {
+        public PersonSearchResponse(List<Person> results, Map<String, Long> activeCounts, Map<String, Long> countryCounts, Map<String, Long> stateCounts, NumericStats ageStats, NumericStats salaryStats, long totalElements, int totalPages) {
+            this(results, activeCounts, countryCounts, stateCounts, ageStats, salaryStats, totalElements, totalPages, List.of(), false);
+        }
+    }
     
     public record NumericStats(double min, double max, double avg, double sum, long count) {}
 
+    /**
+     * Which parts of a {@link PersonSearchResponse} the caller needs. totalElements/totalPages are always computed.
+     * {@code sourceIncludes} restricts the person fields read from _source; null means the whole document.
+     * {@code multiSelectFacets} counts each facet without the filter on its own field (see {@code FacetMode}).
+     */
+    public record SearchSelection(boolean results, boolean activeCounts, boolean countryCounts, boolean stateCounts, boolean ageStats, boolean salaryStats, List<String> sourceIncludes, boolean multiSelectFacets) {
+        public static final SearchSelection ALL = new SearchSelection(true, true, true, true, true, true, null, false);
+
+        public boolean countOnly() {
+            return !results && !hasFacetsOrStats();
+        }
+
+        /** Whether any facet counts or stats are requested, i.e. aggregations only ES computes. */
+        public boolean hasFacetsOrStats() {
+            return activeCounts || countryCounts || stateCounts || ageStats || salaryStats;
+        }
+
+        /** The requested facets and stats as a metrics tag value, e.g. "country,age"; "none" if there are none. */
+        public String facetsTag() {
+            java.util.StringJoiner tag = new java.util.StringJoiner(",").setEmptyValue("none");
+            if (activeCounts) tag.add("active");
+            if (countryCounts) tag.add("country");
+            if (stateCounts) tag.add("state");
+            if (ageStats) tag.add("age");
+            if (salaryStats) tag.add("salary");
+            return tag.toString();
+        }
+    }
+
     public Map<String, Long> getNameFacets() {
         NativeQuery query = NativeQuery.builder()
                 .withQuery(q -> q.matchAll(m -> m))
@@ -185,6 +537,18 @@ public class PersonService {
     public Optional<Person> findById(Long id) {
         return personRepository.findById(id);
     }
+
+    /** Addresses of many persons in one select; every requested id is present, with an empty list if it has none. */
+    public Map<Long, List<Address>> findAddressesByPersonIds(java.util.Collection<Long> personIds) {
+        Map<Long, List<Address>> result = new HashMap<>();
+        for (Long personId : personIds) {
+            result.put(personId, new java.util.ArrayList<>());
+        }
+        for (Object[] row : personRepository.findAddressesByPersonIdIn(personIds)) {
+            result.get((Long) row[0]).add((Address) row[1]);
+        }
+        return result;
+    }
     
     public List<Person> searchByName(String text) {
         NativeQuery query = NativeQuery.builder()
@@ -205,9 +569,11 @@ public class PersonService {
         return personRepository.findByAddresses_City(city);
     }
 
+    @org.springframework.transaction.annotation.Transactional
     public Person save(Person person) {
         Person saved = personRepository.save(person);
-        personSearchRepository.save(saved);
+        // Indexed by the outbox relay after commit; cached searches are dropped once ES has the new document
+        searchOutbox.record(PersonSearchDocuments.AGGREGATE_TYPE, saved.getId());
         return saved;
     }
 
@@ -227,7 +593,7 @@ public class PersonService {
         
         person.getAddresses().add(address);
         Person saved = personRepository.save(person);
-        personSearchRepository.save(saved);
+        searchOutbox.record(PersonSearchDocuments.AGGREGATE_TYPE, saved.getId());
         saved.getAddresses().size(); // Force initialization of the collection
         return saved;
     }
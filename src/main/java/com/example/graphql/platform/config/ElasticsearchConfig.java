@@ -1,16 +1,38 @@
 package com.example.graphql.platform.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.elasticsearch.client.ClientConfiguration;
 import org.springframework.data.elasticsearch.client.elc.ElasticsearchConfiguration;
 
+import java.time.Duration;
+
+/**
+ * The client is configured here rather than by Boot, so Boot's {@code spring.elasticsearch.*} properties do not reach
+ * it on their own; the timeouts are read from them explicitly ({@link com.example.graphql.platform.search.MultiSearchBatcher}
+ * bounds batched searches by the same values).
+ */
 @Configuration
 public class ElasticsearchConfig extends ElasticsearchConfiguration {
 
+    private final String hostAndPort;
+    private final Duration connectionTimeout;
+    private final Duration socketTimeout;
+
+    public ElasticsearchConfig(@Value("${search.elasticsearch.host-and-port:localhost:9200}") String hostAndPort,
+                               @Value("${spring.elasticsearch.connection-timeout:1s}") Duration connectionTimeout,
+                               @Value("${spring.elasticsearch.socket-timeout:30s}") Duration socketTimeout) {
+        this.hostAndPort = hostAndPort;
+        this.connectionTimeout = connectionTimeout;
+        this.socketTimeout = socketTimeout;
+    }
+
     @Override
     public ClientConfiguration clientConfiguration() {
         return ClientConfiguration.builder()
-                .connectedTo("localhost:9200")
+                .connectedTo(hostAndPort)
+                .withConnectTimeout(connectionTimeout)
+                .withSocketTimeout(socketTimeout)
                 .build();
     }
 }
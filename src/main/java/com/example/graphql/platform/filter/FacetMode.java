@@ -0,0 +1,6 @@
+package com.example.graphql.platform.filter;
+
+public enum FacetMode {
+    STANDARD,
+    MULTI_SELECT
+}
@@ -0,0 +1,17 @@
+package com.example.graphql.platform.filter;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Names the {@code @Document} class a filter record searches. Its components resolve against that class's mapping:
+ * {@code addresses_city} filters on the mapped field {@code addresses.city}.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SearchFilter {
+
+    Class<?> value();
+}
@@ -0,0 +1,106 @@
+package com.example.graphql.platform.graphql;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionInput;
+import graphql.GraphqlErrorBuilder;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.graphql.GraphQlSourceBuilderCustomizer;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.graphql.execution.GraphQlSource;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Parses and validates each distinct document once: the result (the {@code Document}, or its syntax and validation
+ * errors) is cached by document text, so a repeated operation skips straight to execution. The schema never
+ * changes at runtime, so an entry stays valid for as long as it is cached.
+ * <p>
+ * Also resolves persisted queries ({@link PersistedQueries}) from the {@code persistedQuery} extension of a request:
+ * with only a hash the document is looked up (answering {@code PersistedQueryNotFound} so the client retries with the
+ * text), with a hash and the text the document is registered. Either way it then goes through the same cache.
+ */
+@Component
+public class CachingDocumentProvider implements PreparsedDocumentProvider, GraphQlSourceBuilderCustomizer {
+
+    private final PersistedQueries persistedQueries;
+    private final Cache<String, PreparsedDocumentEntry> documents;
+
+    public CachingDocumentProvider(PersistedQueries persistedQueries,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${graphql.documents.cache-size:1000}") long maxSize) {
+        this.persistedQueries = persistedQueries;
+        this.documents = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, documents, "graphql.documents");
+    }
+
+    @Override
+    public void customize(GraphQlSource.SchemaResourceBuilder builder) {
+        builder.configureGraphQl(graphQl -> graphQl.preparsedDocumentProvider(this));
+    }
+
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(ExecutionInput executionInput,
+                                                                      Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate) {
+        return CompletableFuture.completedFuture(getDocument(executionInput, parseAndValidate));
+    }
+
+    public PreparsedDocumentEntry getDocument(ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate) {
+        String document = hasText(executionInput.getQuery()) ? executionInput.getQuery() : null;
+        String hash = persistedQueryHash(executionInput.getExtensions());
+        if (hash != null) {
+            if (document == null) {
+                PersistedQueries.Entry entry = persistedQueries.find(hash);
+                if (entry == null) return new PreparsedDocumentEntry(new PersistedQueryNotFound(hash));
+                document = entry.document();
+            } else {
+                try {
+                    persistedQueries.register(hash, document);
+                } catch (IllegalArgumentException e) {
+                    return new PreparsedDocumentEntry(GraphqlErrorBuilder.newError()
+                            .message("PersistedQueryIdInvalid")
+                            .errorType(ErrorType.BAD_REQUEST)
+                            .extensions(Map.of("persistedQueryId", hash))
+                            .build());
+                }
+            }
+        }
+        if (document == null) return parseAndValidate.apply(executionInput);
+
+        PreparsedDocumentEntry cached = documents.getIfPresent(document);
+        if (cached != null) return cached;
+        String text = document;
+        ExecutionInput input = text.equals(executionInput.getQuery()) ? executionInput : executionInput.transform(b -> b.query(text));
+        PreparsedDocumentEntry entry = parseAndValidate.apply(input);
+        documents.put(document, entry);
+        return entry;
+    }
+
+    /** The {@code sha256Hash} of an Apollo {@code persistedQuery} extension, or null. */
+    static String persistedQueryHash(Map<String, Object> extensions) {
+        if (extensions != null
+                && extensions.get("persistedQuery") instanceof Map<?, ?> persistedQuery
+                && persistedQuery.get("sha256Hash") instanceof String hash
+                && !hash.isBlank()) {
+            return hash;
+        }
+        return null;
+    }
+
+    /** Clients of hash-only requests leave the query out; some transports fill in graphql-java's marker instead. */
+    private static boolean hasText(String query) {
+        return query != null && !query.isBlank() && !PersistedQuerySupport.PERSISTED_QUERY_MARKER.equals(query);
+    }
+}
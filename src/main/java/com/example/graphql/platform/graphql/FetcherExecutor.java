@@ -0,0 +1,42 @@
+package com.example.graphql.platform.graphql;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs root data fetchers that block on Elasticsearch or the database.
+ * <p>
+ * graphql-java only resolves sibling fields concurrently when their fetchers return futures, so the search fetchers
+ * hand their work to {@link #supply} and return the future. With virtual threads every fetch gets its own cheap
+ * thread: the number of in-flight searches is bounded by ES, not by a pool size. With
+ * {@code graphql.fetchers.virtual-threads=false} fetchers run inline on the request thread again.
+ * <p>
+ * Deliberately not an {@code Executor} bean, which would replace Spring Boot's application task executor.
+ */
+@Component
+public class FetcherExecutor {
+
+    private final Executor executor;
+    private final boolean inline;
+
+    public FetcherExecutor(@Value("${graphql.fetchers.virtual-threads:true}") boolean virtualThreads) {
+        this.inline = !virtualThreads;
+        this.executor = virtualThreads
+                ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("graphql-fetch-", 0).factory())
+                : Runnable::run;
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    /** True if tasks run on the calling thread, i.e. a task must never wait for work started after it. */
+    public boolean isInline() {
+        return inline;
+    }
+}
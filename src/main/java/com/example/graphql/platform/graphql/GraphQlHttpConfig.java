@@ -0,0 +1,86 @@
+package com.example.graphql.platform.graphql;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.webmvc.GraphQlHttpHandler;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replaces Spring Boot's GraphQL HTTP handler with one whose JSON converter is timed, so the time spent serializing
+ * results shows up as {@code graphql.response.serialization}. The converter runs wherever the result completes,
+ * with no request in scope, so unlike {@code graphql.stage} this timer carries no operation tag.
+ */
+@Configuration
+public class GraphQlHttpConfig {
+
+    @Bean
+    public GraphQlHttpHandler graphQlHttpHandler(WebGraphQlHandler webGraphQlHandler, HttpMessageConverters converters, MeterRegistry meterRegistry) {
+        Timer serialization = Timer.builder("graphql.response.serialization")
+                .description("Time spent writing GraphQL results as JSON")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        return new GraphQlHttpHandler(webGraphQlHandler, new TimedMessageConverter(jsonConverter(converters), serialization));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpMessageConverter<Object> jsonConverter(HttpMessageConverters converters) {
+        for (HttpMessageConverter<?> converter : converters.getConverters()) {
+            if (converter.canRead(Map.class, MediaType.APPLICATION_JSON)) {
+                return (HttpMessageConverter<Object>) converter;
+            }
+        }
+        throw new IllegalStateException("No JSON HttpMessageConverter for GraphQL requests");
+    }
+
+    private record TimedMessageConverter(HttpMessageConverter<Object> delegate, Timer writes) implements HttpMessageConverter<Object> {
+
+        @Override
+        public boolean canRead(Class<?> clazz, MediaType mediaType) {
+            return delegate.canRead(clazz, mediaType);
+        }
+
+        @Override
+        public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+            return delegate.canWrite(clazz, mediaType);
+        }
+
+        @Override
+        public List<MediaType> getSupportedMediaTypes() {
+            return delegate.getSupportedMediaTypes();
+        }
+
+        @Override
+        public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+            return delegate.getSupportedMediaTypes(clazz);
+        }
+
+        @Override
+        public Object read(Class<?> clazz, HttpInputMessage inputMessage) throws IOException, HttpMessageNotReadableException {
+            return delegate.read(clazz, inputMessage);
+        }
+
+        @Override
+        public void write(Object value, MediaType contentType, HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
+            long start = System.nanoTime();
+            try {
+                delegate.write(value, contentType, outputMessage);
+            } finally {
+                writes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.graphql.platform.graphql;
+
+import graphql.analysis.MaxQueryComplexityInstrumentation;
+import graphql.analysis.MaxQueryDepthInstrumentation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * Document-level limits, checked by graphql-java after validation and before any field is fetched; a document over
+ * either is aborted as a whole with an error. They complement the per-search limits on arguments
+ * ({@code SearchLimits}): depth bounds how far a query can nest selections, complexity how much one document can
+ * ask for. Every field costs 1 plus its selections, and a field that runs a search costs
+ * {@code graphql.limits.search-weight} instead of 1, so a document with many aliased searches adds up quickly.
+ */
+@Configuration
+public class GraphQlLimitsConfig {
+
+    /** Query fields that each cost one Elasticsearch search. */
+    private static final Set<String> SEARCH_FIELDS = Set.of("searchPeople", "searchPublications");
+
+    @Bean
+    public MaxQueryDepthInstrumentation maxQueryDepthInstrumentation(@Value("${graphql.limits.depth:20}") int maxDepth) {
+        return new MaxQueryDepthInstrumentation(maxDepth);
+    }
+
+    @Bean
+    public MaxQueryComplexityInstrumentation maxQueryComplexityInstrumentation(@Value("${graphql.limits.complexity:1000}") int maxComplexity,
+                                                                               @Value("${graphql.limits.search-weight:50}") int searchWeight) {
+        return new MaxQueryComplexityInstrumentation(maxComplexity, (environment, childComplexity) ->
+                (SEARCH_FIELDS.contains(environment.getField().getName()) ? searchWeight : 1) + childComplexity);
+    }
+}
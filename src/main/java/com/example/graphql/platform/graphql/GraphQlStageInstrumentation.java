@@ -0,0 +1,68 @@
+package com.example.graphql.platform.graphql;
+
+import graphql.ExecutionResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationValidationParameters;
+import graphql.language.Document;
+import graphql.validation.ValidationError;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the graphql-java stages of a request as {@code graphql.stage} with {@code stage} parse, validate and execute,
+ * tagged by {@code operation}. Operation names are chosen by clients, so only those of our shipped persisted
+ * documents ({@link PersistedQueries}) become tag values; any other name is "other", none is "anonymous". That
+ * keeps the number of timers (each with a percentile histogram) bounded whatever clients send. Execute ends when the
+ * last field is resolved, so it contains the search stages; serializing the result is timed by
+ * {@link GraphQlHttpConfig}.
+ */
+@Component
+public class GraphQlStageInstrumentation extends SimplePerformantInstrumentation {
+
+    private final MeterRegistry meterRegistry;
+    private final PersistedQueries persistedQueries;
+
+    public GraphQlStageInstrumentation(MeterRegistry meterRegistry, PersistedQueries persistedQueries) {
+        this.meterRegistry = meterRegistry;
+        this.persistedQueries = persistedQueries;
+    }
+
+    @Override
+    public InstrumentationContext<Document> beginParse(InstrumentationExecutionParameters parameters, InstrumentationState state) {
+        return timed("parse", parameters.getOperation());
+    }
+
+    @Override
+    public InstrumentationContext<List<ValidationError>> beginValidation(InstrumentationValidationParameters parameters, InstrumentationState state) {
+        return timed("validate", parameters.getOperation());
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters, InstrumentationState state) {
+        return timed("execute", parameters.getOperation());
+    }
+
+    private <T> InstrumentationContext<T> timed(String stage, String operation) {
+        long start = System.nanoTime();
+        return SimpleInstrumentationContext.whenCompleted((result, error) -> Timer.builder("graphql.stage")
+                .description("Time spent per GraphQL request stage")
+                .tag("stage", stage)
+                .tag("operation", operationTag(operation))
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    private String operationTag(String operation) {
+        if (operation == null) return "anonymous";
+        return persistedQueries.isShippedOperation(operation) ? operation : "other";
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.graphql.platform.graphql;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persisted query documents by the hex SHA-256 of their text, as in Apollo's automatic persisted queries.
+ * <p>
+ * The operations our own clients send are shipped in {@code classpath:graphql-documents/persisted/*.graphql} and
+ * always known (their hashes are logged at startup); any other client registers a document by sending it once
+ * together with its hash. Registrations are kept in a bounded cache, so a client flooding us with one-off
+ * documents only evicts other registrations, which their clients transparently send again.
+ */
+@Component
+public class PersistedQueries {
+
+    private static final Logger log = LoggerFactory.getLogger(PersistedQueries.class);
+    private static final String LOCATION = "classpath*:graphql-documents/persisted/*.graphql";
+
+    /** A known document; {@code readOnly} if it has no mutation or subscription, i.e. may be run over GET. */
+    public record Entry(String hash, String document, boolean readOnly) {}
+
+    private final Map<String, Entry> shipped;
+    private final Set<String> shippedOperations;
+    private final Cache<String, Entry> registered;
+
+    public PersistedQueries(MeterRegistry meterRegistry,
+                            @Value("${graphql.persisted-queries.max-size:1000}") long maxSize) throws IOException {
+        this.shipped = load();
+        this.shippedOperations = operationNames(shipped.values());
+        this.registered = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, registered, "graphql.persisted.queries");
+    }
+
+    /** @return the document persisted under {@code hash}, or null if it is unknown (or was evicted) */
+    public Entry find(String hash) {
+        Entry entry = shipped.get(hash);
+        return entry != null ? entry : registered.getIfPresent(hash);
+    }
+
+    /** True if a shipped document defines an operation of that name; a bounded set, fit for metric tags. */
+    public boolean isShippedOperation(String operationName) {
+        return operationName != null && shippedOperations.contains(operationName);
+    }
+
+    /**
+     * Registers {@code document} under {@code hash}.
+     *
+     * @throws IllegalArgumentException if {@code hash} is not the SHA-256 of {@code document}: otherwise anyone could
+     *                                  make a hash other clients use point to a different document
+     */
+    public Entry register(String hash, String document) {
+        Entry known = find(hash);
+        if (known != null && known.document().equals(document)) return known;
+        if (!hash.equalsIgnoreCase(sha256(document))) {
+            throw new IllegalArgumentException("Persisted query hash does not match the document");
+        }
+        Entry entry = new Entry(hash, document, isReadOnly(document));
+        registered.put(hash, entry);
+        return entry;
+    }
+
+    public static String sha256(String document) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(document.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** True if every operation of the document is a query; a document that does not parse is left to validation. */
+    public static boolean isReadOnly(String document) {
+        try {
+            Document parsed = Parser.parse(document);
+            for (Definition<?> definition : parsed.getDefinitions()) {
+                if (definition instanceof OperationDefinition operation
+                        && operation.getOperation() != OperationDefinition.Operation.QUERY) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InvalidSyntaxException e) {
+            return true;
+        }
+    }
+
+    private static Set<String> operationNames(Collection<Entry> entries) {
+        Set<String> names = new HashSet<>();
+        for (Entry entry : entries) {
+            for (Definition<?> definition : Parser.parse(entry.document()).getDefinitions()) {
+                if (definition instanceof OperationDefinition operation && operation.getName() != null) {
+                    names.add(operation.getName());
+                }
+            }
+        }
+        return Set.copyOf(names);
+    }
+
+    private static Map<String, Entry> load() throws IOException {
+        Map<String, Entry> shipped = new HashMap<>();
+        for (Resource resource : new PathMatchingResourcePatternResolver().getResources(LOCATION)) {
+            String document = resource.getContentAsString(StandardCharsets.UTF_8);
+            String hash = sha256(document);
+            shipped.put(hash, new Entry(hash, document, isReadOnly(document)));
+            log.info("Persisted query {} = {}", resource.getFilename(), hash);
+        }
+        return Map.copyOf(shipped);
+    }
+}
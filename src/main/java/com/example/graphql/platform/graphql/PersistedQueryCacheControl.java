@@ -0,0 +1,38 @@
+package com.example.graphql.platform.graphql;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.graphql.server.WebGraphQlInterceptor;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+/**
+ * Adds {@code graphql.persisted-queries.cache-control} to the response of a GET that
+ * {@link PersistedQueryGetFilter} found cacheable, once the result is known: only a result without errors is
+ * cached. Otherwise a CDN would keep serving a transient failure (a shed search, an evicted registration, a bad
+ * variable) to every client asking for that URL until it expires.
+ */
+@Component
+public class PersistedQueryCacheControl implements WebGraphQlInterceptor {
+
+    private final String cacheControl;
+
+    public PersistedQueryCacheControl(@Value("${graphql.persisted-queries.cache-control:public, max-age=300}") String cacheControl) {
+        this.cacheControl = cacheControl;
+    }
+
+    @Override
+    public Mono<WebGraphQlResponse> intercept(WebGraphQlRequest request, Chain chain) {
+        if (!Boolean.TRUE.equals(request.getAttributes().get(PersistedQueryGetFilter.CACHEABLE))) {
+            return chain.next(request);
+        }
+        return chain.next(request).doOnNext(response -> {
+            if (response.isValid() && response.getErrors().isEmpty()) {
+                response.getResponseHeaders().set(HttpHeaders.CACHE_CONTROL, cacheControl);
+                response.getResponseHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+            }
+        });
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.graphql.platform.graphql;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Accepts GraphQL queries over GET ({@code ?query=...&operationName=...&variables={...}&extensions={...}}, the JSON
+ * values URL-encoded) by handing them to the regular POST handler as the equivalent JSON body, so they go through
+ * exactly the same pipeline.
+ * <p>
+ * A GET carrying only the hash of a known persisted query ({@code extensions={"persistedQuery":{"version":1,
+ * "sha256Hash":"..."}}}) is a short, stable URL: it is marked {@link #CACHEABLE}, and {@link PersistedQueryCacheControl}
+ * lets CDNs and proxies cache its response if it has no errors. GET must be safe, so documents with a mutation or subscription are refused with
+ * 405; those stay POST only.
+ */
+@Component
+public class PersistedQueryGetFilter extends OncePerRequestFilter {
+
+    /** Request attribute set on hash-only GETs of a known persisted query. */
+    public static final String CACHEABLE = PersistedQueryGetFilter.class.getName() + ".cacheable";
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() {};
+
+    private final PersistedQueries persistedQueries;
+    private final String path;
+
+    public PersistedQueryGetFilter(PersistedQueries persistedQueries,
+                                   @Value("${spring.graphql.http.path:/graphql}") String path) {
+        this.persistedQueries = persistedQueries;
+        this.path = path;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.GET.matches(request.getMethod())
+                || !path.equals(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain) throws ServletException, IOException {
+        Map<String, Object> variables;
+        Map<String, Object> extensions;
+        try {
+            variables = json(request.getParameter("variables"));
+            extensions = json(request.getParameter("extensions"));
+        } catch (JsonProcessingException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "'variables' and 'extensions' must be JSON objects");
+            return;
+        }
+        String query = request.getParameter("query");
+        String hash = CachingDocumentProvider.persistedQueryHash(extensions);
+        if (query == null && hash == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "A GET needs a 'query' or a persisted query hash");
+            return;
+        }
+
+        // An unknown hash is passed on: it is answered with PersistedQueryNotFound, which is never cached either
+        PersistedQueries.Entry persisted = query == null ? persistedQueries.find(hash) : null;
+        boolean readOnly = persisted != null ? persisted.readOnly() : query == null || PersistedQueries.isReadOnly(query);
+        if (!readOnly) {
+            response.setHeader(HttpHeaders.ALLOW, HttpMethod.POST.name());
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Mutations and subscriptions must be sent with POST");
+            return;
+        }
+        if (persisted != null) request.setAttribute(CACHEABLE, true);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("query", query != null ? query : PersistedQuerySupport.PERSISTED_QUERY_MARKER);
+        if (request.getParameter("operationName") != null) body.put("operationName", request.getParameter("operationName"));
+        if (variables != null) body.put("variables", variables);
+        if (extensions != null) body.put("extensions", extensions);
+        chain.doFilter(new JsonPost(request, JSON.writeValueAsBytes(body)), response);
+    }
+
+    private static Map<String, Object> json(String value) throws JsonProcessingException {
+        return value == null || value.isBlank() ? null : JSON.readValue(value, MAP);
+    }
+
+    /** The GET seen as a POST of a JSON body. */
+    private static final class JsonPost extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        JsonPost(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public String getMethod() {
+            return HttpMethod.POST.name();
+        }
+
+        @Override
+        public String getContentType() {
+            return MediaType.APPLICATION_JSON_VALUE;
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name)) return getContentType();
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) return String.valueOf(body.length);
+            return super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            String value = getHeader(name);
+            if (HttpHeaders.CONTENT_TYPE.equalsIgnoreCase(name) || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                return Collections.enumeration(Set.of(value));
+            }
+            return super.getHeaders(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaderNames() {
+            Set<String> names = new LinkedHashSet<>(Collections.list(super.getHeaderNames()));
+            names.add(HttpHeaders.CONTENT_TYPE);
+            names.add(HttpHeaders.CONTENT_LENGTH);
+            return Collections.enumeration(names);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // The whole body is already in memory: it is available at once and then read
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
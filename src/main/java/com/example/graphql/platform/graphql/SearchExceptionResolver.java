@@ -0,0 +1,61 @@
+package com.example.graphql.platform.graphql;
+
+import com.example.graphql.platform.search.InvalidCursorException;
+import com.example.graphql.platform.search.SearchLimitExceededException;
+import com.example.graphql.platform.search.SearchOverloadedException;
+import graphql.ErrorClassification;
+import graphql.GraphQLError;
+import graphql.GraphqlErrorBuilder;
+import graphql.schema.DataFetchingEnvironment;
+import org.springframework.graphql.execution.DataFetcherExceptionResolverAdapter;
+import org.springframework.graphql.execution.ErrorType;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Reports refused searches as errors on their field, instead of the opaque INTERNAL_ERROR of unknown exceptions:
+ * <ul>
+ *   <li>over the search limits, or paging arguments below their minimum: BAD_REQUEST, naming the limit in the
+ *       extensions ({@code limit}, {@code max} or {@code min}, {@code actual}); the client has to change the
+ *       request;</li>
+ *   <li>an {@code after} cursor that does not decode or does not match the sort: BAD_REQUEST;</li>
+ *   <li>shed by an Elasticsearch bulkhead: UNAVAILABLE with {@code retryable: true}; the same request may succeed
+ *       a moment later.</li>
+ * </ul>
+ */
+@Component
+public class SearchExceptionResolver extends DataFetcherExceptionResolverAdapter {
+
+    /** Classifications beyond Spring's {@link ErrorType}. */
+    public enum SearchErrorType implements ErrorClassification {
+        UNAVAILABLE
+    }
+
+    @Override
+    protected GraphQLError resolveToSingleError(Throwable ex, DataFetchingEnvironment env) {
+        if (ex instanceof SearchLimitExceededException exceeded) {
+            return GraphqlErrorBuilder.newError(env)
+                    .errorType(ErrorType.BAD_REQUEST)
+                    .message(exceeded.getMessage())
+                    .extensions(exceeded.max() != null
+                            ? Map.of("limit", exceeded.limit(), "max", exceeded.max(), "actual", exceeded.actual())
+                            : Map.of("limit", exceeded.limit(), "min", exceeded.min(), "actual", exceeded.actual()))
+                    .build();
+        }
+        if (ex instanceof InvalidCursorException invalid) {
+            return GraphqlErrorBuilder.newError(env)
+                    .errorType(ErrorType.BAD_REQUEST)
+                    .message(invalid.getMessage())
+                    .build();
+        }
+        if (ex instanceof SearchOverloadedException overloaded) {
+            return GraphqlErrorBuilder.newError(env)
+                    .errorType(SearchErrorType.UNAVAILABLE)
+                    .message(overloaded.getMessage())
+                    .extensions(Map.of("bulkhead", overloaded.bulkhead(), "retryable", true))
+                    .build();
+        }
+        return null;
+    }
+}
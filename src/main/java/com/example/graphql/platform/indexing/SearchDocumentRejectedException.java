@@ -0,0 +1,19 @@
+package com.example.graphql.platform.indexing;
+
+/**
+ * One search document that cannot be indexed as it is: it failed to render, or ES refused it (e.g. a mapping
+ * conflict). Unlike a failed request, sending the same document again fails the same way.
+ */
+public class SearchDocumentRejectedException extends RuntimeException {
+
+    private final String documentId;
+
+    public SearchDocumentRejectedException(String documentId, String reason, Throwable cause) {
+        super("Search document " + documentId + " rejected: " + reason, cause);
+        this.documentId = documentId;
+    }
+
+    public String documentId() {
+        return documentId;
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.graphql.platform.indexing;
+
+import com.example.graphql.platform.search.ElasticsearchBulkheads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Asynchronous, batched writer for search documents.
+ * <p>
+ * {@link #index(Object)} snapshots the entity into its ES document on the caller's thread (so lazy associations
+ * are read while the caller's session is still open) and puts it in a bounded queue. Repeated updates of the same
+ * document id are coalesced into the latest snapshot. A flusher thread takes a batch whenever {@code batch-size}
+ * documents are pending or {@code flush-interval} has passed and hands it to one of {@code max-in-flight} senders,
+ * which send it through the {@code _bulk} API, retrying failed batches with exponential backoff.
+ * <p>
+ * Bulk requests to live indexes use {@code refresh=wait_until}, so a completed future means searches see the
+ * document; such a request takes up to one refresh interval. With several batches in flight that wait does not cap
+ * indexing at one batch per refresh: throughput is about {@code max-in-flight * batch-size} documents per index and
+ * refresh interval. A document is never in two batches in flight at once; a newer snapshot of it waits in the queue
+ * until the older one landed, so writes of the same document reach ES in order. A document ES refuses in an otherwise successful {@code _bulk} (e.g. a
+ * mapping conflict) fails alone with {@link SearchDocumentRejectedException}; the rest of the batch is acknowledged,
+ * and only documents rejected for load (429) are retried with it. When the queue is full, callers wait up to {@code offer-timeout} and then
+ * get an exception, so a slow cluster pushes back instead of growing the heap.
+ * <p>
+ * While a full reindex fills a new index, {@link #startMirroring} makes every entity write go to that index as well,
+ * so changes made during the reindex are not lost when the alias is swapped.
+ */
+@Component
+public class SearchIndexer {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchIndexer.class);
+
+    private record DocumentKey(String index, String id) {}
+
+    private static final class Pending {
+        final IndexCoordinates index;
+        IndexQuery query;
+        final long enqueuedNanos;
+        final List<CompletableFuture<Void>> waiters = new ArrayList<>(1);
+
+        Pending(IndexCoordinates index, IndexQuery query, long enqueuedNanos) {
+            this.index = index;
+            this.query = query;
+            this.enqueuedNanos = enqueuedNanos;
+        }
+    }
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchConverter converter;
+    private final ElasticsearchBulkheads bulkheads;
+    private final int capacity;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Semaphore inFlightSlots;
+    private final ExecutorService senders;
+    private final Duration offerTimeout;
+    private final int maxRetries;
+    private final Duration initialBackoff;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition batchReady = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+    private final LinkedHashMap<DocumentKey, Pending> queue = new LinkedHashMap<>();
+    // Documents of the batches being sent; guarded by lock
+    private final Set<DocumentKey> inFlight = new HashSet<>();
+    // live index/alias name -> index being rebuilt for it
+    private final Map<String, IndexCoordinates> mirrors = new ConcurrentHashMap<>();
+    private volatile boolean running = true;
+    private final Thread flusher;
+
+    private final Timer lagTimer;
+    private final DistributionSummary batchSizes;
+    private final Counter coalesced;
+    private final Counter retries;
+    private final Counter failures;
+
+    public SearchIndexer(ElasticsearchOperations elasticsearchOperations,
+                         ElasticsearchConverter converter,
+                         MeterRegistry meterRegistry,
+                         ElasticsearchBulkheads bulkheads,
+                         @Value("${search.indexing.queue-capacity:10000}") int capacity,
+                         @Value("${search.indexing.batch-size:500}") int batchSize,
+                         @Value("${search.indexing.flush-interval:200ms}") Duration flushInterval,
+                         @Value("${search.indexing.max-in-flight:4}") int maxInFlight,
+                         @Value("${search.indexing.offer-timeout:5s}") Duration offerTimeout,
+                         @Value("${search.indexing.max-retries:5}") int maxRetries,
+                         @Value("${search.indexing.initial-backoff:200ms}") Duration initialBackoff) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.converter = converter;
+        this.bulkheads = bulkheads;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.inFlightSlots = new Semaphore(maxInFlight);
+        this.senders = Executors.newFixedThreadPool(maxInFlight, Thread.ofPlatform().name("search-indexer-sender-", 0).daemon().factory());
+        this.offerTimeout = offerTimeout;
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+
+        Gauge.builder("search.indexing.queue.depth", this, SearchIndexer::queueDepth)
+                .description("Documents waiting to be sent to Elasticsearch")
+                .register(meterRegistry);
+        this.lagTimer = Timer.builder("search.indexing.lag")
+                .description("Time from enqueue until the document was acknowledged by Elasticsearch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("search.indexing.batch.size").register(meterRegistry);
+        this.coalesced = Counter.builder("search.indexing.coalesced").description("Updates merged into an already queued document").register(meterRegistry);
+        this.retries = Counter.builder("search.indexing.retries").register(meterRegistry);
+        this.failures = Counter.builder("search.indexing.failures").description("Documents dropped after all retries").register(meterRegistry);
+
+        this.flusher = Thread.ofPlatform().name("search-indexer").daemon().start(this::flushLoop);
+    }
+
+    /**
+     * Queues the current state of a {@code @Document} entity for indexing.
+     *
+     * @return completes once ES acknowledged a snapshot at least as new as this one
+     * @throws SearchDocumentRejectedException if the entity cannot be rendered as its document
+     */
+    public CompletableFuture<Void> index(Object entity) {
+        ElasticsearchPersistentEntity<?> persistentEntity = converter.getMappingContext().getRequiredPersistentEntity(entity.getClass());
+        String id = documentId(entity);
+        IndexCoordinates live = persistentEntity.getIndexCoordinates();
+        String source;
+        try {
+            source = converter.mapObject(entity).toJson();
+        } catch (RuntimeException e) {
+            throw new SearchDocumentRejectedException(id, "cannot render the document: " + e.getMessage(), e);
+        }
+
+        CompletableFuture<Void> ack = index(live, id, source);
+        IndexCoordinates mirror = mirrors.get(live.getIndexName());
+        return mirror == null ? ack : CompletableFuture.allOf(ack, index(mirror, id, source));
+    }
+
+    /** The id of the document a {@code @Document} entity is indexed as. */
+    public String documentId(Object entity) {
+        ElasticsearchPersistentEntity<?> persistentEntity = converter.getMappingContext().getRequiredPersistentEntity(entity.getClass());
+        return String.valueOf(persistentEntity.getIdentifierAccessor(entity).getRequiredIdentifier());
+    }
+
+    /** Copies every subsequent {@link #index(Object)} write for {@code live} into {@code target} as well. */
+    public void startMirroring(IndexCoordinates live, IndexCoordinates target) {
+        mirrors.put(live.getIndexName(), target);
+    }
+
+    public void stopMirroring(IndexCoordinates live) {
+        mirrors.remove(live.getIndexName());
+    }
+
+    /** The index {@code live} is currently mirrored into, or null. */
+    public IndexCoordinates mirrorOf(IndexCoordinates live) {
+        return mirrors.get(live.getIndexName());
+    }
+
+    /** Queues a pre-rendered JSON document. */
+    public CompletableFuture<Void> index(IndexCoordinates index, String id, String source) {
+        IndexQuery query = new IndexQueryBuilder().withId(id).withSource(source).build();
+        DocumentKey key = new DocumentKey(index.getIndexName(), id);
+        CompletableFuture<Void> future = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            Pending pending = queue.get(key);
+            if (pending != null) {
+                // Coalesce: the newer snapshot replaces the queued one, the original enqueue time drives the lag metric
+                pending.query = query;
+                pending.waiters.add(future);
+                coalesced.increment();
+                return future;
+            }
+
+            long remaining = offerTimeout.toNanos();
+            while (queue.size() >= capacity) {
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Search indexing queue is full (" + capacity + " documents)");
+                }
+                remaining = spaceAvailable.awaitNanos(remaining);
+            }
+
+            pending = new Pending(index, query, System.nanoTime());
+            pending.waiters.add(future);
+            queue.put(key, pending);
+            if (queue.size() >= batchSize) {
+                batchReady.signal();
+            }
+            return future;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for search indexing queue", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int queueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running || queueDepth() > 0) {
+            try {
+                inFlightSlots.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            Map<DocumentKey, Pending> batch = takeBatch();
+            if (batch.isEmpty()) {
+                inFlightSlots.release();
+                continue;
+            }
+            senders.execute(() -> {
+                try {
+                    flush(batch);
+                } finally {
+                    landed(batch.keySet());
+                    inFlightSlots.release();
+                }
+            });
+        }
+    }
+
+    /** Lets queued newer snapshots of the batch's documents go out. */
+    private void landed(Set<DocumentKey> keys) {
+        lock.lock();
+        try {
+            inFlight.removeAll(keys);
+            batchReady.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<DocumentKey, Pending> takeBatch() {
+        lock.lock();
+        try {
+            if (running && queue.size() < batchSize) {
+                batchReady.await(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            Map<DocumentKey, Pending> batch = new LinkedHashMap<>();
+            Iterator<Map.Entry<DocumentKey, Pending>> it = queue.entrySet().iterator();
+            while (it.hasNext() && batch.size() < batchSize) {
+                Map.Entry<DocumentKey, Pending> entry = it.next();
+                if (inFlight.contains(entry.getKey())) continue; // Goes out once the older snapshot landed
+                batch.put(entry.getKey(), entry.getValue());
+                it.remove();
+            }
+            if (batch.isEmpty() && !queue.isEmpty()) {
+                // Only newer snapshots of documents in flight are queued
+                batchReady.await(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+            }
+            if (!batch.isEmpty()) {
+                inFlight.addAll(batch.keySet());
+                spaceAvailable.signalAll();
+            }
+            return batch;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Map.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void flush(Map<DocumentKey, Pending> batch) {
+        batchSizes.record(batch.size());
+        Map<DocumentKey, Pending> remaining = new LinkedHashMap<>(batch);
+
+        // wait_until: once a caller's future completes, searches see the document.
+        // Not for mirror targets: they are loaded with refresh disabled and wait_until would block until the swap
+        BulkOptions waitUntil = BulkOptions.builder().withRefreshPolicy(RefreshPolicy.WAIT_UNTIL).build();
+        BulkOptions noRefresh = BulkOptions.defaultOptions();
+        long backoff = initialBackoff.toMillis();
+        for (int attempt = 0; ; attempt++) {
+            RuntimeException failure = null;
+            Map<String, List<DocumentKey>> byIndex = remaining.keySet().stream()
+                    .collect(Collectors.groupingBy(DocumentKey::index, LinkedHashMap::new, Collectors.toList()));
+            for (Map.Entry<String, List<DocumentKey>> entry : byIndex.entrySet()) {
+                List<IndexQuery> queries = entry.getValue().stream().map(key -> remaining.get(key).query).toList();
+                IndexCoordinates index = remaining.get(entry.getValue().get(0)).index;
+                BulkOptions options = isMirrorTarget(entry.getKey()) ? noRefresh : waitUntil;
+                try {
+                    bulkheads.indexing().call(() -> elasticsearchOperations.bulkIndex(queries, options, index));
+                    entry.getValue().forEach(key -> acknowledge(remaining.remove(key)));
+                } catch (BulkFailureException e) {
+                    // The request went through; only the listed documents failed
+                    for (DocumentKey key : entry.getValue()) {
+                        BulkFailureException.FailureDetails details = e.getFailedDocuments().get(key.id());
+                        if (details == null) {
+                            acknowledge(remaining.remove(key));
+                        } else if (details.status() == null || details.status() != 429) {
+                            reject(remaining.remove(key), new SearchDocumentRejectedException(key.id(), details.errorMessage(), e));
+                        } else {
+                            failure = e;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            if (remaining.isEmpty()) return;
+
+            if (attempt >= maxRetries || !running) {
+                log.error("Dropping {} search documents after {} attempts", remaining.size(), attempt + 1, failure);
+                failures.increment(remaining.size());
+                RuntimeException cause = failure;
+                remaining.values().forEach(p -> p.waiters.forEach(w -> w.completeExceptionally(cause)));
+                return;
+            }
+            retries.increment();
+            log.warn("Bulk indexing of {} documents failed, retrying in {} ms", remaining.size(), backoff, failure);
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            backoff = Math.min(backoff * 2, 30_000);
+        }
+    }
+
+    private void acknowledge(Pending pending) {
+        lagTimer.record(System.nanoTime() - pending.enqueuedNanos, TimeUnit.NANOSECONDS);
+        pending.waiters.forEach(w -> w.complete(null));
+    }
+
+    private void reject(Pending pending, SearchDocumentRejectedException e) {
+        log.error("{}", e.getMessage());
+        failures.increment();
+        pending.waiters.forEach(w -> w.completeExceptionally(e));
+    }
+
+    private boolean isMirrorTarget(String indexName) {
+        for (IndexCoordinates target : mirrors.values()) {
+            if (target.getIndexName().equals(indexName)) return true;
+        }
+        return false;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        lock.lock();
+        try {
+            batchReady.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        flusher.join(Duration.ofSeconds(30).toMillis());
+        senders.shutdown();
+        senders.awaitTermination(30, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.graphql.platform.indexing.outbox;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Loads the current state of one aggregate type for (re)indexing. Implemented next to each aggregate's service.
+ */
+public interface SearchDocumentSource {
+
+    /** Name recorded in {@link SearchOutboxEntry#getAggregateType()}. */
+    String aggregateType();
+
+    /** The {@code @Document} class the aggregates are indexed as; its index name is the search alias. */
+    Class<?> documentType();
+
+    /** Highest aggregate id, 0 if there are none. Upper bound for full reindex partitions. */
+    long maxId();
+
+    /** Keyset page for full reindexing: ids in {@code (afterId, upToId]}, ascending, at most {@code limit}. */
+    List<Long> idsAfter(long afterId, long upToId, int limit);
+
+    /**
+     * Loads the aggregates with everything their search document embeds, called inside a read transaction.
+     * Ids that no longer exist are simply absent from the result.
+     */
+    List<?> loadForIndexing(Collection<Long> ids);
+
+    /** Called once ES acknowledged the documents of these aggregates. */
+    default void afterIndexed(Collection<Long> ids) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.graphql.platform.indexing.outbox;
+
+import java.util.Collection;
+
+/**
+ * Published by the {@link SearchOutboxRelay} once ES acknowledged the documents of these aggregates,
+ * for stages that derive other documents from them (e.g. copies embedded in other indices). Listeners run inside
+ * the transaction that deletes the acknowledged outbox entries, so follow-up work recorded with {@link SearchOutbox}
+ * there is as durable as the entries it replaces.
+ */
+public record SearchDocumentsIndexedEvent(String aggregateType, Collection<Long> aggregateIds) {
+}
@@ -0,0 +1,24 @@
+package com.example.graphql.platform.indexing.outbox;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Records aggregate changes for the search index. Must run inside the transaction that makes the change,
+ * so the index is updated if and only if that transaction commits.
+ */
+@Component
+public class SearchOutbox {
+
+    private final SearchOutboxRepository repository;
+
+    public SearchOutbox(SearchOutboxRepository repository) {
+        this.repository = repository;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(String aggregateType, Long aggregateId) {
+        repository.save(new SearchOutboxEntry(aggregateType, aggregateId));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.graphql.platform.indexing.outbox;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * "Aggregate X changed" marker written in the same JPA transaction as the change itself.
+ * The generated id doubles as the change version: higher id = newer change of that aggregate.
+ * An entry whose document keeps being rejected counts its {@code attempts} and is finally dead-lettered: it stays
+ * in the table for inspection but is no longer read (clear {@code deadLetteredAt} to retry it).
+ */
+@Entity
+@Table(name = "search_outbox", indexes = @Index(name = "idx_search_outbox_aggregate", columnList = "aggregateType, aggregateId"))
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchOutboxEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String aggregateType;
+
+    @Column(nullable = false)
+    private Long aggregateId;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private Instant deadLetteredAt;
+
+    public SearchOutboxEntry(String aggregateType, Long aggregateId) {
+        this(null, aggregateType, aggregateId, Instant.now(), 0, null, null);
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.graphql.platform.indexing.outbox;
+
+import com.example.graphql.platform.indexing.SearchDocumentRejectedException;
+import com.example.graphql.platform.indexing.SearchIndexer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Drains the search outbox into Elasticsearch.
+ * <p>
+ * Entries are read oldest first in batches. Each aggregate is indexed once per batch from its current committed state,
+ * which makes processing idempotent: re-running an entry (after a crash or a failed bulk request) just writes the same
+ * or a newer document again. Every document is acknowledged on its own: the entries of the aggregates ES acknowledged
+ * are deleted, so every committed change reaches the index eventually, while the entries of a document that failed
+ * stay. If ES was unavailable they are simply read again; if the document itself was rejected (it cannot be rendered
+ * or ES refuses it), the entries count an attempt and after {@code search.outbox.max-attempts} they are dead-lettered,
+ * so one broken document cannot stall indexing. ES I/O happens on the {@link SearchIndexer} thread, never inside a
+ * DB transaction.
+ * <p>
+ * Only entries of aggregate types with a {@link SearchDocumentSource} are read here; other types belong to stages
+ * that drain their own entries (see {@link SearchDocumentsIndexedEvent}).
+ */
+@Component
+public class SearchOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchOutboxRelay.class);
+
+    private record AggregateKey(String type, Long id) {}
+
+    private final SearchOutboxRepository repository;
+    private final SearchIndexer searchIndexer;
+    private final Map<String, SearchDocumentSource> sources;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter deadLettered;
+    private final int batchSize;
+    private final Duration indexTimeout;
+    private final int maxAttempts;
+
+    public SearchOutboxRelay(SearchOutboxRepository repository,
+                             SearchIndexer searchIndexer,
+                             List<SearchDocumentSource> sources,
+                             PlatformTransactionManager transactionManager,
+                             ApplicationEventPublisher eventPublisher,
+                             MeterRegistry meterRegistry,
+                             @Value("${search.outbox.batch-size:500}") int batchSize,
+                             @Value("${search.outbox.index-timeout:30s}") Duration indexTimeout,
+                             @Value("${search.outbox.max-attempts:10}") int maxAttempts) {
+        this.repository = repository;
+        this.searchIndexer = searchIndexer;
+        this.sources = sources.stream().collect(Collectors.toMap(SearchDocumentSource::aggregateType, Function.identity()));
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.deadLettered = Counter.builder("search.outbox.dead_lettered")
+                .description("Outbox entries given up on after their document was rejected max-attempts times")
+                .register(meterRegistry);
+        this.batchSize = batchSize;
+        this.indexTimeout = indexTimeout;
+        this.maxAttempts = maxAttempts;
+    }
+
+    @Scheduled(fixedDelayString = "${search.outbox.poll-interval-ms:250}")
+    public void drain() {
+        int processed;
+        do {
+            processed = drainBatch();
+        } while (processed == batchSize);
+    }
+
+    /** @return number of outbox entries removed (indexed or dead-lettered); less than a batch if any are left */
+    int drainBatch() {
+        Map<AggregateKey, List<Long>> entries = new LinkedHashMap<>();
+        Map<AggregateKey, CompletableFuture<Void>> acks = new LinkedHashMap<>();
+
+        // Read + snapshot in one read transaction, so lazy associations of the loaded aggregates are available
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Set<Long>> changed = new LinkedHashMap<>();
+            for (SearchOutboxEntry entry : repository.findOldest(sources.keySet(), PageRequest.of(0, batchSize))) {
+                entries.computeIfAbsent(new AggregateKey(entry.getAggregateType(), entry.getAggregateId()), k -> new ArrayList<>()).add(entry.getId());
+                changed.computeIfAbsent(entry.getAggregateType(), k -> new LinkedHashSet<>()).add(entry.getAggregateId());
+            }
+            for (Map.Entry<String, Set<Long>> entry : changed.entrySet()) {
+                for (Object aggregate : sources.get(entry.getKey()).loadForIndexing(entry.getValue())) {
+                    AggregateKey key = new AggregateKey(entry.getKey(), Long.valueOf(searchIndexer.documentId(aggregate)));
+                    try {
+                        acks.put(key, searchIndexer.index(aggregate));
+                    } catch (RuntimeException e) {
+                        acks.put(key, CompletableFuture.failedFuture(e));
+                    }
+                }
+            }
+        });
+        if (entries.isEmpty()) return 0;
+
+        try {
+            CompletableFuture<?>[] settled = acks.values().stream().map(ack -> ack.handle((ok, e) -> null)).toArray(CompletableFuture[]::new);
+            CompletableFuture.allOf(settled).get(indexTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (TimeoutException | ExecutionException e) {
+            // Documents not acknowledged in time keep their entries for the next poll
+            log.warn("Indexing outbox entries did not finish within {}, will retry the rest", indexTimeout);
+        }
+
+        List<Long> done = new ArrayList<>();
+        Map<AggregateKey, String> rejected = new LinkedHashMap<>();
+        Map<String, Set<Long>> processed = new LinkedHashMap<>();
+        int unavailable = 0;
+        for (Map.Entry<AggregateKey, List<Long>> entry : entries.entrySet()) {
+            AggregateKey key = entry.getKey();
+            // No ack: the aggregate no longer exists, there is nothing to index
+            CompletableFuture<Void> ack = acks.get(key);
+            if (ack == null || (ack.isDone() && !ack.isCompletedExceptionally())) {
+                done.addAll(entry.getValue());
+                processed.computeIfAbsent(key.type(), k -> new LinkedHashSet<>()).add(key.id());
+            } else if (rejection(ack) instanceof SearchDocumentRejectedException e) {
+                rejected.put(key, e.getMessage());
+            } else {
+                unavailable++;
+            }
+        }
+        if (unavailable > 0) {
+            log.warn("{} outbox documents were not indexed, will retry", unavailable);
+        }
+
+        int removed = transactionTemplate.execute(status -> {
+            if (!done.isEmpty()) repository.deleteAllByIdInBatch(done);
+            int dead = 0;
+            if (!rejected.isEmpty()) {
+                List<Long> rejectedIds = new ArrayList<>();
+                rejected.forEach((key, error) -> {
+                    repository.recordFailure(entries.get(key), error.length() > 1000 ? error.substring(0, 1000) : error);
+                    rejectedIds.addAll(entries.get(key));
+                });
+                dead = repository.deadLetter(rejectedIds, maxAttempts, Instant.now());
+            }
+            if (dead > 0) {
+                deadLettered.increment(dead);
+                log.error("Dead-lettered {} outbox entries after {} rejected attempts: {}", dead, maxAttempts, rejected.values());
+            }
+            // Listeners may record follow-up entries, which then commit together with the deletes
+            processed.forEach((type, ids) -> eventPublisher.publishEvent(new SearchDocumentsIndexedEvent(type, ids)));
+            return done.size() + dead;
+        });
+        processed.forEach((type, ids) -> sources.get(type).afterIndexed(ids));
+        return removed;
+    }
+
+    private static Throwable rejection(CompletableFuture<Void> ack) {
+        if (!ack.isCompletedExceptionally()) return null;
+        try {
+            ack.join();
+            return null;
+        } catch (CompletionException e) {
+            return e.getCause();
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+}
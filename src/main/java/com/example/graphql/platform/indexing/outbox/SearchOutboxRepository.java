@@ -0,0 +1,25 @@
+package com.example.graphql.platform.indexing.outbox;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface SearchOutboxRepository extends JpaRepository<SearchOutboxEntry, Long> {
+
+    @Query("select e from SearchOutboxEntry e where e.aggregateType in :types and e.deadLetteredAt is null order by e.id")
+    List<SearchOutboxEntry> findOldest(@Param("types") Collection<String> types, Pageable pageable);
+
+    @Modifying
+    @Query("update SearchOutboxEntry e set e.attempts = e.attempts + 1, e.lastError = :error where e.id in :ids")
+    int recordFailure(@Param("ids") Collection<Long> ids, @Param("error") String error);
+
+    @Modifying
+    @Query("update SearchOutboxEntry e set e.deadLetteredAt = :now where e.id in :ids and e.attempts >= :maxAttempts")
+    int deadLetter(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts, @Param("now") Instant now);
+}
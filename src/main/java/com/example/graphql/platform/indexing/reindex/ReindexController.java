@@ -0,0 +1,26 @@
+package com.example.graphql.platform.indexing.reindex;
+
+import org.springframework.graphql.data.method.annotation.Argument;
+import org.springframework.graphql.data.method.annotation.MutationMapping;
+import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.stereotype.Controller;
+
+@Controller
+public class ReindexController {
+
+    private final SearchReindexer searchReindexer;
+
+    public ReindexController(SearchReindexer searchReindexer) {
+        this.searchReindexer = searchReindexer;
+    }
+
+    @MutationMapping
+    public SearchReindexer.ReindexStatus startReindex(@Argument String aggregateType) {
+        return searchReindexer.start(aggregateType);
+    }
+
+    @QueryMapping
+    public SearchReindexer.ReindexStatus reindexStatus(@Argument String aggregateType) {
+        return searchReindexer.status(aggregateType);
+    }
+}
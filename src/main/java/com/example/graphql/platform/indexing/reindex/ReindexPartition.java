@@ -0,0 +1,43 @@
+package com.example.graphql.platform.indexing.reindex;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Checkpoint of one keyset partition {@code (lowerId, upperId]} of a running full reindex.
+ * Rows exist only while a reindex is unfinished; a restarted job continues each partition after {@code lastIndexedId}.
+ */
+@Entity
+@Table(name = "search_reindex_partition")
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ReindexPartition {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String aggregateType;
+
+    @Column(nullable = false)
+    private String targetIndex;
+
+    private int partitionNo;
+
+    private long lowerId;
+
+    private long upperId;
+
+    private long lastIndexedId;
+
+    private long indexedCount;
+
+    private boolean done;
+
+    private Instant updatedAt;
+}
@@ -0,0 +1,10 @@
+package com.example.graphql.platform.indexing.reindex;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ReindexPartitionRepository extends JpaRepository<ReindexPartition, Long> {
+
+    List<ReindexPartition> findByAggregateTypeOrderByPartitionNo(String aggregateType);
+}
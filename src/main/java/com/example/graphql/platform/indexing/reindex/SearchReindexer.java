@@ -0,0 +1,434 @@
+package com.example.graphql.platform.indexing.reindex;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import com.example.graphql.platform.indexing.SearchIndexer;
+import com.example.graphql.platform.indexing.outbox.SearchDocumentSource;
+import com.example.graphql.platform.search.ElasticsearchBulkheads;
+import com.example.graphql.platform.search.SearchOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.ElasticsearchPersistentEntity;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.data.elasticsearch.core.query.IndexQueryBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Zero-downtime full reindex of one aggregate type from JPA.
+ * <p>
+ * The search index name of a {@code @Document} (e.g. "person") is used as an alias. A reindex creates a new
+ * timestamped index ("person-20261017093000") with refresh and replicas disabled, splits the id range into
+ * {@code partitions} keyset ranges and loads them in parallel: each worker pages ids with
+ * {@code id > :last order by id limit :chunk}, fetch-joins the aggregates and sends them through {@code _bulk}.
+ * Afterwards refresh and replicas are restored and the alias is moved to the new index in one atomic
+ * {@code _aliases} call (replacing a concrete index of that name on the first run); the old index is deleted.
+ * <p>
+ * Live writes keep going to the alias during the load and are mirrored into the new index by the
+ * {@link SearchIndexer}. Mirroring starts before the id range is fixed, so a row created after that is either below
+ * the upper bound and loaded, or above it and mirrored. Bulk loads use {@code op_type=create}, so a row read before
+ * a concurrent change never overwrites the newer mirrored document.
+ * <p>
+ * Bulk loads share the {@link ElasticsearchBulkheads#indexing() indexing} bulkhead with live writes, so a reindex
+ * cannot push ES past the limit the outbox relay is held to. A shed chunk is not a failure: its worker backs off
+ * (doubling, up to 5 s) and sends it again, as the {@link SearchIndexer} does with its batches.
+ * <p>
+ * Each partition's position is checkpointed in {@link ReindexPartition} after every chunk. After a crash the
+ * mirroring is re-established on startup (nothing is written while the process is down, the outbox keeps the
+ * changes) and {@link #start} continues from the checkpoints into the same index. A run that fails while the
+ * application keeps writing cannot be resumed that way, since changes would be missed once mirroring stops: it is
+ * abandoned instead, its mirroring stopped, its checkpoints and target index dropped, and the next start begins anew.
+ */
+@Component
+public class SearchReindexer implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchReindexer.class);
+    private static final DateTimeFormatter INDEX_SUFFIX = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+    private static final Duration PROGRESS_LOG_INTERVAL = Duration.ofSeconds(10);
+    private static final Duration INITIAL_SHED_BACKOFF = Duration.ofMillis(100);
+    private static final Duration MAX_SHED_BACKOFF = Duration.ofSeconds(5);
+
+    public record ReindexStatus(String aggregateType, String targetIndex, String state, long indexedDocuments,
+                                double progress, double documentsPerSecond, String startedAt, String error) {}
+
+    private record Chunk(long lastId, List<IndexQuery> queries) {}
+
+    private final Map<String, SearchDocumentSource> sources;
+    private final ReindexPartitionRepository partitionRepository;
+    private final SearchIndexer searchIndexer;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchBulkheads bulkheads;
+    private final ElasticsearchConverter converter;
+    private final TransactionTemplate readTransaction;
+    private final MeterRegistry meterRegistry;
+    private final int partitionCount;
+    private final int chunkSize;
+
+    private final Map<String, Run> runs = new ConcurrentHashMap<>();
+
+    public SearchReindexer(List<SearchDocumentSource> sources,
+                           ReindexPartitionRepository partitionRepository,
+                           SearchIndexer searchIndexer,
+                           ElasticsearchOperations elasticsearchOperations,
+                           ElasticsearchClient elasticsearchClient,
+                           ElasticsearchBulkheads bulkheads,
+                           ElasticsearchConverter converter,
+                           PlatformTransactionManager transactionManager,
+                           MeterRegistry meterRegistry,
+                           @Value("${search.reindex.partitions:4}") int partitionCount,
+                           @Value("${search.reindex.chunk-size:1000}") int chunkSize) {
+        this.sources = sources.stream().collect(Collectors.toMap(SearchDocumentSource::aggregateType, Function.identity()));
+        this.partitionRepository = partitionRepository;
+        this.searchIndexer = searchIndexer;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.elasticsearchClient = elasticsearchClient;
+        this.bulkheads = bulkheads;
+        this.converter = converter;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.partitionCount = partitionCount;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Re-establishes write mirroring for reindexes that were interrupted by a shutdown or crash, before the outbox
+     * relay starts, so no change is missing from the half-built index when the job is resumed.
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (SearchDocumentSource source : sources.values()) {
+            List<ReindexPartition> open = partitionRepository.findByAggregateTypeOrderByPartitionNo(source.aggregateType());
+            if (open.isEmpty()) continue;
+            IndexCoordinates target = IndexCoordinates.of(open.get(0).getTargetIndex());
+            searchIndexer.startMirroring(aliasFor(source), target);
+            log.warn("Unfinished reindex of '{}' into {}; start it again to resume from the checkpoints", source.aggregateType(), target.getIndexName());
+        }
+    }
+
+    /** Starts (or resumes) a full reindex in the background. */
+    public ReindexStatus start(String aggregateType) {
+        SearchDocumentSource source = sources.get(aggregateType);
+        if (source == null) {
+            throw new IllegalArgumentException("Unknown aggregate type: " + aggregateType);
+        }
+        Run run = new Run(aggregateType);
+        runs.compute(aggregateType, (type, current) -> {
+            if (current != null && current.isActive()) {
+                throw new IllegalStateException("Reindex of '" + type + "' is already running");
+            }
+            return run;
+        });
+        Thread.ofPlatform().name("search-reindex-" + aggregateType).start(() -> execute(run, source));
+        return run.status();
+    }
+
+    /** Status of the last reindex of this aggregate type started by this instance, or null. */
+    public ReindexStatus status(String aggregateType) {
+        Run run = runs.get(aggregateType);
+        return run == null ? null : run.status();
+    }
+
+    private void execute(Run run, SearchDocumentSource source) {
+        IndexCoordinates alias = aliasFor(source);
+        boolean swapped = false;
+        try {
+            List<ReindexPartition> partitions = partitionRepository.findByAggregateTypeOrderByPartitionNo(source.aggregateType());
+            if (!partitions.isEmpty() && !elasticsearchOperations.indexOps(IndexCoordinates.of(partitions.get(0).getTargetIndex())).exists()) {
+                // Checkpoints without their index (deleted by hand): start over
+                partitionRepository.deleteAllInBatch(partitions);
+                partitions = List.of();
+            }
+            if (partitions.isEmpty()) {
+                partitions = createTarget(source, alias);
+            } else {
+                log.info("Resuming reindex of '{}' into {}", source.aggregateType(), partitions.get(0).getTargetIndex());
+            }
+
+            IndexCoordinates target = IndexCoordinates.of(partitions.get(0).getTargetIndex());
+            run.begin(target.getIndexName(), partitions);
+            // Already mirrored since createTarget or startup; repeated so a resumed run never depends on it
+            searchIndexer.startMirroring(alias, target);
+
+            loadPartitions(run, source, partitions, target);
+
+            run.state = "SWAPPING";
+            restoreSettings(source, target);
+            swapAlias(alias, target);
+            swapped = true;
+            searchIndexer.stopMirroring(alias);
+            partitionRepository.deleteAllInBatch(partitions);
+
+            run.state = "COMPLETED";
+            log.info("Reindexed {} '{}' documents into {} at {} docs/s", run.indexed.get(), source.aggregateType(),
+                    target.getIndexName(), Math.round(run.documentsPerSecond()));
+        } catch (Exception e) {
+            run.state = "FAILED";
+            run.error = e.getMessage();
+            log.error("Reindex of '{}' failed", source.aggregateType(), e);
+            // Once the alias points to the new index, it is the live one and must stay
+            abandon(source, alias, swapped ? null : run.targetIndex);
+        }
+    }
+
+    /** Stops mirroring into a failed run's index and drops it, so live writes stop paying for it. */
+    private void abandon(SearchDocumentSource source, IndexCoordinates alias, String targetIndex) {
+        searchIndexer.stopMirroring(alias);
+        try {
+            // Checkpoints first: without them the next start cannot resume into an index that missed writes
+            partitionRepository.deleteAllInBatch(partitionRepository.findByAggregateTypeOrderByPartitionNo(source.aggregateType()));
+            if (targetIndex != null) {
+                elasticsearchOperations.indexOps(IndexCoordinates.of(targetIndex)).delete();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not clean up the failed reindex of '{}' into {}", source.aggregateType(), targetIndex, e);
+        }
+    }
+
+    private List<ReindexPartition> createTarget(SearchDocumentSource source, IndexCoordinates alias) throws IOException {
+        String targetName = alias.getIndexName() + "-" + INDEX_SUFFIX.format(LocalDateTime.now());
+        IndexOperations entityIndex = elasticsearchOperations.indexOps(source.documentType());
+        elasticsearchOperations.indexOps(IndexCoordinates.of(targetName)).create(entityIndex.createSettings(), entityIndex.createMapping());
+
+        // Bulk load settings: no periodic refreshes, no replica writes
+        elasticsearchClient.indices().putSettings(r -> r
+                .index(targetName)
+                .settings(s -> s.refreshInterval(t -> t.time("-1")).numberOfReplicas("0")));
+
+        // Mirror before reading the upper bound: a row created in between would otherwise be in neither
+        searchIndexer.startMirroring(alias, IndexCoordinates.of(targetName));
+        long maxId = source.maxId();
+        Instant now = Instant.now();
+        List<ReindexPartition> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            long lower = maxId * i / partitionCount;
+            long upper = maxId * (i + 1) / partitionCount;
+            partitions.add(new ReindexPartition(null, source.aggregateType(), targetName, i, lower, upper, lower, 0, false, now));
+        }
+        log.info("Reindexing '{}' (ids up to {}) into {} with {} partitions", source.aggregateType(), maxId, targetName, partitionCount);
+        return partitionRepository.saveAll(partitions);
+    }
+
+    private void loadPartitions(Run run, SearchDocumentSource source, List<ReindexPartition> partitions, IndexCoordinates target) throws Exception {
+        Counter documents = Counter.builder("search.reindex.documents")
+                .tag("aggregate", source.aggregateType())
+                .register(meterRegistry);
+
+        ExecutorService workers = Executors.newFixedThreadPool(partitions.size(),
+                Thread.ofPlatform().name("search-reindex-" + source.aggregateType() + "-", 0).factory());
+        try {
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (ReindexPartition partition : partitions) {
+                if (partition.isDone()) continue;
+                futures.add(CompletableFuture.runAsync(() -> loadPartition(run, source, partition, target, documents), workers));
+            }
+            CompletableFuture<Void> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+            while (true) {
+                try {
+                    all.get(PROGRESS_LOG_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException e) {
+                    ReindexStatus status = run.status();
+                    log.info("Reindex of '{}': {} documents, {}%, {} docs/s", source.aggregateType(), status.indexedDocuments(),
+                            Math.round(status.progress() * 100), Math.round(status.documentsPerSecond()));
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void loadPartition(Run run, SearchDocumentSource source, ReindexPartition partition, IndexCoordinates target, Counter documents) {
+        while (true) {
+            long after = partition.getLastIndexedId();
+            Chunk chunk = readTransaction.execute(status -> readChunk(source, after, partition.getUpperId()));
+            if (chunk == null) break;
+
+            bulkCreate(chunk.queries(), target);
+
+            partition.setLastIndexedId(chunk.lastId());
+            partition.setIndexedCount(partition.getIndexedCount() + chunk.queries().size());
+            partition.setUpdatedAt(Instant.now());
+            partitionRepository.save(partition);
+            run.indexed.addAndGet(chunk.queries().size());
+            documents.increment(chunk.queries().size());
+        }
+        partition.setDone(true);
+        partition.setUpdatedAt(Instant.now());
+        partitionRepository.save(partition);
+    }
+
+    /** Next keyset page rendered to bulk requests, or null when the partition is exhausted. */
+    private Chunk readChunk(SearchDocumentSource source, long afterId, long upToId) {
+        List<Long> ids = source.idsAfter(afterId, upToId, chunkSize);
+        if (ids.isEmpty()) return null;
+
+        List<IndexQuery> queries = new ArrayList<>(ids.size());
+        for (Object aggregate : source.loadForIndexing(ids)) {
+            ElasticsearchPersistentEntity<?> entity = converter.getMappingContext().getRequiredPersistentEntity(aggregate.getClass());
+            Object id = entity.getIdentifierAccessor(aggregate).getRequiredIdentifier();
+            queries.add(new IndexQueryBuilder()
+                    .withId(String.valueOf(id))
+                    .withSource(converter.mapObject(aggregate).toJson())
+                    .withOpType(IndexQuery.OpType.CREATE)
+                    .build());
+        }
+        return new Chunk(ids.get(ids.size() - 1), queries);
+    }
+
+    private void bulkCreate(List<IndexQuery> queries, IndexCoordinates target) {
+        if (queries.isEmpty()) return;
+        long backoff = INITIAL_SHED_BACKOFF.toMillis();
+        while (true) {
+            try {
+                bulkheads.indexing().call(() -> elasticsearchOperations.bulkIndex(queries, BulkOptions.defaultOptions(), target));
+                return;
+            } catch (SearchOverloadedException e) {
+                // Nothing was sent; wait for live writes and the other partitions to free a permit
+                log.debug("Indexing bulkhead full, sending chunk of {} documents again in {} ms", queries.size(), backoff);
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Reindex interrupted", ie);
+                }
+                backoff = Math.min(backoff * 2, MAX_SHED_BACKOFF.toMillis());
+            } catch (BulkFailureException e) {
+                // 409: a mirrored live write already stored a newer version of that document
+                for (BulkFailureException.FailureDetails failure : e.getFailedDocuments().values()) {
+                    if (failure.status() == null || failure.status() != 409) throw e;
+                }
+                return;
+            }
+        }
+    }
+
+    private void restoreSettings(SearchDocumentSource source, IndexCoordinates target) throws IOException {
+        Settings settings = elasticsearchOperations.indexOps(source.documentType()).createSettings().flatten();
+        String refreshInterval = settings.getOrDefault("index.refresh_interval", "1s").toString();
+        String replicas = settings.getOrDefault("index.number_of_replicas", "1").toString();
+
+        elasticsearchClient.indices().putSettings(r -> r
+                .index(target.getIndexName())
+                .settings(s -> s.refreshInterval(t -> t.time(refreshInterval)).numberOfReplicas(replicas)));
+        elasticsearchClient.indices().refresh(r -> r.index(target.getIndexName()));
+    }
+
+    /** Points the alias at the target in one atomic call and deletes what it pointed to before. */
+    private void swapAlias(IndexCoordinates alias, IndexCoordinates target) throws IOException {
+        String aliasName = alias.getIndexName();
+        String targetName = target.getIndexName();
+
+        List<String> previous = new ArrayList<>();
+        boolean concreteIndex = false;
+        if (elasticsearchClient.indices().existsAlias(e -> e.name(aliasName)).value()) {
+            previous.addAll(elasticsearchClient.indices().getAlias(g -> g.name(aliasName)).result().keySet());
+        } else if (elasticsearchClient.indices().exists(e -> e.index(aliasName)).value()) {
+            // First reindex: the name is still a concrete index (auto-created from the @Document)
+            concreteIndex = true;
+        }
+        previous.remove(targetName);
+
+        boolean removeConcreteIndex = concreteIndex;
+        elasticsearchClient.indices().updateAliases(u -> {
+            for (String index : previous) {
+                u.actions(a -> a.remove(r -> r.index(index).alias(aliasName)));
+            }
+            if (removeConcreteIndex) {
+                u.actions(a -> a.removeIndex(r -> r.index(aliasName)));
+            }
+            return u.actions(a -> a.add(r -> r.index(targetName).alias(aliasName)));
+        });
+
+        for (String index : previous) {
+            try {
+                elasticsearchClient.indices().delete(d -> d.index(index));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not delete the replaced index {}", index, e);
+            }
+        }
+        log.info("Alias {} now points to {} (replaced {})", aliasName, targetName, removeConcreteIndex ? aliasName : previous);
+    }
+
+    private IndexCoordinates aliasFor(SearchDocumentSource source) {
+        return converter.getMappingContext().getRequiredPersistentEntity(source.documentType()).getIndexCoordinates();
+    }
+
+    private static final class Run {
+        final String aggregateType;
+        final Instant startedAt = Instant.now();
+        final AtomicLong indexed = new AtomicLong();
+        volatile String state = "STARTING";
+        volatile String targetIndex;
+        volatile List<ReindexPartition> partitions = List.of();
+        volatile String error;
+
+        Run(String aggregateType) {
+            this.aggregateType = aggregateType;
+        }
+
+        void begin(String targetIndex, List<ReindexPartition> partitions) {
+            this.targetIndex = targetIndex;
+            this.partitions = partitions;
+            this.state = "RUNNING";
+        }
+
+        boolean isActive() {
+            return !"COMPLETED".equals(state) && !"FAILED".equals(state);
+        }
+
+        double documentsPerSecond() {
+            double seconds = Duration.between(startedAt, Instant.now()).toMillis() / 1000.0;
+            return seconds > 0 ? indexed.get() / seconds : 0;
+        }
+
+        /** Share of the id range covered so far, from the partition checkpoints. */
+        double progress() {
+            if ("COMPLETED".equals(state)) return 1.0;
+            long total = 0;
+            long covered = 0;
+            for (ReindexPartition partition : partitions) {
+                total += partition.getUpperId() - partition.getLowerId();
+                covered += partition.isDone()
+                        ? partition.getUpperId() - partition.getLowerId()
+                        : partition.getLastIndexedId() - partition.getLowerId();
+            }
+            return total > 0 ? (double) covered / total : 0;
+        }
+
+        ReindexStatus status() {
+            return new ReindexStatus(aggregateType, targetIndex, state, indexed.get(), progress(), documentsPerSecond(),
+                    startedAt.toString(), error);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.graphql.platform.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the calls in flight to a backend by a limit that adapts to its latency, in the manner of the gradient
+ * algorithm of Netflix' concurrency-limits. A long-term average of the round-trip time stands for the latency without
+ * queueing; while samples stay close to it the limit grows by about its square root, and as they rise above it
+ * (the backend is queueing) the limit shrinks in proportion. A timeout cuts it by a tenth.
+ * <p>
+ * A call over the limit is not queued: it fails at once with {@link SearchOverloadedException}, so a slow backend
+ * turns into fast, retriable errors instead of every thread waiting on it.
+ * <p>
+ * Metrics, tagged with {@code bulkhead}: the {@code search.limiter.limit} and {@code search.limiter.in_flight}
+ * gauges, {@code search.limiter.rejected} and {@code search.limiter.dropped} (calls that timed out).
+ */
+public final class ConcurrencyLimiter {
+
+    /** Samples the long-term RTT averages over. */
+    private static final int WINDOW = 600;
+    /** How much slower than the long-term RTT a sample may be before the limit shrinks. */
+    private static final double TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final double BACKOFF = 0.9;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final LongSupplier nanoTime;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Counter rejected;
+    private final Counter dropped;
+
+    private double limit;
+    private int inFlight;
+    private double longRtt;
+
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, MeterRegistry meterRegistry) {
+        this(name, initialLimit, minLimit, maxLimit, meterRegistry, System::nanoTime);
+    }
+
+    public ConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, MeterRegistry meterRegistry, LongSupplier nanoTime) {
+        if (minLimit < 1 || initialLimit < minLimit || maxLimit < initialLimit) {
+            throw new IllegalArgumentException("Limits of '" + name + "' must satisfy 1 <= min <= initial <= max");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.nanoTime = nanoTime;
+        this.limit = initialLimit;
+        Gauge.builder("search.limiter.limit", this, ConcurrencyLimiter::limit).tag("bulkhead", name)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("search.limiter.in_flight", this, ConcurrencyLimiter::inFlight).tag("bulkhead", name).register(meterRegistry);
+        this.rejected = Counter.builder("search.limiter.rejected").tag("bulkhead", name)
+                .description("Calls shed because the bulkhead was at its limit")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("search.limiter.dropped").tag("bulkhead", name).register(meterRegistry);
+    }
+
+    /** A granted call; exactly one of its methods must be called once the call is over. */
+    public final class Permit {
+        private final long start = nanoTime.getAsLong();
+        private final int inFlightAtStart;
+        private boolean released;
+
+        private Permit(int inFlightAtStart) {
+            this.inFlightAtStart = inFlightAtStart;
+        }
+
+        /** The call succeeded; its round-trip time adjusts the limit. */
+        public void success() {
+            long rtt = nanoTime.getAsLong() - start;
+            release(() -> sample(Math.max(1, rtt), inFlightAtStart));
+        }
+
+        /** The call timed out, a sign of overload. */
+        public void dropped() {
+            dropped.increment();
+            release(() -> limit = Math.max(minLimit, limit * BACKOFF));
+        }
+
+        /** The call failed for a reason that says nothing about load. */
+        public void ignore() {
+            release(() -> {});
+        }
+
+        private void release(Runnable update) {
+            lock.lock();
+            try {
+                if (released) return;
+                released = true;
+                inFlight--;
+                update.run();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /** @throws SearchOverloadedException if the limit is reached */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            if (inFlight >= (int) limit) {
+                rejected.increment();
+                throw new SearchOverloadedException(name, (int) limit);
+            }
+            inFlight++;
+            return new Permit(inFlight);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Runs {@code call} under a permit; timeouts count as dropped, other failures are ignored. */
+    public <T> T call(Supplier<T> call) {
+        Permit permit = acquire();
+        try {
+            T result = call.get();
+            permit.success();
+            return result;
+        } catch (RuntimeException e) {
+            if (isTimeout(e)) permit.dropped();
+            else permit.ignore();
+            throw e;
+        }
+    }
+
+    public int limit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Called under the lock. */
+    private void sample(long rtt, int inFlightAtStart) {
+        longRtt = longRtt == 0 ? rtt : longRtt + (rtt - longRtt) / WINDOW;
+        // After a slow period the average lags behind; let it catch up with a backend that got fast again
+        if (longRtt / rtt > 2) longRtt *= 0.95;
+        // Far below the limit the caller is what limits throughput; the sample says nothing about the backend's capacity
+        if (inFlightAtStart < limit / 2) return;
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRtt / rtt));
+        double target = limit * gradient + Math.sqrt(limit);
+        limit = Math.max(minLimit, Math.min(maxLimit, limit * (1 - SMOOTHING) + target * SMOOTHING));
+    }
+
+    private static boolean isTimeout(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof SocketTimeoutException || t instanceof TimeoutException
+                    || t instanceof org.springframework.dao.QueryTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
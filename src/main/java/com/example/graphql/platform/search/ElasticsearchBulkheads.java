@@ -0,0 +1,50 @@
+package com.example.graphql.platform.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.stereotype.Component;
+
+/**
+ * One {@link ConcurrencyLimiter} per kind of Elasticsearch work, each with its own limit, so one kind backing up
+ * cannot take the capacity of another: interactive searches (hits requested), facet-only searches (counts and
+ * aggregations, size 0) and indexing writes. Each limit starts at {@code search.limiter.<bulkhead>.initial-limit}
+ * and adapts between 1 and {@code search.limiter.<bulkhead>.max-limit}.
+ */
+@Component
+public class ElasticsearchBulkheads {
+
+    private final ConcurrencyLimiter search;
+    private final ConcurrencyLimiter facets;
+    private final ConcurrencyLimiter indexing;
+
+    public ElasticsearchBulkheads(MeterRegistry meterRegistry,
+                                  @Value("${search.limiter.search.initial-limit:20}") int searchInitialLimit,
+                                  @Value("${search.limiter.search.max-limit:200}") int searchMaxLimit,
+                                  @Value("${search.limiter.facets.initial-limit:10}") int facetsInitialLimit,
+                                  @Value("${search.limiter.facets.max-limit:100}") int facetsMaxLimit,
+                                  @Value("${search.limiter.indexing.initial-limit:4}") int indexingInitialLimit,
+                                  @Value("${search.limiter.indexing.max-limit:16}") int indexingMaxLimit) {
+        this.search = new ConcurrencyLimiter("search", searchInitialLimit, 1, searchMaxLimit, meterRegistry);
+        this.facets = new ConcurrencyLimiter("facets", facetsInitialLimit, 1, facetsMaxLimit, meterRegistry);
+        this.indexing = new ConcurrencyLimiter("indexing", indexingInitialLimit, 1, indexingMaxLimit, meterRegistry);
+    }
+
+    public ConcurrencyLimiter search() {
+        return search;
+    }
+
+    public ConcurrencyLimiter facets() {
+        return facets;
+    }
+
+    public ConcurrencyLimiter indexing() {
+        return indexing;
+    }
+
+    /** The bulkhead of a read: facets if it asks for no hits, search otherwise. */
+    public ConcurrencyLimiter forQuery(Query query) {
+        Integer maxResults = query.getMaxResults();
+        return maxResults != null && maxResults == 0 ? facets : search;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.graphql.platform.search;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Whether Elasticsearch currently answers reads, judged from the outcome of the reads themselves (see
+ * {@link MultiSearchBatcher}) rather than by polling. After {@code search.health.failure-threshold} reads in a row
+ * failed because ES was unreachable, timed out or shed them, it counts as degraded for {@code search.health.retry-after};
+ * then reads go to ES again, and one more failure makes it degraded again while a success clears it.
+ * Published as the {@code search.es.degraded} gauge (1 while degraded).
+ */
+@Component
+public class ElasticsearchHealth {
+
+    private static final Logger log = LoggerFactory.getLogger(ElasticsearchHealth.class);
+
+    private final int failureThreshold;
+    private final Duration retryAfter;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long degradedUntil;
+
+    public ElasticsearchHealth(MeterRegistry meterRegistry,
+                               @Value("${search.health.failure-threshold:5}") int failureThreshold,
+                               @Value("${search.health.retry-after:10s}") Duration retryAfter) {
+        this.failureThreshold = failureThreshold;
+        this.retryAfter = retryAfter;
+        Gauge.builder("search.es.degraded", this, health -> health.degraded() ? 1 : 0)
+                .description("1 while Elasticsearch reads are considered unavailable")
+                .register(meterRegistry);
+    }
+
+    public boolean degraded() {
+        long until = degradedUntil;
+        return until != 0 && System.nanoTime() - until < 0;
+    }
+
+    public void success() {
+        if (consecutiveFailures.getAndSet(0) >= failureThreshold) {
+            log.info("Elasticsearch reads succeed again");
+        }
+        degradedUntil = 0;
+    }
+
+    /** Counts {@code failure} if it says ES is unavailable; any other failure (e.g. a rejected query) is ignored. */
+    public void failure(Throwable failure) {
+        if (!isUnavailable(failure)) return;
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            if (!degraded()) log.warn("Elasticsearch considered degraded for {}: {}", retryAfter, failure.toString());
+            degradedUntil = System.nanoTime() + retryAfter.toNanos();
+        }
+    }
+
+    private static boolean isUnavailable(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof SearchOverloadedException || t instanceof DataAccessResourceFailureException
+                    || t instanceof ConnectException || t instanceof SocketTimeoutException || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.filter.DateFilter;
+import com.example.graphql.platform.filter.StringFilter;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+/**
+ * Produces a canonical string for a filter record, so that filters which build the same query
+ * share the same key: conjuncts are flattened and sorted, reordered 'and'/'or' lists and
+ * duplicate clauses collapse, single-element 'or' lists are inlined and 'in' lists are sorted.
+ */
+public final class FilterCanonicalizer {
+
+    private static final String EMPTY = "{}";
+
+    private FilterCanonicalizer() {
+    }
+
+    public static String canonicalize(Object filter) {
+        if (filter == null) return EMPTY;
+        TreeSet<String> conjuncts = new TreeSet<>();
+        collectConjuncts(filter, conjuncts);
+        return conjuncts.isEmpty() ? EMPTY : "{" + String.join("&", conjuncts) + "}";
+    }
+
+    /** Full-text input goes through the standard analyzer, so case and extra whitespace never change the result. */
+    public static String normalizeText(String text) {
+        if (text == null) return "";
+        return text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    private static void collectConjuncts(Object filter, TreeSet<String> target) {
+        for (FilterPlan.Node node : FilterPlan.of(filter.getClass()).nodes()) {
+            Object value = node.get(filter);
+            if (value == null) continue;
+
+            switch (node.kind()) {
+                case AND -> {
+                    // AND inside an implicit AND: just more conjuncts
+                    for (Object sub : (List<?>) value) {
+                        if (sub != null) collectConjuncts(sub, target);
+                    }
+                }
+                case OR -> {
+                    TreeSet<String> disjuncts = new TreeSet<>();
+                    for (Object sub : (List<?>) value) {
+                        String canonical = canonicalize(sub);
+                        if (!canonical.equals(EMPTY)) disjuncts.add(canonical); // Empty branches build no clause
+                    }
+                    if (disjuncts.size() == 1) {
+                        // or: [X] is just X
+                        for (Object sub : (List<?>) value) {
+                            if (sub != null) collectConjuncts(sub, target);
+                        }
+                    } else if (!disjuncts.isEmpty()) {
+                        target.add("or(" + String.join("|", disjuncts) + ")");
+                    }
+                }
+                case NOT -> {
+                    String canonical = canonicalize(value);
+                    if (!canonical.equals(EMPTY)) target.add("not(" + canonical + ")");
+                }
+                case STRING -> target.add(node.name() + "=" + canonicalString((StringFilter) value));
+                case DATE -> target.add(node.name() + "=" + canonicalDate((DateFilter) value));
+                // Int/Float/Boolean filters are flat records of numbers; their toString is canonical
+                default -> target.add(node.name() + "=" + value);
+            }
+        }
+    }
+
+    private static String canonicalString(StringFilter filter) {
+        StringBuilder sb = new StringBuilder("S[");
+        appendQuoted(sb.append("eq="), filter.eq());
+        appendQuoted(sb.append(",contains="), filter.contains());
+        appendQuoted(sb.append(",startsWith="), filter.startsWith());
+        appendQuoted(sb.append(",endsWith="), filter.endsWith());
+        sb.append(",in=");
+        if (filter.in() == null || filter.in().isEmpty()) {
+            sb.append("null");
+        } else {
+            TreeSet<String> values = new TreeSet<>();
+            for (String v : filter.in()) {
+                if (v != null) values.add(v);
+            }
+            sb.append('(');
+            for (String v : values) appendQuoted(sb, v);
+            sb.append(')');
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String canonicalDate(DateFilter filter) {
+        StringBuilder sb = new StringBuilder("D[");
+        appendQuoted(sb.append("eq="), filter.eq());
+        appendQuoted(sb.append(",gt="), filter.gt());
+        appendQuoted(sb.append(",lt="), filter.lt());
+        appendQuoted(sb.append(",gte="), filter.gte());
+        appendQuoted(sb.append(",lte="), filter.lte());
+        return sb.append(']').toString();
+    }
+
+    // Length-prefixed so user-supplied values can never be confused with the separators above
+    private static void appendQuoted(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+        } else {
+            sb.append(value.length()).append(':').append(value);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.search.FilterTree.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites a {@link FilterTree} into an equivalent, smaller one, bottom-up:
+ * <ul>
+ *   <li>nested and/or are flattened into their parent, single-clause and/or are unwrapped and duplicates dropped;</li>
+ *   <li>match-all clauses (e.g. an empty StringFilter) are dropped from an and and absorb an or; match-none does the reverse;</li>
+ *   <li>an or of exact matches on one field becomes a single terms clause;</li>
+ *   <li>nested clauses on the same path under an or are merged into one nested clause (some object matches a, or some
+ *   object matches b, is the same as some object matching a or b).</li>
+ * </ul>
+ * Nested siblings under an and are deliberately kept apart: {@code addresses_country: "US", addresses_state: "CA"}
+ * means "has a US address and has a CA address", which one nested query over both would narrow to a single address.
+ * Only a nested match-all (which says no more than "has an address") is dropped next to another clause on its path.
+ */
+public final class FilterOptimizer {
+
+    private FilterOptimizer() {}
+
+    /** Grouping keys of an or; never equal to a FilterTree, so trees can share the map to dedupe. */
+    private record TermsKey(String field) {}
+
+    private record NestedKey(String path) {}
+
+    public static FilterTree optimize(FilterTree tree) {
+        if (tree == null) return null;
+        return switch (tree) {
+            case And and -> and(and.clauses());
+            case Or or -> or(or.clauses());
+            case Not not -> not(optimize(not.clause()));
+            case Nested nested -> {
+                FilterTree clause = optimize(nested.clause());
+                yield clause instanceof MatchNone ? clause : new Nested(nested.path(), clause);
+            }
+            case Terms in -> terms(in.field(), in.values());
+            default -> tree;
+        };
+    }
+
+    private static FilterTree and(List<FilterTree> clauses) {
+        LinkedHashSet<FilterTree> result = new LinkedHashSet<>();
+        for (FilterTree clause : clauses) {
+            FilterTree optimized = optimize(clause);
+            switch (optimized) {
+                case MatchAll ignored -> {}
+                case MatchNone none -> { return none; }
+                case And and -> result.addAll(and.clauses());
+                default -> result.add(optimized);
+            }
+        }
+        Set<String> constrained = new HashSet<>();
+        for (FilterTree clause : result) {
+            if (clause instanceof Nested nested && !(nested.clause() instanceof MatchAll)) constrained.add(nested.path());
+        }
+        result.removeIf(clause -> clause instanceof Nested nested && nested.clause() instanceof MatchAll && constrained.contains(nested.path()));
+
+        if (result.isEmpty()) return FilterTree.MATCH_ALL;
+        return result.size() == 1 ? result.iterator().next() : new And(List.copyOf(result));
+    }
+
+    private static FilterTree or(List<FilterTree> clauses) {
+        List<FilterTree> flat = new ArrayList<>(clauses.size());
+        for (FilterTree clause : clauses) {
+            FilterTree optimized = optimize(clause);
+            switch (optimized) {
+                case MatchAll all -> { return all; }
+                case MatchNone ignored -> {}
+                case Or or -> flat.addAll(or.clauses());
+                default -> flat.add(optimized);
+            }
+        }
+
+        Map<Object, List<FilterTree>> groups = new LinkedHashMap<>();
+        for (FilterTree clause : flat) {
+            Object key = switch (clause) {
+                case Term term -> new TermsKey(term.field());
+                case Terms terms -> new TermsKey(terms.field());
+                case Nested nested -> new NestedKey(nested.path());
+                default -> clause;
+            };
+            groups.computeIfAbsent(key, k -> new ArrayList<>()).add(clause);
+        }
+
+        List<FilterTree> result = new ArrayList<>(groups.size());
+        for (Map.Entry<Object, List<FilterTree>> group : groups.entrySet()) {
+            List<FilterTree> members = group.getValue();
+            switch (group.getKey()) {
+                case TermsKey key -> {
+                    List<Object> values = new ArrayList<>();
+                    for (FilterTree member : members) {
+                        if (member instanceof Term term) values.add(term.value());
+                        else values.addAll(((Terms) member).values());
+                    }
+                    result.add(terms(key.field(), values));
+                }
+                case NestedKey key when members.size() > 1 -> {
+                    List<FilterTree> inner = new ArrayList<>(members.size());
+                    for (FilterTree member : members) inner.add(((Nested) member).clause());
+                    FilterTree merged = or(inner);
+                    // An inner match-all still requires at least one nested object, so the wrapper stays
+                    result.add(new Nested(key.path(), merged));
+                }
+                default -> result.add(members.get(0));
+            }
+        }
+
+        if (result.isEmpty()) return FilterTree.MATCH_NONE;
+        return result.size() == 1 ? result.get(0) : new Or(List.copyOf(result));
+    }
+
+    private static FilterTree not(FilterTree clause) {
+        return switch (clause) {
+            case Not not -> not.clause();
+            case MatchAll ignored -> FilterTree.MATCH_NONE;
+            case MatchNone ignored -> FilterTree.MATCH_ALL;
+            default -> new Not(clause);
+        };
+    }
+
+    private static FilterTree terms(String field, List<Object> values) {
+        List<Object> distinct = List.copyOf(new LinkedHashSet<>(values));
+        if (distinct.isEmpty()) return FilterTree.MATCH_NONE;
+        return distinct.size() == 1 ? new Term(field, distinct.get(0)) : new Terms(field, distinct);
+    }
+}
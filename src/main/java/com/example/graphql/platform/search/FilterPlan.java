@@ -0,0 +1,197 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.filter.*;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Compiled form of a filter record (e.g. PersonFilterInput).
+ * All reflection happens once per record class in {@link #of(Class)}; walking a filter
+ * afterwards only calls the pre-built accessors and reads the resolved field metadata.
+ * {@link FilterPlanValidator} compiles the plans of the application's filter records at startup.
+ */
+public final class FilterPlan {
+
+    private static final ClassValue<FilterPlan> PLANS = new ClassValue<>() {
+        @Override
+        protected FilterPlan computeValue(Class<?> type) {
+            return compile(type);
+        }
+    };
+
+    public enum Kind { AND, OR, NOT, STRING, INT, FLOAT, DATE, BOOLEAN }
+
+    /** Gram length of the ".ngram" subfields (the "trigram" tokenizer in elasticsearch/person-settings.json). */
+    public static final int NGRAM_LENGTH = 3;
+
+    /**
+     * One record component of the filter, resolved against the mapping of the {@link SearchFilter} document.
+     * For leaves, {@code field} is the ES path, {@code exactField} the path used for exact matching
+     * (the keyword field or subfield for strings) and {@code nestedRoot} the nested path to wrap the leaf in, or null.
+     * String leaves may also have {@code ngramField}, indexed as {@link #NGRAM_LENGTH}-grams for contains,
+     * and {@code reversedField}, the whole value reversed for endsWith; both are null where the mapping has none.
+     */
+    public record Node(String name, Kind kind, String field, String exactField, String ngramField, String reversedField,
+                       String nestedRoot, Function<Object, Object> accessor) {
+        public Object get(Object filter) {
+            return accessor.apply(filter);
+        }
+
+        public boolean isLogical() {
+            return kind == Kind.AND || kind == Kind.OR || kind == Kind.NOT;
+        }
+    }
+
+    private static final Set<FieldType> INTEGER_TYPES = Set.of(FieldType.Integer, FieldType.Long, FieldType.Short, FieldType.Byte);
+    private static final Set<FieldType> DECIMAL_TYPES = Set.of(FieldType.Double, FieldType.Float, FieldType.Half_Float, FieldType.Scaled_Float);
+
+    private final Class<?> filterType;
+    private final Node[] nodes;
+
+    private FilterPlan(Class<?> filterType, Node[] nodes) {
+        this.filterType = filterType;
+        this.nodes = nodes;
+    }
+
+    public static FilterPlan of(Class<?> filterType) {
+        return PLANS.get(filterType);
+    }
+
+    public Class<?> filterType() {
+        return filterType;
+    }
+
+    /** Nodes in record declaration order. The array is shared; callers must not modify it. */
+    public Node[] nodes() {
+        return nodes;
+    }
+
+    private static FilterPlan compile(Class<?> type) {
+        if (!type.isRecord()) {
+            throw new IllegalArgumentException("Filter object must be a Java Record");
+        }
+        SearchFilter target = type.getAnnotation(SearchFilter.class);
+        if (target == null) {
+            throw new IllegalArgumentException(type.getSimpleName() + " must name the document it filters with @SearchFilter");
+        }
+        SearchFieldRegistry registry = SearchFieldRegistry.of(target.value());
+
+        List<Node> nodes = new ArrayList<>();
+        for (RecordComponent component : type.getRecordComponents()) {
+            Kind kind = kindOf(type, component);
+            if (kind == null) continue; // Not a filterable component, same as before: ignored
+
+            String name = component.getName();
+            Function<Object, Object> accessor = accessor(type, component);
+            if (kind == Kind.AND || kind == Kind.OR || kind == Kind.NOT) {
+                nodes.add(new Node(name, kind, null, null, null, null, null, accessor));
+            } else {
+                SearchFieldRegistry.SearchField field = resolve(type, registry, name, kind);
+                String exactField = kind == Kind.STRING ? field.keywordField() : field.path();
+                nodes.add(new Node(name, kind, field.path(), exactField, field.ngramField(), field.reversedField(), field.nestedPath(), accessor));
+            }
+        }
+        return new FilterPlan(type, nodes.toArray(new Node[0]));
+    }
+
+    /**
+     * The mapped field a leaf filters on: "_" in the component name stands for "." (e.g. "addresses_city" is
+     * "addresses.city"), unless the mapping has a field with the literal name. Fails if the field is not mapped or
+     * cannot be filtered with the component's filter type.
+     */
+    private static SearchFieldRegistry.SearchField resolve(Class<?> type, SearchFieldRegistry registry, String name, Kind kind) {
+        SearchFieldRegistry.SearchField field = registry.field(name);
+        if (field == null) field = registry.field(name.replace('_', '.'));
+        String where = type.getSimpleName() + "." + name;
+        if (field == null) {
+            throw new IllegalArgumentException(where + " has no mapped field in " + registry.documentType().getSimpleName());
+        }
+        if (!field.searchable()) {
+            throw new IllegalArgumentException(where + ": " + field.path() + " is neither indexed nor has doc values");
+        }
+        boolean compatible = switch (kind) {
+            case STRING -> field.keywordField() != null;
+            case INT -> INTEGER_TYPES.contains(field.type());
+            case FLOAT -> INTEGER_TYPES.contains(field.type()) || DECIMAL_TYPES.contains(field.type());
+            case DATE -> field.type() == FieldType.Date || field.type() == FieldType.Date_Nanos;
+            case BOOLEAN -> field.type() == FieldType.Boolean;
+            default -> false;
+        };
+        if (!compatible) {
+            throw new IllegalArgumentException(where + ": " + kind + " filter on " + field.path() + " mapped as " + field.type()
+                    + (kind == Kind.STRING ? " without a keyword field or subfield" : ""));
+        }
+        return field;
+    }
+
+    private static Kind kindOf(Class<?> type, RecordComponent component) {
+        Class<?> valueType = component.getType();
+        String name = component.getName();
+
+        if ((name.equals("and") || name.equals("or")) && List.class.isAssignableFrom(valueType)) {
+            if (component.getGenericType() instanceof ParameterizedType pt
+                    && pt.getActualTypeArguments()[0] instanceof Class<?> element
+                    && !element.isRecord()) {
+                throw new IllegalArgumentException("'" + name + "' of " + type.getSimpleName() + " must be a list of filter records");
+            }
+            return name.equals("and") ? Kind.AND : Kind.OR;
+        }
+        if (name.equals("not")) return Kind.NOT;
+        if (valueType == StringFilter.class) return Kind.STRING;
+        if (valueType == IntFilter.class) return Kind.INT;
+        if (valueType == FloatFilter.class) return Kind.FLOAT;
+        if (valueType == DateFilter.class) return Kind.DATE;
+        if (valueType == BooleanFilter.class) return Kind.BOOLEAN;
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Function<Object, Object> accessor(Class<?> type, RecordComponent component) {
+        MethodHandles.Lookup lookup;
+        MethodHandle getter;
+        try {
+            lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            lookup = MethodHandles.publicLookup();
+        }
+        try {
+            getter = lookup.unreflect(component.getAccessor());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot access " + type.getSimpleName() + "." + component.getName(), e);
+        }
+
+        // Spin a real Function implementation so the hot path is a plain interface call.
+        // This needs full-privilege access to the record's module; if the record lives in another
+        // class loader (e.g. devtools restart loader) we fall back to invoking the handle directly.
+        try {
+            CallSite site = LambdaMetafactory.metafactory(
+                    lookup,
+                    "apply",
+                    MethodType.methodType(Function.class),
+                    MethodType.methodType(Object.class, Object.class),
+                    getter,
+                    getter.type().wrap());
+            return (Function<Object, Object>) site.getTarget().invokeExact();
+        } catch (Throwable e) {
+            MethodHandle generic = getter.asType(MethodType.methodType(Object.class, Object.class));
+            return filter -> {
+                try {
+                    return generic.invokeExact(filter);
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Error reading " + type.getSimpleName() + "." + component.getName(), t);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.filter.SearchFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.core.type.filter.AnnotationTypeFilter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.util.List;
+
+/**
+ * Compiles the {@link FilterPlan}, and with it the {@link SearchFieldRegistry} of its document, of every top-level
+ * {@link SearchFilter} record in the application's packages at startup. A filter that does not fit its document's
+ * mapping (an unmapped component, a string without a keyword field, a filter of the wrong type) then stops the boot
+ * instead of failing the first search that uses it. Records nested in other classes, such as test fixtures, are
+ * still compiled on first use.
+ */
+@Component
+public class FilterPlanValidator implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(FilterPlanValidator.class);
+
+    private final BeanFactory beanFactory;
+    private final ResourceLoader resourceLoader;
+    private final Environment environment;
+
+    public FilterPlanValidator(BeanFactory beanFactory, ResourceLoader resourceLoader, Environment environment) {
+        this.beanFactory = beanFactory;
+        this.resourceLoader = resourceLoader;
+        this.environment = environment;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!AutoConfigurationPackages.has(beanFactory)) return;
+        ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false, environment) {
+            @Override
+            protected boolean isCandidateComponent(AnnotatedBeanDefinition definition) {
+                return definition.getMetadata().isIndependent() && !definition.getMetadata().hasEnclosingClass();
+            }
+        };
+        scanner.setResourceLoader(resourceLoader);
+        scanner.addIncludeFilter(new AnnotationTypeFilter(SearchFilter.class));
+
+        List<String> packages = AutoConfigurationPackages.get(beanFactory);
+        int compiled = 0;
+        for (String basePackage : packages) {
+            for (BeanDefinition candidate : scanner.findCandidateComponents(basePackage)) {
+                FilterPlan.of(ClassUtils.resolveClassName(candidate.getBeanClassName(), resourceLoader.getClassLoader()));
+                compiled++;
+            }
+        }
+        log.info("Compiled {} search filter plans in {}", compiled, packages);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.filter.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Backend independent form of a filter record: boolean logic over field predicates, with nested documents explicit.
+ * {@link #of(Object)} translates a filter literally; {@link FilterOptimizer} rewrites the tree before a backend
+ * (e.g. {@link ElasticsearchQueryBuilder}) emits it. Values are kept as the client sent them; nodes are records, so
+ * identical subtrees are equal.
+ */
+public sealed interface FilterTree {
+
+    record And(List<FilterTree> clauses) implements FilterTree {}
+
+    record Or(List<FilterTree> clauses) implements FilterTree {}
+
+    record Not(FilterTree clause) implements FilterTree {}
+
+    /** Some nested object under {@code path} matches {@code clause}; fields in the clause are full paths. */
+    record Nested(String path, FilterTree clause) implements FilterTree {}
+
+    /** Exact match; {@code value} is a String or a Boolean. */
+    record Term(String field, Object value) implements FilterTree {}
+
+    /** Exact match on any of {@code values}. */
+    record Terms(String field, List<Object> values) implements FilterTree {}
+
+    record Prefix(String field, String prefix) implements FilterTree {}
+
+    /** The analyzed terms of {@code text} appear in {@code field} in order, next to each other. */
+    record Phrase(String field, String text) implements FilterTree {}
+
+    /** {@code pattern} uses {@code *} as the only wildcard. */
+    record Wildcard(String field, String pattern) implements FilterTree {}
+
+    /** Bounds are strings (numbers and dates alike); null bounds are open. */
+    record Range(String field, String gt, String gte, String lt, String lte) implements FilterTree {}
+
+    record MatchAll() implements FilterTree {}
+
+    record MatchNone() implements FilterTree {}
+
+    FilterTree MATCH_ALL = new MatchAll();
+    FilterTree MATCH_NONE = new MatchNone();
+
+    /** The literal tree of a filter record, or null if it sets nothing. */
+    static FilterTree of(Object filter) {
+        if (filter == null) return null;
+
+        List<FilterTree> clauses = new ArrayList<>();
+        for (FilterPlan.Node node : FilterPlan.of(filter.getClass()).nodes()) {
+            Object value = node.get(filter);
+            if (value == null) continue;
+
+            switch (node.kind()) {
+                case AND -> {
+                    List<FilterTree> and = children((List<?>) value);
+                    if (!and.isEmpty()) clauses.add(new And(and));
+                }
+                case OR -> {
+                    List<FilterTree> or = children((List<?>) value);
+                    if (!or.isEmpty()) clauses.add(new Or(or));
+                }
+                case NOT -> {
+                    FilterTree not = of(value);
+                    if (not != null) clauses.add(new Not(not));
+                }
+                default -> {
+                    FilterTree leaf = leaf(node, value);
+                    if (leaf != null) clauses.add(node.nestedRoot() != null ? new Nested(node.nestedRoot(), leaf) : leaf);
+                }
+            }
+        }
+        if (clauses.isEmpty()) return null;
+        return clauses.size() == 1 ? clauses.get(0) : new And(clauses);
+    }
+
+    private static List<FilterTree> children(List<?> filters) {
+        List<FilterTree> children = new ArrayList<>(filters.size());
+        for (Object filter : filters) {
+            FilterTree child = of(filter);
+            if (child != null) children.add(child);
+        }
+        return children;
+    }
+
+    private static FilterTree leaf(FilterPlan.Node node, Object value) {
+        return switch (node.kind()) {
+            case STRING -> string(node, (StringFilter) value);
+            case INT -> {
+                IntFilter f = (IntFilter) value;
+                String eq = f.eq() != null ? String.valueOf(f.eq()) : null;
+                yield new Range(node.field(), str(f.gt()), f.gte() != null ? str(f.gte()) : eq, str(f.lt()), f.lte() != null ? str(f.lte()) : eq);
+            }
+            case FLOAT -> {
+                FloatFilter f = (FloatFilter) value;
+                String eq = f.eq() != null ? String.valueOf(f.eq()) : null;
+                yield new Range(node.field(), str(f.gt()), eq, str(f.lt()), eq);
+            }
+            case DATE -> {
+                DateFilter f = (DateFilter) value;
+                yield new Range(node.field(), f.gt(), f.gte() != null ? f.gte() : f.eq(), f.lt(), f.lte() != null ? f.lte() : f.eq());
+            }
+            case BOOLEAN -> {
+                BooleanFilter f = (BooleanFilter) value;
+                yield f.eq() != null ? new Term(node.field(), f.eq()) : null;
+            }
+            default -> throw new IllegalStateException("Not a leaf: " + node.kind());
+        };
+    }
+
+    /**
+     * All operators of one StringFilter must hold; a filter without operators matches everything.
+     * contains is a phrase of consecutive n-grams, which matches exactly the values containing the text, and endsWith
+     * a prefix of the reversed value; both only seek in the term dictionary instead of scanning it like a leading
+     * wildcard. Text shorter than one gram has no n-grams and falls back to a wildcard.
+     */
+    private static FilterTree string(FilterPlan.Node node, StringFilter filter) {
+        String field = node.exactField();
+        List<FilterTree> clauses = new ArrayList<>();
+        if (filter.eq() != null) clauses.add(new Term(field, filter.eq()));
+        if (filter.contains() != null) {
+            String text = filter.contains();
+            clauses.add(node.ngramField() != null && text.codePointCount(0, text.length()) >= FilterPlan.NGRAM_LENGTH
+                    ? new Phrase(node.ngramField(), text)
+                    : new Wildcard(field, "*" + text + "*"));
+        }
+        if (filter.startsWith() != null) clauses.add(new Prefix(field, filter.startsWith()));
+        if (filter.endsWith() != null) {
+            String text = filter.endsWith();
+            clauses.add(node.reversedField() != null
+                    ? new Prefix(node.reversedField(), new StringBuilder(text).reverse().toString())
+                    : new Wildcard(field, "*" + text));
+        }
+        if (filter.in() != null && !filter.in().isEmpty()) clauses.add(new Terms(field, new ArrayList<>(filter.in())));
+        if (clauses.isEmpty()) return MATCH_ALL;
+        return clauses.size() == 1 ? clauses.get(0) : new And(clauses);
+    }
+
+    private static String str(Object value) {
+        return value != null ? String.valueOf(value) : null;
+    }
+}
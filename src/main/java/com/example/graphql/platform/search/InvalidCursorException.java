@@ -0,0 +1,9 @@
+package com.example.graphql.platform.search;
+
+/** An {@code after} cursor that does not decode, or was issued for a different sort; the client has to start over. */
+public class InvalidCursorException extends IllegalArgumentException {
+
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.filter.SearchFilter;
+import com.example.graphql.platform.search.FilterTree.*;
+
+import jakarta.persistence.criteria.AbstractQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Turns a filter record into a JPA {@link Specification} over the entity its document is mapped from, for searches
+ * answered by the database instead of Elasticsearch. It emits the same optimized {@link FilterTree} as
+ * {@link ElasticsearchQueryBuilder}, so both backends agree on what a filter means:
+ * <ul>
+ *   <li>the fields of the tree are index paths; a subfield ({@code name.keyword}, {@code name.ngram}, ...) stands
+ *       for its entity attribute ({@code name}), and which subfield it is says how to match it: contains (n-grams)
+ *       becomes {@code like '%x%'}, endsWith (reversed value) {@code like '%x'}, startsWith {@code like 'x%'};</li>
+ *   <li>a nested clause becomes {@code exists} over a correlated join ("some address matches"), so two nested
+ *       clauses under an and may match different addresses, exactly like two nested queries;</li>
+ *   <li>values and range bounds, kept as the client sent them, are converted to the attribute's type; a value that
+ *       is not of that type ({@code id: {eq: "abc"}}, a malformed date) matches nothing, like a term no document
+ *       has in the index, rather than failing the search.</li>
+ * </ul>
+ * Like keyword fields in the index, comparisons are case-sensitive.
+ */
+@Component
+public class JpaSpecificationBuilder {
+
+    private static final char ESCAPE = '\\';
+
+    /** Marks a value that is not of the attribute type; the predicate on it matches nothing. */
+    private static final Object UNCONVERTIBLE = new Object();
+
+    /** @return a specification for {@code filter}; matches everything if the filter is null or empty */
+    public <T> Specification<T> build(Object filter) {
+        FilterTree tree = FilterOptimizer.optimize(FilterTree.of(filter));
+        if (tree == null) return (root, query, cb) -> cb.conjunction();
+        SearchFieldRegistry registry = SearchFieldRegistry.of(filter.getClass().getAnnotation(SearchFilter.class).value());
+        return (root, query, cb) -> new Emitter(registry, cb).predicate(tree, root, query, "");
+    }
+
+    private record Emitter(SearchFieldRegistry registry, CriteriaBuilder cb) {
+
+        /** {@code prefix} is the nested path {@code from} stands for ("" at the root, else e.g. "addresses."). */
+        Predicate predicate(FilterTree tree, From<?, ?> from, AbstractQuery<?> query, String prefix) {
+            return switch (tree) {
+                case And and -> cb.and(predicates(and.clauses(), from, query, prefix));
+                case Or or -> cb.or(predicates(or.clauses(), from, query, prefix));
+                case Not not -> cb.not(predicate(not.clause(), from, query, prefix));
+                case Nested nested -> {
+                    Subquery<Integer> subquery = query.subquery(Integer.class);
+                    From<?, ?> correlated = correlate(subquery, from);
+                    Join<?, ?> element = correlated.join(nested.path().substring(prefix.length()));
+                    subquery.select(cb.literal(1)).where(predicate(nested.clause(), element, subquery, nested.path() + "."));
+                    yield cb.exists(subquery);
+                }
+                case Term term -> {
+                    Path<Object> path = path(from, term.field(), prefix);
+                    Object value = convert(term.value(), path.getJavaType());
+                    yield value != UNCONVERTIBLE ? cb.equal(path, value) : cb.disjunction();
+                }
+                case Terms terms -> {
+                    Path<Object> path = path(from, terms.field(), prefix);
+                    CriteriaBuilder.In<Object> in = cb.in(path);
+                    boolean any = false;
+                    for (Object value : terms.values()) {
+                        Object converted = convert(value, path.getJavaType());
+                        if (converted == UNCONVERTIBLE) continue;
+                        in.value(converted);
+                        any = true;
+                    }
+                    yield any ? in : cb.disjunction();
+                }
+                case Prefix p -> {
+                    Expression<String> text = text(from, p.field(), prefix);
+                    // A prefix of the reversed value is a suffix of the value
+                    yield isReversed(p.field())
+                            ? cb.like(text, "%" + escape(new StringBuilder(p.prefix()).reverse().toString()), ESCAPE)
+                            : cb.like(text, escape(p.prefix()) + "%", ESCAPE);
+                }
+                case Phrase phrase -> cb.like(text(from, phrase.field(), prefix), "%" + escape(phrase.text()) + "%", ESCAPE);
+                case Wildcard wildcard -> cb.like(text(from, wildcard.field(), prefix), escape(wildcard.pattern()).replace('*', '%').replace('?', '_'), ESCAPE);
+                case Range range -> range(range, path(from, range.field(), prefix));
+                case MatchAll ignored -> cb.conjunction();
+                case MatchNone ignored -> cb.disjunction();
+            };
+        }
+
+        private Predicate[] predicates(List<FilterTree> clauses, From<?, ?> from, AbstractQuery<?> query, String prefix) {
+            List<Predicate> predicates = new ArrayList<>(clauses.size());
+            for (FilterTree clause : clauses) predicates.add(predicate(clause, from, query, prefix));
+            return predicates.toArray(new Predicate[0]);
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Predicate range(Range range, Path<Object> path) {
+            Class<?> type = path.getJavaType();
+            Expression<Comparable> comparable = (Expression) path;
+            Object gt = convert(range.gt(), type);
+            Object gte = convert(range.gte(), type);
+            Object lt = convert(range.lt(), type);
+            Object lte = convert(range.lte(), type);
+            if (gt == UNCONVERTIBLE || gte == UNCONVERTIBLE || lt == UNCONVERTIBLE || lte == UNCONVERTIBLE) return cb.disjunction();
+            List<Predicate> bounds = new ArrayList<>(2);
+            if (gt != null) bounds.add(cb.greaterThan(comparable, (Comparable) gt));
+            if (gte != null) bounds.add(cb.greaterThanOrEqualTo(comparable, (Comparable) gte));
+            if (lt != null) bounds.add(cb.lessThan(comparable, (Comparable) lt));
+            if (lte != null) bounds.add(cb.lessThanOrEqualTo(comparable, (Comparable) lte));
+            return cb.and(bounds.toArray(new Predicate[0]));
+        }
+
+        /** The entity attribute behind an index field, relative to {@code from}. */
+        private Path<Object> path(From<?, ?> from, String field, String prefix) {
+            String attribute = attribute(field).substring(prefix.length());
+            Path<?> path = from;
+            for (String name : attribute.split("\\.")) path = path.get(name);
+            @SuppressWarnings("unchecked")
+            Path<Object> result = (Path<Object>) path;
+            return result;
+        }
+
+        private Expression<String> text(From<?, ?> from, String field, String prefix) {
+            Path<Object> path = path(from, field, prefix);
+            return path.as(String.class);
+        }
+
+        /** The mapped field a (sub)field path belongs to: "name.keyword" is "name". */
+        private String attribute(String field) {
+            if (registry.field(field) != null) return field;
+            int dot = field.lastIndexOf('.');
+            if (dot > 0 && registry.field(field.substring(0, dot)) != null) return field.substring(0, dot);
+            throw new IllegalArgumentException("No mapped field for " + field + " in " + registry.documentType().getSimpleName());
+        }
+
+        private boolean isReversed(String field) {
+            SearchFieldRegistry.SearchField mapped = registry.field(attribute(field));
+            return field.equals(mapped.reversedField());
+        }
+
+        private static From<?, ?> correlate(Subquery<?> subquery, From<?, ?> from) {
+            if (from instanceof Root<?> root) return subquery.correlate(root);
+            if (from instanceof Join<?, ?> join) return subquery.correlate(join);
+            throw new IllegalStateException("Cannot correlate " + from);
+        }
+    }
+
+    /**
+     * A value or range bound as the client sent it (string, boolean) as an instance of the attribute type.
+     *
+     * @return the converted value (null stays null), or {@link #UNCONVERTIBLE}
+     */
+    private static Object convert(Object value, Class<?> type) {
+        if (!(value instanceof String text)) return value;
+        Class<?> boxed = box(type);
+        try {
+            if (boxed == Long.class) return Long.valueOf(text);
+            if (boxed == Integer.class) return Integer.valueOf(text);
+            if (boxed == Double.class) return Double.valueOf(text);
+            if (boxed == Float.class) return Float.valueOf(text);
+            if (boxed == LocalDate.class) return LocalDate.parse(text);
+        } catch (NumberFormatException | DateTimeParseException e) {
+            return UNCONVERTIBLE;
+        }
+        if (boxed == Boolean.class) {
+            if (text.equalsIgnoreCase("true")) return Boolean.TRUE;
+            return text.equalsIgnoreCase("false") ? Boolean.FALSE : UNCONVERTIBLE;
+        }
+        return text;
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive()) return type;
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == double.class) return Double.class;
+        if (type == float.class) return Float.class;
+        if (type == boolean.class) return Boolean.class;
+        return type;
+    }
+
+    /** LIKE metacharacters of user text are literal. */
+    private static String escape(String text) {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            if (c == '%' || c == '_' || c == ESCAPE) escaped.append(ESCAPE);
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.graphql.FetcherExecutor;
+import graphql.schema.DataFetchingEnvironment;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.dataloader.DataLoader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.Query;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Sends the searches of all search fields resolved on one level of a GraphQL request as a single {@code _msearch}.
+ * <p>
+ * A fetcher calls {@link #supply} instead of {@link FetcherExecutor#supply}. That synchronously registers a slot
+ * with the request's "multiSearch" DataLoader and runs the task on a fetcher thread. Inside the task, the first
+ * {@link #search} call parks its query in the slot instead of calling ES. graphql-java dispatches the DataLoader once
+ * every field of the level has been fetched; the batch then waits until each slot either submitted its query or
+ * finished without one (cache hit), runs one {@code _msearch} and hands every slot its own {@link SearchHits}.
+ * <p>
+ * A lone query goes out as a plain search, and outside a fetcher (or with inline fetchers) {@link #search} simply
+ * calls ES directly.
+ * <p>
+ * Every round trip takes a permit of its {@link ElasticsearchBulkheads} bulkhead; a batch counts as interactive if
+ * any of its queries asks for hits. When the bulkhead is full the round trip is not sent and every field of it fails
+ * with {@link SearchOverloadedException}. Outcomes are reported to {@link ElasticsearchHealth}.
+ * <p>
+ * A fetcher waits for its batch at most {@code spring.elasticsearch.connection-timeout} plus
+ * {@code spring.elasticsearch.socket-timeout}, the client timeouts a direct search runs with (see
+ * {@link com.example.graphql.platform.config.ElasticsearchConfig}), so a batched field never gives up before the
+ * round trip it waits for could have; should the batch never be dispatched (or hang), the field fails like a search
+ * that timed out instead of pinning its thread.
+ */
+@Component
+public class MultiSearchBatcher {
+
+    static final String LOADER_NAME = "multiSearch";
+
+    private static final ThreadLocal<Slot> CURRENT = new ThreadLocal<>();
+
+    private record Request(Query query, Class<?> type) {}
+
+    /** One search field of the request. Identity semantics on purpose: the DataLoader must not merge two fields. */
+    private static final class Slot {
+        final CompletableFuture<Request> request = new CompletableFuture<>();
+        final CompletableFuture<SearchHits<?>> response = new CompletableFuture<>();
+        final AtomicBoolean claimed = new AtomicBoolean();
+
+        /** Completes the slot without a query, if the task never submitted one. */
+        void release() {
+            request.complete(null);
+        }
+    }
+
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final FetcherExecutor fetcherExecutor;
+    private final ElasticsearchBulkheads bulkheads;
+    private final ElasticsearchHealth health;
+    private final Duration responseTimeout;
+    private final DistributionSummary batchSizes;
+
+    public MultiSearchBatcher(ElasticsearchOperations elasticsearchOperations,
+                              FetcherExecutor fetcherExecutor,
+                              ElasticsearchBulkheads bulkheads,
+                              ElasticsearchHealth health,
+                              BatchLoaderRegistry batchLoaderRegistry,
+                              MeterRegistry meterRegistry,
+                              @Value("${spring.elasticsearch.connection-timeout:1s}") Duration connectionTimeout,
+                              @Value("${spring.elasticsearch.socket-timeout:30s}") Duration socketTimeout) {
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.fetcherExecutor = fetcherExecutor;
+        this.bulkheads = bulkheads;
+        this.health = health;
+        this.responseTimeout = connectionTimeout.plus(socketTimeout);
+        this.batchSizes = DistributionSummary.builder("search.msearch.batch.size")
+                .description("Searches sent to Elasticsearch in one round trip")
+                .register(meterRegistry);
+        // Runs off the dispatching thread: the batch waits for the fetcher tasks to hand in their queries
+        batchLoaderRegistry.<Slot, Boolean>forName(LOADER_NAME)
+                .registerMappedBatchLoader((slots, env) -> Mono.fromFuture(fetcherExecutor.supply(() -> execute(slots))));
+    }
+
+    /**
+     * Runs a search fetcher's work on the fetcher executor; its first {@link #search} joins the request's batch.
+     * Must be called on the fetcher's own thread, before it returns.
+     */
+    public <T> CompletableFuture<T> supply(DataFetchingEnvironment env, Supplier<T> task) {
+        DataLoader<Slot, Boolean> loader = env.getDataLoader(LOADER_NAME);
+        if (loader == null || fetcherExecutor.isInline()) {
+            return fetcherExecutor.supply(task);
+        }
+        Slot slot = new Slot();
+        loader.load(slot);
+        return fetcherExecutor.supply(() -> {
+            CURRENT.set(slot);
+            try {
+                return task.get();
+            } finally {
+                CURRENT.remove();
+                slot.release();
+            }
+        });
+    }
+
+    /** Drop-in for {@link ElasticsearchOperations#search(Query, Class)} that batches when called from {@link #supply}. */
+    @SuppressWarnings("unchecked")
+    public <T> SearchHits<T> search(Query query, Class<T> type) {
+        Slot slot = CURRENT.get();
+        if (slot == null || !slot.claimed.compareAndSet(false, true)) {
+            return call(bulkheads.forQuery(query), () -> elasticsearchOperations.search(query, type));
+        }
+        slot.request.complete(new Request(query, type));
+        try {
+            return (SearchHits<T>) slot.response.orTimeout(responseTimeout.toMillis(), TimeUnit.MILLISECONDS).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            if (e.getCause() instanceof TimeoutException timeout) {
+                throw new DataAccessResourceFailureException("No _msearch response within " + responseTimeout, timeout);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Takes the calling fetcher out of its batch; its searches go to ES directly. Must be called before the fetcher
+     * blocks on work that may itself wait for this batch (e.g. an identical search led by another field).
+     */
+    public void leaveBatch() {
+        Slot slot = CURRENT.get();
+        if (slot != null && slot.claimed.compareAndSet(false, true)) {
+            slot.release();
+        }
+    }
+
+    private Map<Slot, Boolean> execute(Set<Slot> slots) {
+        List<Slot> pending = new ArrayList<>(slots.size());
+        List<Query> queries = new ArrayList<>(slots.size());
+        List<Class<?>> types = new ArrayList<>(slots.size());
+        for (Slot slot : slots) {
+            Request request = slot.request.join();
+            if (request == null) continue;
+            pending.add(slot);
+            queries.add(request.query());
+            types.add(request.type());
+        }
+
+        if (!pending.isEmpty()) {
+            batchSizes.record(pending.size());
+            ConcurrencyLimiter bulkhead = bulkheads.facets();
+            for (Query query : queries) {
+                if (bulkheads.forQuery(query) != bulkheads.facets()) bulkhead = bulkheads.search();
+            }
+            try {
+                if (pending.size() == 1) {
+                    pending.get(0).response.complete(call(bulkhead, () -> elasticsearchOperations.search(queries.get(0), types.get(0))));
+                } else {
+                    List<IndexCoordinates> indexes = new ArrayList<>(types.size());
+                    for (Class<?> type : types) {
+                        indexes.add(elasticsearchOperations.getIndexCoordinatesFor(type));
+                    }
+                    List<SearchHits<?>> responses = call(bulkhead, () -> elasticsearchOperations.multiSearch(queries, types, indexes));
+                    for (int i = 0; i < pending.size(); i++) {
+                        pending.get(i).response.complete(responses.get(i));
+                    }
+                }
+            } catch (RuntimeException e) {
+                // Every waiting fetcher must be released, or its field would hang
+                pending.forEach(slot -> slot.response.completeExceptionally(e));
+            }
+        }
+
+        Map<Slot, Boolean> done = new HashMap<>();
+        for (Slot slot : slots) {
+            done.put(slot, Boolean.TRUE);
+        }
+        return done;
+    }
+
+    private <T> T call(ConcurrencyLimiter bulkhead, Supplier<T> call) {
+        try {
+            T result = bulkhead.call(call);
+            health.success();
+            return result;
+        } catch (RuntimeException e) {
+            health.failure(e);
+            throw e;
+        }
+    }
+}
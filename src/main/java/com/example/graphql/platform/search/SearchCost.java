@@ -0,0 +1,68 @@
+package com.example.graphql.platform.search;
+
+import com.example.graphql.platform.search.FilterTree.*;
+
+/**
+ * What a search will cost Elasticsearch, counted up front over the literal filter (before any optimization, which
+ * is itself work proportional to the input) and the paging arguments:
+ * <ul>
+ *   <li>{@code depth}: the deepest chain of and/or/not (a record with several fields is an implicit and);</li>
+ *   <li>{@code clauses}: field predicates, each one query clause per shard;</li>
+ *   <li>{@code terms}: values of all {@code in} lists together;</li>
+ *   <li>{@code wildcards}: predicates that fall back to a wildcard and scan the term dictionary;</li>
+ *   <li>{@code nested}: predicates on nested objects, each a join over the nested documents;</li>
+ *   <li>{@code pageSize} and {@code window} (offset plus page size), which every shard has to collect and sort.</li>
+ * </ul>
+ */
+public record SearchCost(int depth, int clauses, int terms, int wildcards, int nested, long pageSize, long window) {
+
+    /** @param offset hits skipped before the page (0 for search_after paging) */
+    public static SearchCost of(Object filter, long offset, long pageSize) {
+        Counter counter = new Counter();
+        int depth = filter != null ? counter.visit(FilterTree.of(filter)) : 0;
+        return new SearchCost(depth, counter.clauses, counter.terms, counter.wildcards, counter.nested, pageSize, offset + pageSize);
+    }
+
+    private static final class Counter {
+        int clauses;
+        int terms;
+        int wildcards;
+        int nested;
+
+        /** @return the boolean depth of {@code tree} */
+        int visit(FilterTree tree) {
+            if (tree == null) return 0;
+            return switch (tree) {
+                case And and -> 1 + visitAll(and.clauses());
+                case Or or -> 1 + visitAll(or.clauses());
+                case Not not -> 1 + visit(not.clause());
+                case Nested n -> {
+                    nested++;
+                    yield visit(n.clause());
+                }
+                case Terms in -> {
+                    clauses++;
+                    terms += in.values().size();
+                    yield 0;
+                }
+                case Wildcard ignored -> {
+                    clauses++;
+                    wildcards++;
+                    yield 0;
+                }
+                case MatchAll ignored -> 0;
+                case MatchNone ignored -> 0;
+                default -> {
+                    clauses++;
+                    yield 0;
+                }
+            };
+        }
+
+        private int visitAll(java.util.List<FilterTree> clauses) {
+            int depth = 0;
+            for (FilterTree clause : clauses) depth = Math.max(depth, visit(clause));
+            return depth;
+        }
+    }
+}
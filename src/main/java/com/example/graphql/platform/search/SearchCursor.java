@@ -0,0 +1,42 @@
+package com.example.graphql.platform.search;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Opaque Relay cursor: the ES sort values of a hit (including the "id" tiebreaker) as base64url JSON.
+ * Passing them back as search_after continues right after that hit, at constant cost for any depth.
+ */
+public final class SearchCursor {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final TypeReference<List<Object>> SORT_VALUES = new TypeReference<>() {};
+
+    private SearchCursor() {
+    }
+
+    public static String encode(List<Object> sortValues) {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(MAPPER.writeValueAsBytes(sortValues));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot encode cursor " + sortValues, e);
+        }
+    }
+
+    /** @throws InvalidCursorException if {@code cursor} was not produced by {@link #encode} */
+    public static List<Object> decode(String cursor) {
+        List<Object> values;
+        try {
+            values = MAPPER.readValue(Base64.getUrlDecoder().decode(cursor.getBytes(StandardCharsets.US_ASCII)), SORT_VALUES);
+        } catch (IllegalArgumentException | java.io.IOException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor, e);
+        }
+        if (values == null || values.isEmpty()) throw new InvalidCursorException("Invalid cursor: " + cursor, null);
+        return values;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.graphql.platform.search;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+/**
+ * Streams every document matching a query, however many, straight to an output stream.
+ * <p>
+ * A point-in-time keeps the view of the index stable for the whole export, and it is walked in {@code _shard_doc}
+ * order with search_after, one slice at a time: only the current slice is in memory, and the next one is only
+ * requested once the previous one has been written, so a slow client slows the export down instead of filling the heap.
+ * Documents are written from their _source without being mapped to entities.
+ */
+@Component
+public class SearchExporter {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchExporter.class);
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    public enum Format {
+        /** One _source per line. */
+        NDJSON("application/x-ndjson"),
+        /** A header line, then the requested columns of each document. */
+        CSV("text/csv");
+
+        private final String contentType;
+
+        Format(String contentType) {
+            this.contentType = contentType;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+    }
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final MeterRegistry meterRegistry;
+    private final int sliceSize;
+    private final Duration keepAlive;
+
+    public SearchExporter(ElasticsearchClient elasticsearchClient,
+                          MeterRegistry meterRegistry,
+                          @Value("${search.export.slice-size:1000}") int sliceSize,
+                          @Value("${search.export.keep-alive:1m}") Duration keepAlive) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.meterRegistry = meterRegistry;
+        this.sliceSize = sliceSize;
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Writes all documents of {@code index} matching {@code query} (null for all) to {@code out}.
+     * CSV columns are _source paths; a path through an array (e.g. "addresses.city" of nested addresses) gives the
+     * values of all elements joined with "|". NDJSON ignores {@code columns} and writes the whole _source.
+     *
+     * @return the number of documents written
+     */
+    public long export(String index, Query query, Format format, List<String> columns, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        String keepAliveTime = keepAlive.toSeconds() + "s";
+        String pitId = elasticsearchClient.openPointInTime(p -> p.index(index).keepAlive(k -> k.time(keepAliveTime))).id();
+        long documents = 0;
+        try {
+            OutputStream buffered = new BufferedOutputStream(out, 64 * 1024);
+            if (format == Format.CSV) {
+                StringJoiner header = new StringJoiner(",", "", "\n");
+                columns.forEach(column -> header.add(csv(column)));
+                buffered.write(header.toString().getBytes(StandardCharsets.UTF_8));
+            }
+
+            List<FieldValue> after = null;
+            while (true) {
+                String currentPit = pitId;
+                List<FieldValue> currentAfter = after;
+                SearchResponse<ObjectNode> slice = elasticsearchClient.search(s -> {
+                    s.pit(p -> p.id(currentPit).keepAlive(k -> k.time(keepAliveTime)))
+                            .size(sliceSize)
+                            .trackTotalHits(t -> t.enabled(false))
+                            .sort(o -> o.field(f -> f.field("_shard_doc").order(SortOrder.Asc)));
+                    if (query != null) s.query(query);
+                    if (currentAfter != null) s.searchAfter(currentAfter);
+                    if (format == Format.CSV) s.source(src -> src.filter(f -> f.includes(columns)));
+                    return s;
+                }, ObjectNode.class);
+                // The id may change between requests; always continue with the latest one
+                if (slice.pitId() != null) pitId = slice.pitId();
+
+                List<Hit<ObjectNode>> hits = slice.hits().hits();
+                for (Hit<ObjectNode> hit : hits) {
+                    buffered.write(format == Format.CSV ? csvLine(hit.source(), columns) : ndjsonLine(hit.source()));
+                }
+                documents += hits.size();
+                buffered.flush();
+
+                if (hits.size() < sliceSize) break;
+                after = hits.get(hits.size() - 1).sort();
+            }
+        } finally {
+            closePointInTime(pitId);
+            meterRegistry.counter("search.export.documents", "index", index, "format", format.name().toLowerCase(Locale.ROOT)).increment(documents);
+        }
+        log.info("Exported {} documents of '{}' as {} in {} ms", documents, index, format,
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return documents;
+    }
+
+    private void closePointInTime(String pitId) {
+        try {
+            elasticsearchClient.closePointInTime(c -> c.id(pitId));
+        } catch (IOException | RuntimeException e) {
+            // It expires after the keep-alive anyway
+            log.warn("Could not close point-in-time: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] ndjsonLine(ObjectNode source) throws IOException {
+        byte[] json = JSON.writeValueAsBytes(source);
+        byte[] line = java.util.Arrays.copyOf(json, json.length + 1);
+        line[json.length] = '\n';
+        return line;
+    }
+
+    private static byte[] csvLine(ObjectNode source, List<String> columns) {
+        StringJoiner line = new StringJoiner(",", "", "\n");
+        for (String column : columns) {
+            StringJoiner values = new StringJoiner("|");
+            collect(source, column.split("\\."), 0, values);
+            line.add(csv(values.toString()));
+        }
+        return line.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void collect(JsonNode node, String[] path, int depth, StringJoiner values) {
+        if (node == null || node.isNull() || node.isMissingNode()) return;
+        if (node.isArray()) {
+            for (JsonNode element : node) collect(element, path, depth, values);
+        } else if (depth == path.length) {
+            values.add(node.isValueNode() ? node.asText() : node.toString());
+        } else {
+            collect(node.get(path[depth]), path, depth + 1, values);
+        }
+    }
+
+    /** RFC 4180: quoted if it contains a separator, quote or line break, with quotes doubled. */
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
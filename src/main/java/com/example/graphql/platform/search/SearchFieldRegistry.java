@@ -0,0 +1,143 @@
+package com.example.graphql.platform.search;
+
+import org.springframework.data.elasticsearch.annotations.Field;
+import org.springframework.data.elasticsearch.annotations.FieldType;
+import org.springframework.data.elasticsearch.annotations.InnerField;
+import org.springframework.data.elasticsearch.annotations.MultiField;
+
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What the index mapping of a {@code @Document} class says about each field, read from the same {@code @Field} /
+ * {@code @MultiField} annotations Spring Data builds the mapping from. Built once per document class (at startup for
+ * the documents of the filter records, see {@link FilterPlanValidator}) and immutable, so query building resolves a
+ * field with one map lookup instead of guessing from its name.
+ */
+public final class SearchFieldRegistry {
+
+    /** Analyzer of the n-gram subfields (elasticsearch/person-settings.json). */
+    public static final String NGRAM_ANALYZER = "trigram";
+    /** Analyzer of the reversed-value subfields (elasticsearch/person-settings.json). */
+    public static final String REVERSED_ANALYZER = "reversed_keyword";
+
+    private static final ClassValue<SearchFieldRegistry> REGISTRIES = new ClassValue<>() {
+        @Override
+        protected SearchFieldRegistry computeValue(Class<?> type) {
+            return build(type);
+        }
+    };
+
+    private static final Set<FieldType> CONTAINERS = Set.of(FieldType.Nested, FieldType.Object);
+
+    /**
+     * One mapped field, by full path (e.g. "addresses.city").
+     * {@code keywordField} is the path for exact matching (the field itself if it is a keyword, else its keyword
+     * subfield, else null); {@code ngramField} and {@code reversedField} are the subfields analyzed for contains and
+     * endsWith, or null. {@code nestedPath} is the closest enclosing nested object, or null.
+     */
+    public record SearchField(String path, FieldType type, String keywordField, String ngramField, String reversedField,
+                              String nestedPath, boolean indexed, boolean docValues) {
+
+        /** Can be filtered on at all: ES needs either the inverted index or doc values. */
+        public boolean searchable() {
+            return indexed || docValues;
+        }
+    }
+
+    private final Class<?> documentType;
+    private final Map<String, SearchField> fields;
+
+    private SearchFieldRegistry(Class<?> documentType, Map<String, SearchField> fields) {
+        this.documentType = documentType;
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    public static SearchFieldRegistry of(Class<?> documentType) {
+        return REGISTRIES.get(documentType);
+    }
+
+    public Class<?> documentType() {
+        return documentType;
+    }
+
+    /** @return the field at {@code path}, or null if the mapping has none */
+    public SearchField field(String path) {
+        return fields.get(path);
+    }
+
+    /** All fields in declaration order, nested and object containers included. */
+    public Map<String, SearchField> fields() {
+        return fields;
+    }
+
+    private static SearchFieldRegistry build(Class<?> documentType) {
+        Map<String, SearchField> fields = new LinkedHashMap<>();
+        collect(documentType, "", null, fields, new ArrayDeque<>());
+        return new SearchFieldRegistry(documentType, fields);
+    }
+
+    private static void collect(Class<?> type, String prefix, String nestedPath, Map<String, SearchField> fields, Deque<Class<?>> path) {
+        if (path.contains(type)) return; // Object graphs may be cyclic; the mapping is not
+        path.push(type);
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (java.lang.reflect.Field property : c.getDeclaredFields()) {
+                if (Modifier.isStatic(property.getModifiers())) continue;
+                String name = prefix + property.getName();
+
+                MultiField multiField = property.getAnnotation(MultiField.class);
+                Field field = multiField != null ? multiField.mainField() : property.getAnnotation(Field.class);
+                if (field == null) {
+                    // Spring Data maps the root id as a keyword even without @Field
+                    if (prefix.isEmpty() && isId(property)) {
+                        fields.put(name, new SearchField(name, FieldType.Keyword, name, null, null, null, true, true));
+                    }
+                    continue;
+                }
+
+                FieldType fieldType = field.type() == FieldType.Auto && isId(property) ? FieldType.Keyword : field.type();
+                if (CONTAINERS.contains(fieldType)) {
+                    String containerNested = fieldType == FieldType.Nested ? name : nestedPath;
+                    fields.put(name, new SearchField(name, fieldType, null, null, null, nestedPath, true, false));
+                    collect(elementType(property), name + ".", containerNested, fields, path);
+                    continue;
+                }
+
+                String keywordField = fieldType == FieldType.Keyword ? name : null;
+                String ngramField = null;
+                String reversedField = null;
+                if (multiField != null) {
+                    for (InnerField inner : multiField.otherFields()) {
+                        String innerName = name + "." + inner.suffix();
+                        if (inner.type() == FieldType.Keyword && keywordField == null) keywordField = innerName;
+                        if (NGRAM_ANALYZER.equals(inner.analyzer())) ngramField = innerName;
+                        if (REVERSED_ANALYZER.equals(inner.analyzer())) reversedField = innerName;
+                    }
+                }
+                boolean docValues = fieldType != FieldType.Text && field.docValues();
+                fields.put(name, new SearchField(name, fieldType, keywordField, ngramField, reversedField, nestedPath, field.index(), docValues));
+            }
+        }
+        path.pop();
+    }
+
+    private static boolean isId(java.lang.reflect.Field property) {
+        return property.isAnnotationPresent(org.springframework.data.annotation.Id.class) || property.getName().equals("id");
+    }
+
+    private static Class<?> elementType(java.lang.reflect.Field property) {
+        if (Collection.class.isAssignableFrom(property.getType())
+                && property.getGenericType() instanceof ParameterizedType pt
+                && pt.getActualTypeArguments()[0] instanceof Class<?> element) {
+            return element;
+        }
+        return property.getType().isArray() ? property.getType().getComponentType() : property.getType();
+    }
+}
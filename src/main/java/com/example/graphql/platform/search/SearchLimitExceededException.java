@@ -0,0 +1,53 @@
+package com.example.graphql.platform.search;
+
+/**
+ * A search whose {@link SearchCost} is over one of the {@link SearchLimits}, or whose paging arguments are below
+ * their minimum; the client has to change the request.
+ */
+public class SearchLimitExceededException extends IllegalArgumentException {
+
+    private final String limit;
+    private final Long min;
+    private final Long max;
+    private final long actual;
+
+    public SearchLimitExceededException(String limit, long max, long actual) {
+        super("Search exceeds the " + limit + " limit: " + actual + " > " + max);
+        this.limit = limit;
+        this.min = null;
+        this.max = max;
+        this.actual = actual;
+    }
+
+    private SearchLimitExceededException(String limit, long min, long actual, String message) {
+        super(message);
+        this.limit = limit;
+        this.min = min;
+        this.max = null;
+        this.actual = actual;
+    }
+
+    /** {@code actual} is below the smallest value {@code limit} allows. */
+    public static SearchLimitExceededException below(String limit, long min, long actual) {
+        return new SearchLimitExceededException(limit, min, actual, "Search is below the " + limit + " minimum: " + actual + " < " + min);
+    }
+
+    /** The name of the limit, as in {@code search.limits.<limit>}. */
+    public String limit() {
+        return limit;
+    }
+
+    /** The lower bound that was not met, or null if an upper bound was exceeded. */
+    public Long min() {
+        return min;
+    }
+
+    /** The upper bound that was exceeded, or null if a lower bound was not met. */
+    public Long max() {
+        return max;
+    }
+
+    public long actual() {
+        return actual;
+    }
+}
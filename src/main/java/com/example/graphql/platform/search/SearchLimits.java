@@ -0,0 +1,79 @@
+package com.example.graphql.platform.search;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Upper bounds on the {@link SearchCost} of a single search, checked before a query is built, so that a huge page,
+ * a thousand-value {@code in} list or a deeply recursive or/not tree is refused instead of stalling a shard.
+ * Paging arguments are also checked from below ({@link #checkPaging}), so that a negative page or an empty page is
+ * a bad request rather than a failure deep in the query. Rejections are counted as {@code search.limits.rejected}
+ * by {@code limit}.
+ */
+@Component
+public class SearchLimits {
+
+    private final MeterRegistry meterRegistry;
+    private final int maxDepth;
+    private final int maxClauses;
+    private final int maxTerms;
+    private final int maxWildcards;
+    private final int maxNested;
+    private final long maxPageSize;
+    private final long maxWindow;
+
+    public SearchLimits(MeterRegistry meterRegistry,
+                        @Value("${search.limits.depth:8}") int maxDepth,
+                        @Value("${search.limits.clauses:200}") int maxClauses,
+                        @Value("${search.limits.terms:500}") int maxTerms,
+                        @Value("${search.limits.wildcards:4}") int maxWildcards,
+                        @Value("${search.limits.nested:50}") int maxNested,
+                        @Value("${search.limits.page-size:100}") long maxPageSize,
+                        @Value("${search.limits.window:10000}") long maxWindow) {
+        this.meterRegistry = meterRegistry;
+        this.maxDepth = maxDepth;
+        this.maxClauses = maxClauses;
+        this.maxTerms = maxTerms;
+        this.maxWildcards = maxWildcards;
+        this.maxNested = maxNested;
+        this.maxPageSize = maxPageSize;
+        this.maxWindow = maxWindow;
+    }
+
+    /** @throws SearchLimitExceededException naming the first limit {@code cost} is over */
+    public void check(SearchCost cost) {
+        check("depth", maxDepth, cost.depth());
+        check("clauses", maxClauses, cost.clauses());
+        check("terms", maxTerms, cost.terms());
+        check("wildcards", maxWildcards, cost.wildcards());
+        check("nested", maxNested, cost.nested());
+        check("page-size", maxPageSize, cost.pageSize());
+        // ES refuses from + size beyond index.max_result_window (10000) anyway; deeper pages need cursor paging
+        check("window", maxWindow, cost.window());
+    }
+
+    /**
+     * @param page     the page number, from 0 (0 for cursor paging)
+     * @param pageSize the hits per page ({@code size}, or {@code first} for cursor paging), from 1
+     * @throws SearchLimitExceededException naming the first argument below its minimum
+     */
+    public void checkPaging(long page, long pageSize) {
+        checkAtLeast("page", 0, page);
+        checkAtLeast("page-size", 1, pageSize);
+    }
+
+    private void checkAtLeast(String limit, long min, long actual) {
+        if (actual < min) {
+            meterRegistry.counter("search.limits.rejected", "limit", limit).increment();
+            throw SearchLimitExceededException.below(limit, min, actual);
+        }
+    }
+
+    private void check(String limit, long max, long actual) {
+        if (actual > max) {
+            meterRegistry.counter("search.limits.rejected", "limit", limit).increment();
+            throw new SearchLimitExceededException(limit, max, actual);
+        }
+    }
+}
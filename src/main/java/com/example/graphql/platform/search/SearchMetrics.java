@@ -0,0 +1,115 @@
+package com.example.graphql.platform.search;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Per-stage latency and allocation of the search pipeline, tagged with the search {@code operation} and the
+ * {@code facets} that were requested (see {@code PersonService.SearchSelection#facetsTag()}).
+ * <ul>
+ *   <li>{@code search.stage} (timer, percentile histogram) and {@code search.stage.allocated} (bytes allocated by
+ *       the calling thread during the stage, where the JVM can measure it) per {@code stage}. The allocation counter
+ *       is per platform thread: a virtual thread reads that of whichever carrier it is mounted on (and may move
+ *       between carriers mid-stage), so stages run on virtual threads, i.e. with
+ *       {@code graphql.fetchers.virtual-threads}, record no allocation at all.</li>
+ *   <li>{@code search.es.took}: the {@code took} Elasticsearch reports, next to the {@code es} stage that the client
+ *       observed. {@code search.es.overhead} is the difference: network, (de)serialization and, for searches that
+ *       were batched into an {@code _msearch}, waiting for the rest of the batch.</li>
+ * </ul>
+ */
+@Component
+public class SearchMetrics {
+
+    public static final String STAGE_QUERY_BUILD = "query_build";
+    public static final String STAGE_ES = "es";
+    public static final String STAGE_AGGREGATIONS = "aggregations";
+    public static final String STAGE_RESPONSE_MAPPING = "response_mapping";
+
+    private static final com.sun.management.ThreadMXBean THREADS = threadMXBean();
+
+    private final MeterRegistry meterRegistry;
+
+    public SearchMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public static Tags tags(String operation, String facets) {
+        return Tags.of("operation", operation, "facets", facets);
+    }
+
+    public <T> T time(String stage, Tags tags, Supplier<T> work) {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        try {
+            return work.get();
+        } finally {
+            record(stage, tags, System.nanoTime() - start, allocatedBefore);
+        }
+    }
+
+    /**
+     * Runs an ES search as the {@code es} stage and records the {@code took} of its response next to it.
+     */
+    public <T> SearchHits<T> search(Tags tags, Supplier<SearchHits<T>> search) {
+        long start = System.nanoTime();
+        SearchHits<T> hits = time(STAGE_ES, tags, search);
+        Duration took = hits.getExecutionDuration();
+        if (took != null) {
+            Timer.builder("search.es.took")
+                    .description("Search time reported by Elasticsearch")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(took);
+            Timer.builder("search.es.overhead")
+                    .description("Client observed ES latency minus the reported took")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(Math.max(0, System.nanoTime() - start - took.toNanos()), TimeUnit.NANOSECONDS);
+        }
+        return hits;
+    }
+
+    private void record(String stage, Tags tags, long nanos, long allocatedBefore) {
+        Tags stageTags = tags.and("stage", stage);
+        Timer.builder("search.stage")
+                .description("Time spent per search pipeline stage")
+                .tags(stageTags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        if (allocatedBefore < 0) return;
+        long allocatedAfter = allocatedBytes();
+        if (allocatedAfter < 0) return;
+        DistributionSummary.builder("search.stage.allocated")
+                .description("Bytes allocated by the calling thread per search pipeline stage")
+                .baseUnit("bytes")
+                .tags(stageTags)
+                .register(meterRegistry)
+                .record(allocatedAfter - allocatedBefore);
+    }
+
+    /** Bytes allocated so far by the current thread, or -1 where unsupported or meaningless (virtual threads). */
+    private static long allocatedBytes() {
+        if (THREADS == null || Thread.currentThread().isVirtual()) return -1;
+        return THREADS.getCurrentThreadAllocatedBytes();
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+                && threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+            return threads;
+        }
+        return null;
+    }
+}
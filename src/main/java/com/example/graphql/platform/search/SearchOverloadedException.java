@@ -0,0 +1,16 @@
+package com.example.graphql.platform.search;
+
+/** A call shed by a {@link ConcurrencyLimiter} at its limit. Nothing was sent; the same call may be retried later. */
+public class SearchOverloadedException extends RuntimeException {
+
+    private final String bulkhead;
+
+    public SearchOverloadedException(String bulkhead, int limit) {
+        super("Elasticsearch is overloaded: the " + bulkhead + " bulkhead is at its limit of " + limit + " concurrent calls, retry later");
+        this.bulkhead = bulkhead;
+    }
+
+    public String bulkhead() {
+        return bulkhead;
+    }
+}
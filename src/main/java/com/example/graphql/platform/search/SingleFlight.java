@@ -0,0 +1,87 @@
+package com.example.graphql.platform.search;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical concurrent calls into one: the first caller for a key (the leader) runs the loader,
+ * every caller arriving while it runs waits for and shares the leader's result or exception.
+ * Nothing is kept after the call completes; caching results is someone else's job.
+ * <p>
+ * Followers wait at most {@code timeout}. A follower that times out also evicts the in-flight entry, so a stuck
+ * leader cannot hold its key and the next caller starts a fresh call.
+ * <p>
+ * Metrics, tagged with {@code name}: {@code search.singleflight.calls} by {@code role} (leader/coalesced),
+ * {@code search.singleflight.timeouts} and the {@code search.singleflight.in_flight} gauge.
+ */
+public final class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final Duration timeout;
+    private final Runnable beforeWait;
+    private final Counter leaders;
+    private final Counter coalesced;
+    private final Counter timeouts;
+
+    /**
+     * @param beforeWait run on a follower's thread before it blocks, e.g. to leave a batch the leader may depend on
+     */
+    public SingleFlight(String name, Duration timeout, MeterRegistry meterRegistry, Runnable beforeWait) {
+        this.timeout = timeout;
+        this.beforeWait = beforeWait;
+        this.leaders = Counter.builder("search.singleflight.calls").tag("name", name).tag("role", "leader").register(meterRegistry);
+        this.coalesced = Counter.builder("search.singleflight.calls").tag("name", name).tag("role", "coalesced")
+                .description("Calls that shared the result of an identical in-flight call")
+                .register(meterRegistry);
+        this.timeouts = Counter.builder("search.singleflight.timeouts").tag("name", name).register(meterRegistry);
+        Gauge.builder("search.singleflight.in_flight", inFlight, Map::size).tag("name", name).register(meterRegistry);
+    }
+
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            coalesced.increment();
+            beforeWait.run();
+            return await(key, existing);
+        }
+
+        leaders.increment();
+        try {
+            V value = loader.get();
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> flight) {
+        try {
+            return flight.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            inFlight.remove(key, flight);
+            throw new IllegalStateException("Timed out after " + timeout + " waiting for an identical in-flight search", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an identical in-flight search", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.graphql.platform.search;
+
+import graphql.schema.DataFetchingFieldSelectionSet;
+import graphql.schema.SelectedField;
+import org.springframework.data.elasticsearch.core.query.FetchSourceFilterBuilder;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Maps a GraphQL selection set onto ES {@code _source} includes.
+ * GraphQL field names match the document field names, so "results/addresses/city" becomes "addresses.city".
+ */
+public final class SourceFilters {
+
+    private SourceFilters() {
+    }
+
+    /**
+     * @param selectionSet selection set of the field being resolved
+     * @param roots        the fields holding the documents (e.g. "results", "edges/node");
+     *                     none if the field itself returns the documents
+     * @return sorted leaf paths to include; "id" is always included
+     */
+    public static List<String> includes(DataFetchingFieldSelectionSet selectionSet, String... roots) {
+        TreeSet<String> includes = new TreeSet<>();
+        includes.add("id");
+
+        if (roots.length == 0) {
+            collect(selectionSet, "", includes);
+        }
+        for (String root : roots) {
+            collect(selectionSet, root + "/", includes);
+        }
+        return List.copyOf(includes);
+    }
+
+    private static void collect(DataFetchingFieldSelectionSet selectionSet, String prefix, TreeSet<String> includes) {
+        for (SelectedField field : selectionSet.getFields(prefix + "**")) {
+            if (field.getName().startsWith("__")) continue;
+            // Object fields are covered by their selected leaves; including them would pull the whole object
+            if (!field.getSelectionSet().getImmediateFields().isEmpty()) continue;
+            includes.add(field.getQualifiedName().substring(prefix.length()).replace('/', '.'));
+        }
+    }
+
+    /** Null (full source) when there is nothing to restrict. */
+    public static SourceFilter toSourceFilter(List<String> includes) {
+        if (includes == null || includes.isEmpty()) return null;
+        return new FetchSourceFilterBuilder().withIncludes(includes.toArray(new String[0])).build();
+    }
+}
@@ -2,30 +2,72 @@ package com.example.graphql.publications.controller;
 
 import com.example.graphql.publications.service.PublicationService;
 import com.example.graphql.publications.model.Publication;
+import com.example.graphql.publications.model.PublicationAuthor;
+import com.example.graphql.person.model.Person;
+import com.example.graphql.platform.graphql.FetcherExecutor;
+import com.example.graphql.platform.search.MultiSearchBatcher;
+import com.example.graphql.platform.search.SourceFilters;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
 import org.springframework.graphql.data.method.annotation.Argument;
 import org.springframework.graphql.data.method.annotation.MutationMapping;
 import org.springframework.graphql.data.method.annotation.QueryMapping;
+import org.springframework.graphql.data.method.annotation.SchemaMapping;
+import org.springframework.graphql.execution.BatchLoaderRegistry;
 import org.springframework.stereotype.Controller;
+import org.dataloader.DataLoader;
+import org.hibernate.Hibernate;
+import reactor.core.publisher.Mono;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @Controller
 public class PublicationController {
 
     private final PublicationService publicationService;
+    private final FetcherExecutor fetcherExecutor;
+    private final MultiSearchBatcher multiSearch;
 
-    public PublicationController(PublicationService publicationService) {
+    public PublicationController(PublicationService publicationService, BatchLoaderRegistry batchLoaderRegistry, FetcherExecutor fetcherExecutor, MultiSearchBatcher multiSearch) {
         this.publicationService = publicationService;
+        this.fetcherExecutor = fetcherExecutor;
+        this.multiSearch = multiSearch;
+        // DataLoaders are created per request, so these caches never outlive one query
+        batchLoaderRegistry.<Long, List<PublicationAuthor>>forName("publicationAuthors")
+                .registerMappedBatchLoader((publicationIds, env) -> Mono.fromCallable(() -> publicationService.findAuthorsByPublicationIds(publicationIds)));
+        batchLoaderRegistry.<Long, Person>forName("authorPersons")
+                .registerMappedBatchLoader((personIds, env) -> Mono.fromCallable(() -> publicationService.findPersonsByIds(personIds)));
+    }
+
+    /** Authors of all publications in the response in one select; search results carry them embedded. */
+    @SchemaMapping(typeName = "Publication")
+    public CompletableFuture<List<PublicationAuthor>> authors(Publication publication, DataLoader<Long, List<PublicationAuthor>> publicationAuthors) {
+        if (publication.getId() == null || Hibernate.isInitialized(publication.getAuthors())) {
+            return CompletableFuture.completedFuture(publication.getAuthors());
+        }
+        return publicationAuthors.load(publication.getId());
+    }
+
+    /** Persons of all authors in the response in one select, keyed by the foreign key so the proxy stays untouched. */
+    @SchemaMapping(typeName = "PublicationAuthor")
+    public CompletableFuture<Person> person(PublicationAuthor author, DataLoader<Long, Person> authorPersons) {
+        if (author.getPerson() == null || Hibernate.isInitialized(author.getPerson())) {
+            return CompletableFuture.completedFuture(author.getPerson());
+        }
+        return authorPersons.load(author.getPersonId());
     }
 
     @QueryMapping
-    public List<Publication> publications() {
-        return publicationService.findAll();
+    public CompletableFuture<List<Publication>> publications() {
+        return fetcherExecutor.supply(publicationService::findAll);
     }
 
     @QueryMapping
-    public List<Publication> searchPublications(@Argument String text) {
-        return publicationService.searchPublications(text);
+    public CompletableFuture<List<Publication>> searchPublications(@Argument String text, DataFetchingFieldSelectionSet selectionSet, DataFetchingEnvironment env) {
+        // Embedded authors.person documents are only read from _source when the client selects them
+        List<String> sourceIncludes = SourceFilters.includes(selectionSet);
+        return multiSearch.supply(env, () -> publicationService.searchPublications(text, sourceIncludes));
     }
 
     @MutationMapping
@@ -14,6 +14,8 @@ import java.util.List;
 
 @Entity
 @Document(indexName = "publication")
+// The embedded authors.person copy maps Person's .ngram and .reversed subfields, which need its analyzers
+@org.springframework.data.elasticsearch.annotations.Setting(settingPath = "/elasticsearch/person-settings.json")
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -37,8 +37,14 @@ public class PublicationAuthor {
     @org.springframework.data.annotation.Transient
     private Publication publication;
 
-    @ManyToOne(fetch = FetchType.EAGER) // We generally want the person details when fetching an author
+    // Lazy: GraphQL resolves it through a request-scoped DataLoader, indexing fetch-joins it
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "person_id")
     @Field(type = FieldType.Object) // In ES, this will embed the Person object by default
     private Person person;
+
+    // Read-only copy of the foreign key, so the person can be batch-loaded without initializing the proxy
+    @Column(name = "person_id", insertable = false, updatable = false)
+    @org.springframework.data.annotation.Transient
+    private Long personId;
 }
@@ -3,6 +3,23 @@ package com.example.graphql.publications.repository.jpa;
 import com.example.graphql.publications.model.Publication;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface PublicationRepository extends JpaRepository<Publication, Long> {
+
+    // Authors and their persons in one select; the persons' addresses are batch-fetched
+    @Query("select distinct p from Publication p left join fetch p.authors a left join fetch a.person where p.id in :ids")
+    java.util.List<Publication> findAllWithAuthorsByIdIn(@Param("ids") java.util.Collection<Long> ids);
+
+    // Keyset pages for full reindexing; the fetch join happens in a second select so the limit stays in SQL
+    @Query("select p.id from Publication p where p.id > :after and p.id <= :upTo order by p.id")
+    java.util.List<Long> findIdsAfter(@Param("after") long after, @Param("upTo") long upTo, org.springframework.data.domain.Pageable pageable);
+
+    @Query("select coalesce(max(p.id), 0) from Publication p")
+    long findMaxId();
+
+    // [publicationId, author] pairs for GraphQL batch loading: all authors of a request level in one select
+    @Query("select a.publication.id, a from PublicationAuthor a where a.publication.id in :publicationIds order by a.rank")
+    java.util.List<Object[]> findAuthorsByPublicationIdIn(@Param("publicationIds") java.util.Collection<Long> publicationIds);
 }
@@ -0,0 +1,216 @@
+package com.example.graphql.publications.service;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.example.graphql.person.model.Person;
+import com.example.graphql.person.repository.jpa.PersonRepository;
+import com.example.graphql.person.service.PersonSearchDocuments;
+import com.example.graphql.platform.indexing.SearchIndexer;
+import com.example.graphql.platform.indexing.outbox.SearchDocumentsIndexedEvent;
+import com.example.graphql.platform.indexing.outbox.SearchOutbox;
+import com.example.graphql.platform.indexing.outbox.SearchOutboxEntry;
+import com.example.graphql.platform.indexing.outbox.SearchOutboxRepository;
+import com.example.graphql.platform.search.ElasticsearchBulkheads;
+import com.example.graphql.publications.model.Publication;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.RefreshPolicy;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the person copies embedded in publication documents ({@code authors.person}) in sync.
+ * <p>
+ * Once a person document is indexed, a {@value #AGGREGATE_TYPE} entry is recorded in the search outbox, in the
+ * same transaction that removes the person's own entries, so the pending update survives restarts. Every
+ * {@code interval-ms} those entries are drained oldest first (any number of edits of the same person in between
+ * collapse into one update), the persons' current state is loaded and a single {@code _update_by_query} per batch
+ * replaces the embedded copies in place: it matches publications by {@code authors.person.id} and a script swaps in
+ * the new person object, so prolific authors cost one request instead of rewriting each of their publications from
+ * the database. Entries are deleted only once their update went through; after version conflicts with concurrent
+ * publication writes they stay and are run again in the next round. If ES reports failures for the update, the
+ * entries count an attempt and are dead-lettered after {@code search.outbox.max-attempts}.
+ * <p>
+ * While a publication reindex mirrors writes into a new index, the update runs against that index as well. That
+ * alone is not enough: a chunk read before a rename may be bulk loaded after the update ran, and then keeps the old
+ * copy. So every person propagated during mirroring is recorded again as a {@value #REPLAY_AGGREGATE_TYPE} entry,
+ * which is only drained once mirroring has stopped, i.e. after the alias points at the new index, and brings any
+ * such copy up to date there.
+ */
+@Component
+public class PublicationAuthorPropagator {
+
+    private static final Logger log = LoggerFactory.getLogger(PublicationAuthorPropagator.class);
+
+    private static final String SCRIPT = """
+            for (def author : ctx._source.authors) {
+              if (author.person != null) {
+                def person = params.persons[String.valueOf(author.person.id)];
+                if (person != null) { author.person = person; }
+              }
+            }
+            """;
+
+    /** Outbox aggregate type of "copy this person into its publications"; the aggregate id is the person's. */
+    public static final String AGGREGATE_TYPE = "person-publications";
+    /** The same, held back until a running publication reindex has swapped its alias. */
+    public static final String REPLAY_AGGREGATE_TYPE = "person-publications-replay";
+
+    private final SearchOutbox searchOutbox;
+    private final SearchOutboxRepository outboxRepository;
+    private final PersonRepository personRepository;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final ElasticsearchConverter converter;
+    private final SearchIndexer searchIndexer;
+    private final ElasticsearchBulkheads bulkheads;
+    private final TransactionTemplate transaction;
+    private final TransactionTemplate readTransaction;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Counter updatedDocuments;
+    private final Counter conflicts;
+
+    public PublicationAuthorPropagator(SearchOutbox searchOutbox,
+                                       SearchOutboxRepository outboxRepository,
+                                       PersonRepository personRepository,
+                                       ElasticsearchOperations elasticsearchOperations,
+                                       ElasticsearchConverter converter,
+                                       SearchIndexer searchIndexer,
+                                       ElasticsearchBulkheads bulkheads,
+                                       PlatformTransactionManager transactionManager,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${search.propagation.person.batch-size:100}") int batchSize,
+                                       @Value("${search.outbox.max-attempts:10}") int maxAttempts) {
+        this.searchOutbox = searchOutbox;
+        this.outboxRepository = outboxRepository;
+        this.personRepository = personRepository;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.converter = converter;
+        this.searchIndexer = searchIndexer;
+        this.bulkheads = bulkheads;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setReadOnly(true);
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.updatedDocuments = Counter.builder("search.propagation.updated")
+                .description("Publication documents whose embedded person copy was replaced")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder("search.propagation.conflicts").register(meterRegistry);
+    }
+
+    /** Runs in the relay's transaction, so the entries commit together with the removal of the persons' own. */
+    @EventListener
+    public void onIndexed(SearchDocumentsIndexedEvent event) {
+        if (PersonSearchDocuments.AGGREGATE_TYPE.equals(event.aggregateType())) {
+            event.aggregateIds().forEach(id -> searchOutbox.record(AGGREGATE_TYPE, id));
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${search.propagation.person.interval-ms:500}")
+    public void propagate() {
+        IndexCoordinates live = converter.getMappingContext().getRequiredPersistentEntity(Publication.class).getIndexCoordinates();
+        IndexCoordinates mirror = searchIndexer.mirrorOf(live);
+        Set<String> types = mirror == null ? Set.of(AGGREGATE_TYPE, REPLAY_AGGREGATE_TYPE) : Set.of(AGGREGATE_TYPE);
+        List<SearchOutboxEntry> entries;
+        do {
+            entries = readTransaction.execute(status -> outboxRepository.findOldest(types, PageRequest.of(0, batchSize)));
+            if (entries == null || entries.isEmpty()) return;
+            List<Long> entryIds = entries.stream().map(SearchOutboxEntry::getId).toList();
+            List<Long> personIds = entries.stream().map(SearchOutboxEntry::getAggregateId).distinct().toList();
+            try {
+                if (!propagateBatch(personIds, live, mirror)) return; // Conflicts: the entries stay for the next round
+            } catch (UpdateFailedException e) {
+                log.warn("Propagating {} persons into publications failed, will retry", personIds.size(), e);
+                transaction.executeWithoutResult(status -> {
+                    outboxRepository.recordFailure(entryIds, e.getMessage());
+                    int dead = outboxRepository.deadLetter(entryIds, maxAttempts, Instant.now());
+                    if (dead > 0) log.error("Dead-lettered {} person propagation entries after {} attempts", dead, maxAttempts);
+                });
+                return;
+            } catch (RuntimeException e) {
+                // ES unreachable or shed: nothing to count against the entries
+                log.warn("Propagating {} persons into publications failed, will retry", personIds.size(), e);
+                return;
+            }
+            transaction.executeWithoutResult(status -> {
+                outboxRepository.deleteAllByIdInBatch(entryIds);
+                if (mirror != null) personIds.forEach(id -> searchOutbox.record(REPLAY_AGGREGATE_TYPE, id));
+            });
+        } while (entries.size() == batchSize);
+    }
+
+    /** ES ran the update but reported failures for some publications. */
+    private static final class UpdateFailedException extends RuntimeException {
+        UpdateFailedException(String message) {
+            super(message);
+        }
+    }
+
+    /** @return false if version conflicts left some publications with the old copy */
+    private boolean propagateBatch(List<Long> personIds, IndexCoordinates live, IndexCoordinates mirror) {
+        // Current committed state, rendered exactly like the embedded copy a full publication index would write
+        Map<String, Object> persons = readTransaction.execute(status -> {
+            Map<String, Object> rendered = new LinkedHashMap<>();
+            for (Person person : personRepository.findAllWithAddressesByIdIn(personIds)) {
+                rendered.put(String.valueOf(person.getId()), converter.mapObject(person));
+            }
+            return rendered;
+        });
+        if (persons == null || persons.isEmpty()) return true;
+
+        List<FieldValue> ids = new ArrayList<>(persons.size());
+        for (String id : persons.keySet()) {
+            ids.add(FieldValue.of(Long.parseLong(id)));
+        }
+        NativeQuery query = NativeQuery.builder()
+                .withQuery(q -> q.nested(n -> n
+                        .path("authors")
+                        .query(nq -> nq.terms(t -> t.field("authors.person.id").terms(tv -> tv.value(ids))))))
+                .build();
+
+        UpdateQuery.Builder update = UpdateQuery.builder(query)
+                .withScript(SCRIPT)
+                .withLang("painless")
+                .withParams(Map.of("persons", persons))
+                .withAbortOnVersionConflict(false);
+        boolean complete = update(update.withRefreshPolicy(RefreshPolicy.IMMEDIATE).build(), live);
+        // The reindex target is loaded with refresh disabled until the swap
+        return mirror == null ? complete : update(update.withRefreshPolicy(RefreshPolicy.NONE).build(), mirror) && complete;
+    }
+
+    private boolean update(UpdateQuery update, IndexCoordinates index) {
+        // Shed like an indexing write when ES is overloaded; the persons are retried next round
+        ByQueryResponse response = bulkheads.indexing().call(() -> elasticsearchOperations.updateByQuery(update, index));
+
+        updatedDocuments.increment(response.getUpdated());
+        if (!response.getFailures().isEmpty()) {
+            throw new UpdateFailedException("update_by_query failed for " + response.getFailures().size() + " publications");
+        }
+        if (response.getVersionConflicts() > 0) {
+            // A publication was rewritten meanwhile; run these persons again rather than guess which ones lost
+            conflicts.increment(response.getVersionConflicts());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.graphql.publications.service;
+
+import com.example.graphql.platform.indexing.outbox.SearchDocumentSource;
+import com.example.graphql.publications.model.Publication;
+import com.example.graphql.publications.repository.jpa.PublicationRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Search document source for the "publication" index: a publication with its authors and their embedded persons.
+ */
+@Component
+public class PublicationSearchDocuments implements SearchDocumentSource {
+
+    public static final String AGGREGATE_TYPE = "publication";
+
+    private final PublicationRepository publicationRepository;
+
+    public PublicationSearchDocuments(PublicationRepository publicationRepository) {
+        this.publicationRepository = publicationRepository;
+    }
+
+    @Override
+    public String aggregateType() {
+        return AGGREGATE_TYPE;
+    }
+
+    @Override
+    public Class<?> documentType() {
+        return Publication.class;
+    }
+
+    @Override
+    public long maxId() {
+        return publicationRepository.findMaxId();
+    }
+
+    @Override
+    public List<Long> idsAfter(long afterId, long upToId, int limit) {
+        return publicationRepository.findIdsAfter(afterId, upToId, PageRequest.of(0, limit));
+    }
+
+    @Override
+    public List<?> loadForIndexing(Collection<Long> ids) {
+        return publicationRepository.findAllWithAuthorsByIdIn(ids);
+    }
+}
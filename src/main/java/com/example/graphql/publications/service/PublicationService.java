@@ -1,7 +1,7 @@
 package com.example.graphql.publications.service;
 
 import com.example.graphql.publications.repository.jpa.PublicationRepository;
-import com.example.graphql.publications.repository.search.PublicationSearchRepository;
+import com.example.graphql.platform.indexing.outbox.SearchOutbox;
 import com.example.graphql.person.repository.jpa.PersonRepository;
 import com.example.graphql.publications.model.Publication;
 import com.example.graphql.publications.model.PublicationAuthor;
@@ -9,11 +9,23 @@ import com.example.graphql.person.model.Person;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.client.elc.NativeQuery;
+import org.springframework.data.elasticsearch.client.elc.NativeQueryBuilder;
+import org.springframework.data.elasticsearch.core.query.SourceFilter;
+import com.example.graphql.platform.search.FilterCanonicalizer;
+import com.example.graphql.platform.search.MultiSearchBatcher;
+import com.example.graphql.platform.search.SingleFlight;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import com.example.graphql.platform.search.SourceFilters;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import java.util.stream.Collectors;
 
@@ -21,26 +33,64 @@ import java.util.stream.Collectors;
 public class PublicationService {
 
     private final PublicationRepository publicationRepository;
-    private final PublicationSearchRepository publicationSearchRepository;
+    private final SearchOutbox searchOutbox;
     private final PersonRepository personRepository;
-    private final ElasticsearchOperations elasticsearchOperations;
+    private final MultiSearchBatcher multiSearch;
+    private final SingleFlight<SearchKey, List<Publication>> searchFlights;
+
+    // Normalized text + requested fields: concurrent searches with equal keys share one ES request
+    private record SearchKey(String text, List<String> sourceIncludes) {}
 
     public PublicationService(PublicationRepository publicationRepository, 
-                              PublicationSearchRepository publicationSearchRepository,
+                              SearchOutbox searchOutbox,
                               PersonRepository personRepository,
-                              ElasticsearchOperations elasticsearchOperations) {
+                              MultiSearchBatcher multiSearch,
+                              MeterRegistry meterRegistry,
+                              @Value("${search.singleflight.timeout:5s}") Duration singleFlightTimeout) {
         this.publicationRepository = publicationRepository;
-        this.publicationSearchRepository = publicationSearchRepository;
+        this.searchOutbox = searchOutbox;
         this.personRepository = personRepository;
-        this.elasticsearchOperations = elasticsearchOperations;
+        this.multiSearch = multiSearch;
+        this.searchFlights = new SingleFlight<>("publication.search", singleFlightTimeout, meterRegistry, multiSearch::leaveBatch);
     }
 
     public List<Publication> findAll() {
         return publicationRepository.findAll();
     }
+
+    /** Authors of many publications in one select, ordered by rank; every requested id is present. */
+    public Map<Long, List<PublicationAuthor>> findAuthorsByPublicationIds(Collection<Long> publicationIds) {
+        Map<Long, List<PublicationAuthor>> result = new HashMap<>();
+        for (Long publicationId : publicationIds) {
+            result.put(publicationId, new ArrayList<>());
+        }
+        for (Object[] row : publicationRepository.findAuthorsByPublicationIdIn(publicationIds)) {
+            result.get((Long) row[0]).add((PublicationAuthor) row[1]);
+        }
+        return result;
+    }
+
+    /** Author persons by id in one select. */
+    public Map<Long, Person> findPersonsByIds(Collection<Long> personIds) {
+        Map<Long, Person> result = new HashMap<>();
+        for (Person person : personRepository.findAllById(personIds)) {
+            result.put(person.getId(), person);
+        }
+        return result;
+    }
     
     public List<Publication> searchPublications(String text) {
-        NativeQuery query = NativeQuery.builder()
+        return searchPublications(text, null);
+    }
+
+    /** @param sourceIncludes publication fields to read from _source, or null for the whole document */
+    public List<Publication> searchPublications(String text, List<String> sourceIncludes) {
+        SearchKey key = new SearchKey(FilterCanonicalizer.normalizeText(text), sourceIncludes);
+        return searchFlights.execute(key, () -> doSearchPublications(text, sourceIncludes));
+    }
+
+    private List<Publication> doSearchPublications(String text, List<String> sourceIncludes) {
+        NativeQueryBuilder queryBuilder = NativeQuery.builder()
                 .withQuery(q -> q.bool(b -> b
                         .should(s -> s.match(m -> m.field("title").query(text)))
                         .should(s -> s.nested(n -> n
@@ -50,10 +100,15 @@ public class PublicationService {
                                     .should(ns -> ns.match(nm -> nm.field("authors.affiliationAtTimeOfPublication").query(text)))
                                 ))
                         ))
-                ))
-                .build();
+                ));
+        SourceFilter sourceFilter = SourceFilters.toSourceFilter(sourceIncludes);
+        if (sourceFilter != null) {
+            queryBuilder.withSourceFilter(sourceFilter);
+        }
+        NativeQuery query = queryBuilder.build();
         
-        SearchHits<Publication> searchHits = elasticsearchOperations.search(query, Publication.class);
+        // Joins the other search fields of the same GraphQL request in one _msearch
+        SearchHits<Publication> searchHits = multiSearch.search(query, Publication.class);
         return searchHits.stream().map(org.springframework.data.elasticsearch.core.SearchHit::getContent).collect(Collectors.toList());
     }
 
@@ -67,7 +122,7 @@ public class PublicationService {
         pub.setDoi(doi);
         
         Publication saved = publicationRepository.save(pub);
-        publicationSearchRepository.save(saved);
+        searchOutbox.record(PublicationSearchDocuments.AGGREGATE_TYPE, saved.getId());
         return saved;
     }
 
@@ -91,8 +146,9 @@ public class PublicationService {
         Publication saved = publicationRepository.save(pub);
         
         // Critical: In a real system with Hibernate Search, this happens automatically. 
-        // With Spring Data ES, we must explicitly re-save the Aggregate Root to update the index.
-        publicationSearchRepository.save(saved);
+        // With Spring Data ES, we must explicitly re-index the Aggregate Root. We only record that in the
+        // outbox here; the relay indexes it after this transaction commits, so ES never holds it open.
+        searchOutbox.record(PublicationSearchDocuments.AGGREGATE_TYPE, saved.getId());
         
         return saved;
     }
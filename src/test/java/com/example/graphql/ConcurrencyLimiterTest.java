@@ -0,0 +1,61 @@
+package com.example.graphql;
+
+import com.example.graphql.platform.search.ConcurrencyLimiter;
+import com.example.graphql.platform.search.SearchOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+
+    @Test
+    void shouldShedCallsOverTheLimitInsteadOfQueueing() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 2, 1, 10, meterRegistry, clock::get);
+        ConcurrencyLimiter.Permit first = limiter.acquire();
+        limiter.acquire();
+
+        assertThrows(SearchOverloadedException.class, limiter::acquire);
+        assertEquals(1.0, meterRegistry.get("search.limiter.rejected").tag("bulkhead", "test").counter().count());
+
+        first.ignore();
+        first.ignore(); // releasing twice must not free a second slot
+        assertEquals(1, limiter.inFlight());
+        limiter.acquire();
+        assertEquals(2, limiter.inFlight());
+    }
+
+    @Test
+    void shouldGrowWhileLatencyIsStableAndShrinkWhenItRises() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter("test", 10, 1, 100, meterRegistry, clock::get);
+
+        for (int round = 0; round < 30; round++) fullRound(limiter, 10);
+        int grown = limiter.limit();
+        assertTrue(grown > 10, "grew to " + grown);
+
+        for (int round = 0; round < 30; round++) fullRound(limiter, 40);
+        int shrunk = limiter.limit();
+        assertTrue(shrunk < grown, "shrank from " + grown + " to " + shrunk);
+
+        limiter.acquire().dropped();
+        assertTrue(limiter.limit() < shrunk || shrunk == 1);
+    }
+
+    /** Uses the whole limit at once, every call taking {@code millis}. */
+    private void fullRound(ConcurrencyLimiter limiter, long millis) {
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = limiter.limit(); i > 0; i--) permits.add(limiter.acquire());
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+        permits.forEach(ConcurrencyLimiter.Permit::success);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.graphql;
+
+import com.example.graphql.person.filter.PersonFilterInput;
+import com.example.graphql.person.model.Person;
+import com.example.graphql.platform.filter.BooleanFilter;
+import com.example.graphql.platform.filter.IntFilter;
+import com.example.graphql.platform.filter.SearchFilter;
+import com.example.graphql.platform.filter.StringFilter;
+import com.example.graphql.platform.search.ElasticsearchQueryBuilder;
+import com.example.graphql.platform.search.FilterPlan;
+import com.example.graphql.platform.search.SearchCost;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ElasticsearchQueryBuilderTest {
+
+    private final ElasticsearchQueryBuilder builder = new ElasticsearchQueryBuilder();
+
+    @Test
+    void shouldCompilePlanOncePerRecordClass() {
+        FilterPlan plan = FilterPlan.of(PersonFilterInput.class);
+
+        assertSame(plan, FilterPlan.of(PersonFilterInput.class));
+        FilterPlan.Node country = findNode(plan, "addresses_country");
+        assertEquals(FilterPlan.Kind.STRING, country.kind());
+        assertEquals("addresses.country.keyword", country.exactField());
+        assertEquals("addresses", country.nestedRoot());
+        assertEquals("addresses.country.ngram", country.ngramField());
+        assertEquals("addresses.country.reversed", country.reversedField());
+        assertEquals("id", findNode(plan, "id").exactField());
+        assertEquals(FilterPlan.Kind.AND, findNode(plan, "and").kind());
+    }
+
+    @SearchFilter(Person.class)
+    record ZipFilter(StringFilter addresses_zip) {}
+
+    record UnboundFilter(StringFilter name) {}
+
+    @Test
+    void shouldResolveFieldsFromTheDocumentMapping() {
+        FilterPlan.Node city = findNode(FilterPlan.of(PersonFilterInput.class), "addresses_city");
+        assertEquals("addresses.city", city.field());
+        assertEquals("addresses.city.keyword", city.exactField());
+        assertEquals("addresses", city.nestedRoot());
+
+        // addresses.zip is mapped as text only: nothing to match exactly on
+        assertThrows(IllegalArgumentException.class, () -> FilterPlan.of(ZipFilter.class));
+        assertThrows(IllegalArgumentException.class, () -> FilterPlan.of(UnboundFilter.class));
+    }
+
+    @Test
+    void shouldReturnNullForEmptyFilter() {
+        assertNull(builder.build(null));
+        assertNull(builder.build(filter(null, null, null, null, null, null)));
+    }
+
+    @Test
+    void shouldBuildLeavesAndLogic() {
+        PersonFilterInput filter = filter(
+                new StringFilter("John", null, null, null, null),
+                new IntFilter(null, 18, null, null, null),
+                new StringFilter("USA", null, null, null, null),
+                null,
+                List.of(filter(null, null, null, new BooleanFilter(true), null, null)),
+                null);
+
+        Query query = builder.build(filter);
+
+        assertTrue(query.isBool());
+        List<Query> clauses = query.bool().filter();
+        assertEquals(4, clauses.size(), "the 'and' is flattened into the outer bool");
+        assertTrue(clauses.stream().anyMatch(q -> q.isNested() && q.nested().path().equals("addresses")));
+        assertTrue(query.bool().must().isEmpty());
+        assertTrue(query.bool().should().isEmpty());
+        assertNull(query.bool().minimumShouldMatch());
+    }
+
+    @Test
+    void shouldRequireOneShouldClauseForOr() {
+        PersonFilterInput filter = filter(null, null, null, null, null, List.of(
+                filter(new StringFilter("A", null, null, null, null), null, null, null, null, null),
+                filter(null, new IntFilter(null, 18, null, null, null), null, null, null, null)));
+
+        Query query = builder.build(filter);
+
+        assertEquals(2, query.bool().should().size());
+        assertEquals("1", query.bool().minimumShouldMatch());
+    }
+
+    @Test
+    void shouldCollapseOrOfEqualsIntoTerms() {
+        PersonFilterInput filter = filter(null, null, null, null, null, List.of(
+                filter(new StringFilter("A", null, null, null, null), null, null, null, null, null),
+                filter(new StringFilter("B", null, null, null, null), null, null, null, null, null),
+                filter(new StringFilter(null, null, null, null, List.of("B", "C")), null, null, null, null, null)));
+
+        Query query = builder.build(filter);
+
+        assertTrue(query.isTerms());
+        assertEquals("name.keyword", query.terms().field());
+        assertEquals(List.of("A", "B", "C"), query.terms().terms().value().stream().map(v -> v.stringValue()).toList());
+    }
+
+    @Test
+    void shouldMergeNestedClausesUnderOrButNotUnderAnd() {
+        PersonFilterInput either = filter(null, null, null, null, null, List.of(
+                filter(null, null, new StringFilter("USA", null, null, null, null), null, null, null),
+                filter(null, null, new StringFilter("Canada", null, null, null, null), null, null, null)));
+
+        Query merged = builder.build(either);
+
+        assertTrue(merged.isNested());
+        assertTrue(merged.nested().query().isTerms());
+
+        // "has a US address and has a Canadian address" must not become "has one address in both"
+        PersonFilterInput both = filter(null, null, new StringFilter("USA", null, null, null, null), null, List.of(
+                filter(null, null, new StringFilter("Canada", null, null, null, null), null, null, null)), null);
+
+        List<Query> clauses = builder.build(both).bool().filter();
+
+        assertEquals(2, clauses.size());
+        assertTrue(clauses.stream().allMatch(Query::isNested));
+    }
+
+    @Test
+    void shouldDropMatchAllAndDuplicateClauses() {
+        StringFilter empty = new StringFilter(null, null, null, null, null);
+        StringFilter john = new StringFilter("John", null, null, null, null);
+
+        assertNull(builder.build(filter(empty, null, null, null, List.of(filter(empty, null, null, null, null, null)), null)));
+
+        Query query = builder.build(filter(john, null, null, null, List.of(filter(john, null, null, null, null, null)), null));
+
+        assertTrue(query.isTerm(), "duplicate of the outer clause and the empty 'and' are gone");
+        assertEquals("name.keyword", query.term().field());
+    }
+
+    @Test
+    void shouldUseNgramAndReversedSubfieldsForContainsAndEndsWith() {
+        Query contains = builder.build(filter(new StringFilter(null, "ohn", null, null, null), null, null, null, null, null));
+        assertTrue(contains.isMatchPhrase());
+        assertEquals("name.ngram", contains.matchPhrase().field());
+        assertEquals("ohn", contains.matchPhrase().query());
+
+        Query shortContains = builder.build(filter(new StringFilter(null, "oh", null, null, null), null, null, null, null, null));
+        assertTrue(shortContains.isWildcard(), "shorter than one gram");
+        assertEquals("name.keyword", shortContains.wildcard().field());
+
+        Query endsWith = builder.build(filter(null, null, new StringFilter(null, null, null, "SA", null), null, null, null));
+        Query reversed = endsWith.nested().query();
+        assertTrue(reversed.isPrefix());
+        assertEquals("addresses.country.reversed", reversed.prefix().field());
+        assertEquals("AS", reversed.prefix().value());
+    }
+
+    @Test
+    void shouldReuseTheQueryBuiltForAnEqualFilter() {
+        Query first = builder.build(filter(new StringFilter("A", null, null, null, null), new IntFilter(null, 18, null, null, null), null, null, null, null));
+        Query second = builder.build(filter(new StringFilter("A", null, null, null, null), new IntFilter(null, 18, null, null, null), null, null, null, null));
+        assertSame(first, second);
+        assertNotSame(first, builder.build(filter(new StringFilter("B", null, null, null, null), null, null, null, null, null)));
+    }
+
+    @Test
+    void shouldCountTheCostOfAFilter() {
+        PersonFilterInput wildcard = filter(new StringFilter(null, "oh", null, null, null), null, null, null, null, null);
+        PersonFilterInput filter = filter(null, null, new StringFilter(null, null, null, null, List.of("US", "DE", "FR")), null,
+                null, List.of(wildcard, filter(null, new IntFilter(null, 18, null, null, null), null, null, null, null)));
+
+        SearchCost cost = SearchCost.of(filter, 40, 20);
+        assertEquals(2, cost.depth(), "the record's implicit and, then the or");
+        assertEquals(3, cost.clauses());
+        assertEquals(3, cost.terms());
+        assertEquals(1, cost.wildcards());
+        assertEquals(1, cost.nested());
+        assertEquals(60, cost.window());
+
+        PersonFilterInput deep = wildcard;
+        for (int i = 0; i < 20; i++) deep = new PersonFilterInput(null, null, null, deep, null, null, null, null, null, null, null, null, null);
+        assertEquals(20, SearchCost.of(deep, 0, 10).depth());
+    }
+
+    private static FilterPlan.Node findNode(FilterPlan plan, String name) {
+        for (FilterPlan.Node node : plan.nodes()) {
+            if (node.name().equals(name)) return node;
+        }
+        throw new AssertionError("No node " + name);
+    }
+
+    private static PersonFilterInput filter(StringFilter name, IntFilter age, StringFilter country, BooleanFilter active, List<PersonFilterInput> and, List<PersonFilterInput> or) {
+        return new PersonFilterInput(null, and, or, null, name, null, age, null, null, active, country, null, null);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.graphql;
+
+import com.example.graphql.person.filter.PersonFilterInput;
+import com.example.graphql.person.model.Address;
+import com.example.graphql.person.model.Person;
+import com.example.graphql.person.repository.jpa.PersonRepository;
+import com.example.graphql.person.repository.search.PersonSearchRepository;
+import com.example.graphql.platform.filter.DateFilter;
+import com.example.graphql.platform.filter.IntFilter;
+import com.example.graphql.platform.filter.StringFilter;
+import com.example.graphql.platform.search.JpaSpecificationBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/** The database side of routed searches: what a filter selects in the person table must be what ES would find. */
+@SpringBootTest
+@Transactional
+class JpaSpecificationBuilderTest {
+
+    @Autowired
+    private JpaSpecificationBuilder specificationBuilder;
+
+    @Autowired
+    private PersonRepository personRepository;
+
+    @MockitoBean
+    private PersonSearchRepository personSearchRepository;
+
+    @MockitoBean
+    private com.example.graphql.publications.repository.search.PublicationSearchRepository publicationSearchRepository;
+
+    @MockitoBean
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @MockitoBean
+    private org.springframework.boot.CommandLineRunner commandLineRunner;
+
+    /** Ids of this test's persons: the table may hold rows of other tests. */
+    private final Set<Long> ids = new HashSet<>();
+
+    @BeforeEach
+    void setUp() {
+        person("Ada", 36, LocalDate.of(1989, 12, 10), address("US", "Austin"), address("DE", "Berlin"));
+        person("Bob", 25, LocalDate.of(2000, 1, 1), address("DE", "Austin"));
+        person("Cy", 41, LocalDate.of(1984, 5, 2));
+        person("100%_sure", 30, LocalDate.of(1995, 6, 15));
+        person("100Xsure", 30, LocalDate.of(1995, 6, 15));
+    }
+
+    @Test
+    void shouldMatchEachNestedClauseAgainstThePersonsOwnAddresses() {
+        // Two nested clauses may match different addresses of the same person, as two nested queries do
+        assertEquals(List.of("Ada"), names(new PersonFilterInput(null, null, null, null, null, null, null, null, null, null,
+                eq("US"), null, eq("Berlin"))));
+        // A person without addresses has none that matches: the exists is correlated to the person
+        assertEquals(List.of("Ada", "Bob"), names(new PersonFilterInput(null, null, null, null, null, null, null, null, null, null,
+                null, null, new StringFilter(null, null, null, null, List.of("Austin", "Berlin")))));
+    }
+
+    @Test
+    void shouldCombineNotAndOr() {
+        PersonFilterInput adaOrBob = new PersonFilterInput(null, null, List.of(name(eq("Ada")), name(eq("Bob"))), null,
+                null, null, null, null, null, null, null, null, null);
+        assertEquals(List.of("Ada", "Bob"), names(adaOrBob));
+        assertEquals(List.of("100%_sure", "100Xsure", "Cy"), names(new PersonFilterInput(null, null, null, adaOrBob,
+                null, null, null, null, null, null, null, null, null)));
+    }
+
+    @Test
+    void shouldTreatLikeMetacharactersAsLiterals() {
+        assertEquals(List.of("100%_sure"), names(name(new StringFilter(null, "0%_", null, null, null))));
+        assertEquals(List.of("100%_sure", "100Xsure"), names(name(new StringFilter(null, null, "100", null, null))));
+        assertEquals(List.of("100%_sure"), names(name(new StringFilter(null, null, "100%", null, null))));
+    }
+
+    @Test
+    void shouldMatchEndsWithThroughTheReversedSubfieldAsASuffix() {
+        assertEquals(List.of("100%_sure", "100Xsure"), names(name(new StringFilter(null, null, null, "sure", null))));
+        assertEquals(List.of("100%_sure"), names(name(new StringFilter(null, null, null, "_sure", null))));
+    }
+
+    @Test
+    void shouldConvertRangeBoundsToTheAttributeType() {
+        PersonFilterInput eighties = new PersonFilterInput(null, null, null, null, null, null, null, null,
+                new DateFilter(null, null, "1990-01-01", "1980-01-01", null), null, null, null, null);
+        assertEquals(List.of("Ada", "Cy"), names(eighties));
+        PersonFilterInput thirties = new PersonFilterInput(null, null, null, null, null, null,
+                new IntFilter(null, 29, null, null, 36), null, null, null, null, null, null);
+        assertEquals(List.of("100%_sure", "100Xsure", "Ada"), names(thirties));
+    }
+
+    @Test
+    void shouldMatchNothingForValuesNotOfTheAttributeType() {
+        assertEquals(List.of(), names(new PersonFilterInput(eq("abc"), null, null, null, null, null, null, null, null, null,
+                null, null, null)));
+        assertEquals(List.of(), names(new PersonFilterInput(null, null, null, null, null, null, null, null,
+                new DateFilter(null, null, null, "not-a-date", null), null, null, null, null)));
+        // Only the convertible ids of an in list are looked up
+        Long ada = personRepository.findAll(specificationBuilder.<Person>build(name(eq("Ada")))).stream()
+                .filter(p -> ids.contains(p.getId())).findFirst().orElseThrow().getId();
+        assertEquals(List.of("Ada"), names(new PersonFilterInput(new StringFilter(null, null, null, null, List.of("abc", ada.toString())),
+                null, null, null, null, null, null, null, null, null, null, null, null)));
+    }
+
+    private List<String> names(PersonFilterInput filter) {
+        return personRepository.findAll(specificationBuilder.<Person>build(filter)).stream()
+                .filter(p -> ids.contains(p.getId()))
+                .map(Person::getName)
+                .sorted()
+                .toList();
+    }
+
+    private static PersonFilterInput name(StringFilter name) {
+        return new PersonFilterInput(null, null, null, null, name, null, null, null, null, null, null, null, null);
+    }
+
+    private static StringFilter eq(String value) {
+        return new StringFilter(value, null, null, null, null);
+    }
+
+    private void person(String name, int age, LocalDate birthDate, Address... addresses) {
+        Person person = new Person(null, null, name, age, null, null, birthDate, true, null, new ArrayList<>());
+        for (Address address : addresses) {
+            address.setPerson(person);
+            person.getAddresses().add(address);
+        }
+        ids.add(personRepository.save(person).getId());
+    }
+
+    private static Address address(String country, String city) {
+        Address address = new Address();
+        address.setCountry(country);
+        address.setCity(city);
+        return address;
+    }
+}
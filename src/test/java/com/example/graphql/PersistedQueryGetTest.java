@@ -0,0 +1,145 @@
+package com.example.graphql;
+
+import com.example.graphql.person.repository.search.PersonSearchRepository;
+import com.example.graphql.platform.graphql.PersistedQueries;
+import com.example.graphql.platform.graphql.PersistedQueryGetFilter;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class PersistedQueryGetTest {
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private PersistedQueryGetFilter filter;
+
+    @MockitoBean
+    private PersonSearchRepository personSearchRepository;
+
+    @MockitoBean
+    private com.example.graphql.publications.repository.search.PublicationSearchRepository publicationSearchRepository;
+
+    @MockitoBean
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @MockitoBean
+    private org.springframework.boot.CommandLineRunner commandLineRunner;
+
+    @Test
+    void shouldCacheAHashOnlyGetOfAShippedQuery() throws Exception {
+        MvcResult result = perform(get("/graphql")
+                .param("variables", "{\"id\":\"-1\"}")
+                .param("extensions", persistedQuery(shippedHash("PersonById.graphql"))));
+
+        assertEquals(200, result.getResponse().getStatus());
+        assertTrue(result.getResponse().getContentAsString().contains("\"personById\":null"));
+        assertEquals("public, max-age=300", result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void shouldNotCacheAHashOnlyGetWhoseResultHasErrors() throws Exception {
+        // The required $id is missing: a validation error, which must not be served from a CDN
+        MvcResult result = perform(get("/graphql").param("extensions", persistedQuery(shippedHash("PersonById.graphql"))));
+
+        assertTrue(result.getResponse().getContentAsString().contains("\"errors\""));
+        assertNull(result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void shouldAnswerAnUnknownHashWithPersistedQueryNotFound() throws Exception {
+        MvcResult result = perform(get("/graphql").param("extensions", persistedQuery("0".repeat(64))));
+
+        assertTrue(result.getResponse().getContentAsString().contains("PersistedQueryNotFound"));
+        assertNull(result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void shouldRefuseAHashThatDoesNotMatchTheDocument() throws Exception {
+        MvcResult result = perform(get("/graphql")
+                .param("query", "{ searchPeople(text: \"x\") { totalElements } }")
+                .param("extensions", persistedQuery("f".repeat(64))));
+
+        assertTrue(result.getResponse().getContentAsString().contains("PersistedQueryIdInvalid"));
+        assertNull(result.getResponse().getHeader(HttpHeaders.CACHE_CONTROL));
+    }
+
+    @Test
+    void shouldRefuseAMutationOverGet() throws Exception {
+        MvcResult result = perform(get("/graphql").param("query", "mutation { createPerson(name: \"Over Get\", age: 30) { id } }"));
+
+        assertEquals(405, result.getResponse().getStatus());
+        assertEquals("POST", result.getResponse().getHeader(HttpHeaders.ALLOW));
+    }
+
+    @Test
+    void shouldHandTheBodyToAnAsyncReaderAtOnce() throws Exception {
+        MockHttpServletRequest get = new MockHttpServletRequest("GET", "/graphql");
+        get.setParameter("query", "{ searchPeople(text: \"x\") { totalElements } }");
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(get, new MockHttpServletResponse(), chain);
+
+        ServletInputStream in = chain.getRequest().getInputStream();
+        List<String> events = new ArrayList<>();
+        in.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws java.io.IOException {
+                events.add(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+
+            @Override
+            public void onAllDataRead() {
+                events.add("all data read");
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                events.add("error");
+            }
+        });
+
+        assertEquals(List.of("{\"query\":\"{ searchPeople(text: \\\"x\\\") { totalElements } }\"}", "all data read"), events);
+        assertTrue(in.isFinished());
+    }
+
+    /** The GraphQL handler answers asynchronously; the filter may answer right away. */
+    private MvcResult perform(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mvc.perform(request.accept(MediaType.APPLICATION_JSON)).andReturn();
+        return result.getRequest().isAsyncStarted() ? mvc.perform(asyncDispatch(result)).andReturn() : result;
+    }
+
+    private static String shippedHash(String file) throws Exception {
+        return PersistedQueries.sha256(new ClassPathResource("graphql-documents/persisted/" + file).getContentAsString(StandardCharsets.UTF_8));
+    }
+
+    private static String persistedQuery(String hash) {
+        return "{\"persistedQuery\":{\"version\":1,\"sha256Hash\":\"" + hash + "\"}}";
+    }
+}
@@ -4,7 +4,9 @@ import com.example.graphql.person.filter.PersonFilterInput;
 import com.example.graphql.person.filter.PersonSort;
 import com.example.graphql.person.model.Person;
 import com.example.graphql.person.service.PersonService;
+import com.example.graphql.platform.search.SearchCursor;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.graphql.tester.AutoConfigureGraphQlTester;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -18,9 +20,11 @@ import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @AutoConfigureGraphQlTester
@@ -54,7 +58,7 @@ class PersonGraphqlFacetTest {
             1
         );
 
-        when(personService.searchWithFacets(any(), any(), any())).thenReturn(mockResponse);
+        when(personService.searchWithFacets(any(), any(), any(), any())).thenReturn(mockResponse);
 
         String query = """
             query {
@@ -93,4 +97,65 @@ class PersonGraphqlFacetTest {
                 .path("searchPeople.stats.salary.sum").entity(Double.class).isEqualTo(500000.0)
                 .path("searchPeople.facets.byActive[0].value").entity(String.class).isEqualTo("true");
     }
+
+    @Test
+    void shouldOnlyRequestSelectedParts() {
+        PersonService.PersonSearchResponse mockResponse = new PersonService.PersonSearchResponse(
+            Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), null, null, 42, 5);
+        when(personService.searchWithFacets(any(), any(), any(), any())).thenReturn(mockResponse);
+
+        graphQlTester.document("query { searchPeople(text: \"John\") { totalElements totalPages } }")
+                .execute()
+                .path("searchPeople.totalElements").entity(Integer.class).isEqualTo(42);
+
+        ArgumentCaptor<PersonService.SearchSelection> selection = ArgumentCaptor.forClass(PersonService.SearchSelection.class);
+        verify(personService).searchWithFacets(any(), any(), any(), selection.capture());
+        assertTrue(selection.getValue().countOnly());
+    }
+
+    @Test
+    void shouldRequestMultiSelectFacets() {
+        PersonService.PersonSearchResponse mockResponse = new PersonService.PersonSearchResponse(
+            Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), Map.of("CA", 3L, "NY", 5L), null, null, 3, 1);
+        when(personService.searchWithFacets(any(), any(), any(), any())).thenReturn(mockResponse);
+
+        graphQlTester.document("""
+                query {
+                    searchPeople(filter: {addresses_state: {eq: "CA"}}, facetMode: MULTI_SELECT) {
+                        facets { byState { value count } }
+                    }
+                }
+            """)
+                .execute()
+                .path("searchPeople.facets.byState").entityList(Object.class).hasSize(2);
+
+        ArgumentCaptor<PersonService.SearchSelection> selection = ArgumentCaptor.forClass(PersonService.SearchSelection.class);
+        verify(personService).searchWithFacets(any(), any(), any(), selection.capture());
+        assertTrue(selection.getValue().multiSelectFacets());
+        assertTrue(selection.getValue().stateCounts());
+    }
+
+    @Test
+    void shouldPageWithCursors() {
+        Person person = new Person(7L, null, "Jane Smith", 25, null, null, null, true, null, Collections.emptyList());
+        PersonService.PersonSearchResponse mockResponse = new PersonService.PersonSearchResponse(
+            List.of(person), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), null, null, 3, 3,
+            List.of(List.<Object>of("Jane Smith", 7)), true);
+        when(personService.searchAfter(any(), any(), any(), eq(1), any(), any())).thenReturn(mockResponse);
+
+        String endCursor = graphQlTester.document("""
+                query {
+                    searchPeople(first: 1, sort: [{field: NAME}]) {
+                        edges { cursor node { name } }
+                        pageInfo { hasNextPage endCursor }
+                    }
+                }
+            """)
+                .execute()
+                .path("searchPeople.edges[0].node.name").entity(String.class).isEqualTo("Jane Smith")
+                .path("searchPeople.pageInfo.hasNextPage").entity(Boolean.class).isEqualTo(true)
+                .path("searchPeople.pageInfo.endCursor").entity(String.class).get();
+
+        assertEquals(List.of("Jane Smith", 7), SearchCursor.decode(endCursor));
+    }
 }
@@ -12,26 +12,39 @@ import org.springframework.graphql.test.tester.GraphQlTester;
 import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.SearchHit;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
 import org.springframework.data.elasticsearch.core.query.Query;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=com.example.graphql.RecordingStatementInspector")
 @AutoConfigureGraphQlTester
 class PersonGraphqlTest {
 
     @Autowired
     private GraphQlTester graphQlTester;
 
+    @Autowired
+    private com.example.graphql.platform.search.ElasticsearchHealth elasticsearchHealth;
+
+    @Autowired
+    private com.example.graphql.platform.indexing.outbox.SearchOutboxRepository outboxRepository;
+
     @MockitoBean
     private PersonSearchRepository personSearchRepository;
 
@@ -166,6 +179,115 @@ class PersonGraphqlTest {
                 });
     }
 
+    @Test
+    void shouldResolvePublicationAuthorsThroughDataLoaders() {
+        Person author = graphQlTester.document("""
+            mutation {
+                createPerson(name: "Loader Author", age: 50) {
+                    id
+                }
+            }
+        """).execute().path("createPerson").entity(Person.class).get();
+
+        graphQlTester.document(String.format("""
+            mutation {
+                addAddress(personId: "%s", street: "1 Loader Way", city: "Boston", state: "MA", zip: "02101") {
+                    id
+                }
+            }
+        """, author.getId())).execute().path("addAddress.id").hasValue();
+
+        String publicationId = graphQlTester.document("""
+            mutation {
+                createPublication(title: "Batched Loading", journalName: "Loader Journal") {
+                    id
+                }
+            }
+        """).execute().path("createPublication.id").entity(String.class).get();
+
+        graphQlTester.document(String.format("""
+            mutation {
+                addAuthorToPublication(publicationId: "%s", personId: "%s", rank: 1) {
+                    id
+                }
+            }
+        """, publicationId, author.getId())).execute().path("addAuthorToPublication.id").hasValue();
+        awaitEmptyOutbox();
+        RecordingStatementInspector.clear();
+
+        // Lazy authors, persons and addresses are loaded per level outside any JPA session
+        graphQlTester.document("""
+            query {
+                publications {
+                    title
+                    authors {
+                        rank
+                        person {
+                            name
+                            addresses {
+                                city
+                            }
+                        }
+                    }
+                }
+            }
+        """)
+                .execute()
+                .path("publications[?(@.title == 'Batched Loading')].authors[0].person.name")
+                .entityList(String.class)
+                .containsExactly("Loader Author")
+                .path("publications[?(@.title == 'Batched Loading')].authors[0].person.addresses[0].city")
+                .entityList(String.class)
+                .containsExactly("Boston");
+
+        // One statement per level, however many publications, authors and persons there are
+        List<String> statements = RecordingStatementInspector.statements();
+        assertEquals(4, statements.size(), () -> String.join("\n", statements));
+        assertEquals(1, statements.stream().filter(sql -> sql.contains(" from publication ")).count());
+        assertEquals(1, statements.stream().filter(sql -> sql.contains(" from publication_author ")).count());
+        assertEquals(1, statements.stream().filter(sql -> sql.contains(" from person ")).count());
+        assertEquals(1, statements.stream().filter(sql -> sql.contains(" from address ")).count());
+    }
+
+    /**
+     * Waits until the relay and the author propagation have processed every outbox entry, so that only the
+     * statements of the query under test are counted.
+     */
+    private void awaitEmptyOutbox() {
+        org.springframework.data.elasticsearch.core.query.ByQueryResponse updated = mock(org.springframework.data.elasticsearch.core.query.ByQueryResponse.class);
+        when(updated.getFailures()).thenReturn(List.of());
+        when(elasticsearchOperations.updateByQuery(any(), any())).thenReturn(updated);
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        while (outboxRepository.findAll().stream().anyMatch(entry -> entry.getDeadLetteredAt() == null)) {
+            assertTrue(System.nanoTime() < deadline, "outbox entries left");
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    @Test
+    void shouldIndexCommittedPersonThroughOutbox() {
+        String createMutation = """
+            mutation {
+                createPerson(name: "Outbox User", age: 33) {
+                    id
+                }
+            }
+        """;
+
+        graphQlTester.document(createMutation)
+                .execute()
+                .path("createPerson.id").hasValue();
+
+        // The relay picks the outbox entry up after commit and sends it through the bulk pipeline
+        verify(elasticsearchOperations, timeout(10_000).atLeastOnce())
+                .bulkIndex(anyList(), any(BulkOptions.class), any(IndexCoordinates.class));
+    }
+
     @Test
     void shouldSearchPeople() {
         // Mock Elasticsearch operations response
@@ -198,4 +320,278 @@ class PersonGraphqlTest {
                     assertEquals("Search Match", persons.get(0).getName());
                 });
     }
+
+    @Test
+    void shouldSendSiblingSearchFieldsAsOneMultiSearch() {
+        Person mockPerson = new Person(2L, null, "Panel Match", 35, null, null, null, null, null, Collections.emptyList());
+        SearchHit<Person> mockHit = mock(SearchHit.class);
+        when(mockHit.getContent()).thenReturn(mockPerson);
+        SearchHits<Person> usHits = mock(SearchHits.class);
+        when(usHits.stream()).thenAnswer(invocation -> Stream.of(mockHit));
+        SearchHits<Person> deHits = mock(SearchHits.class);
+        when(deHits.stream()).thenAnswer(invocation -> Stream.of(mockHit));
+
+        when(elasticsearchOperations.multiSearch(anyList(), anyList(), anyList())).thenReturn(List.<SearchHits<?>>of(usHits, deHits));
+
+        // Two dashboard panels in one document: one round trip to ES
+        graphQlTester.document("""
+            query {
+                us: searchPeople(text: "panel-us") { results { name } }
+                de: searchPeople(text: "panel-de") { results { name } }
+            }
+        """)
+                .execute()
+                .path("us.results[0].name").entity(String.class).isEqualTo("Panel Match")
+                .path("de.results[0].name").entity(String.class).isEqualTo("Panel Match");
+
+        verify(elasticsearchOperations, times(1)).multiSearch(anyList(), anyList(), anyList());
+    }
+
+    @Test
+    void shouldRejectSearchesOverTheLimitsBeforeCallingElasticsearch() {
+        graphQlTester.document("""
+            query {
+                searchPeople(size: 100000) { totalElements }
+            }
+        """)
+                .execute()
+                .errors()
+                .satisfy(errors -> {
+                    assertEquals(1, errors.size());
+                    assertEquals(org.springframework.graphql.execution.ErrorType.BAD_REQUEST, errors.get(0).getErrorType());
+                    assertEquals("page-size", errors.get(0).getExtensions().get("limit"));
+                });
+
+        verify(elasticsearchOperations, times(0)).multiSearch(anyList(), anyList(), anyList());
+        verify(elasticsearchOperations, times(0)).search(any(Query.class), any(Class.class));
+    }
+
+    @Test
+    void shouldRejectPagingArgumentsBelowTheirMinimum() {
+        graphQlTester.document("""
+            query {
+                negativePage: searchPeople(page: -1) { totalElements }
+                negativeSize: searchPeople(size: -5) { totalElements }
+                emptyCursorPage: searchPeople(first: 0) { totalElements }
+            }
+        """)
+                .execute()
+                .errors()
+                .satisfy(errors -> {
+                    assertEquals(3, errors.size());
+                    for (var error : errors) {
+                        assertEquals(org.springframework.graphql.execution.ErrorType.BAD_REQUEST, error.getErrorType());
+                    }
+                    assertEquals(List.of("page", "page-size", "page-size"),
+                            errors.stream().map(error -> error.getExtensions().get("limit")).sorted().toList());
+                });
+
+        verify(elasticsearchOperations, times(0)).multiSearch(anyList(), anyList(), anyList());
+    }
+
+    @Test
+    void shouldRejectInvalidCursorsAsBadRequests() {
+        // Not base64 JSON at all, and a valid cursor of a single sort value for a name sort (which has two: name and id)
+        graphQlTester.document(String.format("""
+            query {
+                garbage: searchPeople(first: 5, after: "not a cursor") { totalElements }
+                mismatched: searchPeople(first: 5, after: "%s", sort: [{ field: NAME, direction: ASC }]) { totalElements }
+            }
+        """, com.example.graphql.platform.search.SearchCursor.encode(List.of(42))))
+                .execute()
+                .errors()
+                .satisfy(errors -> {
+                    assertEquals(2, errors.size());
+                    for (var error : errors) {
+                        assertEquals(org.springframework.graphql.execution.ErrorType.BAD_REQUEST, error.getErrorType());
+                    }
+                });
+
+        verify(elasticsearchOperations, times(0)).multiSearch(anyList(), anyList(), anyList());
+    }
+
+    @Test
+    void shouldAnswerKeyLookupsFromTheDatabase() {
+        Long id = graphQlTester.document("""
+            mutation {
+                createPerson(name: "Key Lookup", age: 41) { id }
+            }
+        """).execute().path("createPerson.id").entity(Long.class).get();
+
+        graphQlTester.document(String.format("""
+            query {
+                searchPeople(filter: { id: { eq: "%s" }, name: { startsWith: "Key" }, age: { gte: 40 } }) {
+                    results { name }
+                    totalElements
+                }
+            }
+        """, id))
+                .execute()
+                .path("searchPeople.results[0].name").entity(String.class).isEqualTo("Key Lookup")
+                .path("searchPeople.totalElements").entity(Integer.class).isEqualTo(1);
+
+        verify(elasticsearchOperations, times(0)).multiSearch(anyList(), anyList(), anyList());
+        verify(elasticsearchOperations, times(0)).search(any(Query.class), any(Class.class));
+    }
+
+    @Test
+    void shouldAnswerFilteredSearchesFromTheDatabaseWhileElasticsearchIsDegraded() {
+        graphQlTester.document("""
+            mutation {
+                createPerson(name: "Degraded Route", age: 52) { id }
+            }
+        """).execute().path("createPerson.id").hasValue();
+        while (!elasticsearchHealth.degraded()) {
+            elasticsearchHealth.failure(new java.net.ConnectException("Connection refused"));
+        }
+        try {
+            graphQlTester.document("""
+                query {
+                    searchPeople(filter: { name: { eq: "Degraded Route" } }) { results { name } totalElements }
+                }
+            """)
+                    .execute()
+                    .path("searchPeople.results[0].name").entity(String.class).isEqualTo("Degraded Route")
+                    .path("searchPeople.totalElements").entity(Integer.class).isEqualTo(1);
+
+            verify(elasticsearchOperations, times(0)).search(any(Query.class), any(Class.class));
+        } finally {
+            elasticsearchHealth.success();
+        }
+    }
+
+    @Test
+    void shouldFallBackToTheDatabaseWhenElasticsearchShedsTheSearch() {
+        graphQlTester.document("""
+            mutation {
+                createPerson(name: "Shed Route", age: 53) { id }
+            }
+        """).execute().path("createPerson.id").hasValue();
+        when(elasticsearchOperations.search(any(Query.class), any(Class.class)))
+                .thenThrow(new com.example.graphql.platform.search.SearchOverloadedException("search", 20));
+        try {
+            graphQlTester.document("""
+                query {
+                    searchPeople(filter: { name: { eq: "Shed Route" } }) { results { name } totalElements }
+                }
+            """)
+                    .execute()
+                    .path("searchPeople.results[0].name").entity(String.class).isEqualTo("Shed Route")
+                    .path("searchPeople.totalElements").entity(Integer.class).isEqualTo(1);
+
+            verify(elasticsearchOperations, times(1)).search(any(Query.class), any(Class.class));
+        } finally {
+            elasticsearchHealth.success();
+        }
+    }
+
+    @Test
+    void shouldComputeMultiSelectFacetsUnderFilterAggregationsAndPostFilterTheHits() throws Exception {
+        SearchHits<Person> hits = mock(SearchHits.class);
+        when(hits.stream()).thenReturn(Stream.empty());
+        when(hits.getTotalHits()).thenReturn(20L);
+        when(hits.getAggregations()).thenReturn(recordedAggregations("person-search-multi-select.json"));
+        when(elasticsearchOperations.search(any(Query.class), eq(Person.class))).thenReturn(hits);
+
+        graphQlTester.document("""
+            query {
+                searchPeople(
+                    filter: { name: { startsWith: "Fac" }, isActive: { eq: true }, addresses_country: { eq: "US" } },
+                    facetMode: MULTI_SELECT
+                ) {
+                    totalElements
+                    facets { byActive { value count } byCountry { value count } byState { value count } }
+                    stats { age { min max count } }
+                }
+            }
+        """)
+                .execute()
+                .path("searchPeople.totalElements").entity(Integer.class).isEqualTo(20)
+                .path("searchPeople.facets.byActive").entityList(FacetBucketView.class)
+                .satisfies(buckets -> assertEquals(Set.of(new FacetBucketView("true", 20), new FacetBucketView("false", 10)), Set.copyOf(buckets)))
+                .path("searchPeople.facets.byCountry").entityList(FacetBucketView.class)
+                .satisfies(buckets -> assertEquals(Set.of(new FacetBucketView("US", 15), new FacetBucketView("DE", 10)), Set.copyOf(buckets)))
+                .path("searchPeople.facets.byState[0].value").entity(String.class).isEqualTo("CA")
+                .path("searchPeople.stats.age.max").entity(Double.class).isEqualTo(64.0)
+                .path("searchPeople.stats.age.count").entity(Integer.class).isEqualTo(20);
+
+        org.mockito.ArgumentCaptor<org.springframework.data.elasticsearch.client.elc.NativeQuery> searched =
+                org.mockito.ArgumentCaptor.forClass(org.springframework.data.elasticsearch.client.elc.NativeQuery.class);
+        verify(elasticsearchOperations).search(searched.capture(), eq(Person.class));
+        org.springframework.data.elasticsearch.client.elc.NativeQuery query = searched.getValue();
+        // The facet filters leave the query for the post_filter; the other filters stay
+        String main = String.valueOf(query.getQuery());
+        assertTrue(main.contains("name.keyword"));
+        assertFalse(main.contains("isActive"));
+        assertFalse(main.contains("addresses.country"));
+        String postFilter = String.valueOf(query.getFilter());
+        assertTrue(postFilter.contains("isActive") && postFilter.contains("addresses.country"));
+
+        // Each facet counts under all facet filters but its own; the stats see all of them
+        var aggregations = query.getAggregations();
+        assertEquals(Set.of("active_facet", "country_facet", "state_facet", "stats_facet"), aggregations.keySet());
+        String active = String.valueOf(aggregations.get("active_facet").filter());
+        assertFalse(active.contains("isActive"));
+        assertTrue(active.contains("addresses.country"));
+        String country = String.valueOf(aggregations.get("country_facet").filter());
+        assertTrue(country.contains("isActive"));
+        assertFalse(country.contains("addresses.country"));
+        String state = String.valueOf(aggregations.get("state_facet").filter());
+        assertTrue(state.contains("isActive") && state.contains("addresses.country"));
+        String stats = String.valueOf(aggregations.get("stats_facet").filter());
+        assertTrue(stats.contains("isActive") && stats.contains("addresses.country"));
+    }
+
+    @Test
+    void shouldOnlyReadTheSelectedLeavesFromTheSource() {
+        SearchHits<Person> hits = mock(SearchHits.class);
+        when(hits.stream()).thenReturn(Stream.empty());
+        when(elasticsearchOperations.search(any(Query.class), eq(Person.class))).thenReturn(hits);
+
+        graphQlTester.document("""
+            query {
+                searchPeople(text: "source-filter") {
+                    totalElements
+                    results { __typename name addresses { city } }
+                    edges { node { email } }
+                }
+            }
+        """).execute();
+
+        org.mockito.ArgumentCaptor<org.springframework.data.elasticsearch.client.elc.NativeQuery> searched =
+                org.mockito.ArgumentCaptor.forClass(org.springframework.data.elasticsearch.client.elc.NativeQuery.class);
+        verify(elasticsearchOperations).search(searched.capture(), eq(Person.class));
+        // Leaves under both document roots, as document paths; no object fields, no __typename, always the id
+        assertArrayEquals(new String[]{"addresses.city", "email", "id", "name"}, searched.getValue().getSourceFilter().getIncludes());
+    }
+
+    @Test
+    void shouldReadTheEmbeddedAuthorsOfPublicationsFromTheSourceOnlyWhenSelected() {
+        SearchHits<com.example.graphql.publications.model.Publication> hits = mock(SearchHits.class);
+        when(hits.stream()).thenAnswer(invocation -> Stream.empty());
+        when(elasticsearchOperations.search(any(Query.class), eq(com.example.graphql.publications.model.Publication.class))).thenReturn(hits);
+
+        graphQlTester.document("{ searchPublications(text: \"source-filter\") { title } }").execute();
+        graphQlTester.document("{ searchPublications(text: \"source-filter\") { title authors { rank person { name } } } }").execute();
+
+        org.mockito.ArgumentCaptor<org.springframework.data.elasticsearch.client.elc.NativeQuery> searched =
+                org.mockito.ArgumentCaptor.forClass(org.springframework.data.elasticsearch.client.elc.NativeQuery.class);
+        verify(elasticsearchOperations, times(2)).search(searched.capture(), eq(com.example.graphql.publications.model.Publication.class));
+        assertArrayEquals(new String[]{"id", "title"}, searched.getAllValues().get(0).getSourceFilter().getIncludes());
+        assertArrayEquals(new String[]{"authors.person.name", "authors.rank", "id", "title"},
+                searched.getAllValues().get(1).getSourceFilter().getIncludes());
+    }
+
+    record FacetBucketView(String value, int count) {}
+
+    /** A recorded response in the wire format the client reads ({@code typed_keys}), decoded like the application does. */
+    private static org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations recordedAggregations(String name) throws Exception {
+        co.elastic.clients.json.jackson.JacksonJsonpMapper mapper = new co.elastic.clients.json.jackson.JacksonJsonpMapper();
+        try (java.io.InputStream in = PersonGraphqlTest.class.getResourceAsStream("/fixtures/" + name);
+             jakarta.json.stream.JsonParser parser = mapper.jsonProvider().createParser(in)) {
+            var response = co.elastic.clients.elasticsearch.core.SearchResponse
+                    .createSearchResponseDeserializer(co.elastic.clients.json.JsonData._DESERIALIZER).deserialize(parser, mapper);
+            return new org.springframework.data.elasticsearch.client.elc.ElasticsearchAggregations(response.aggregations());
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package com.example.graphql;
+
+import com.example.graphql.person.filter.PersonFilterInput;
+import com.example.graphql.person.service.PersonSearchCache;
+import com.example.graphql.person.service.PersonService;
+import com.example.graphql.platform.filter.StringFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PersonSearchCacheTest {
+
+    private final PersonSearchCache cache = new PersonSearchCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(1));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void shouldShareEntryForEquivalentFilters() {
+        PersonFilterInput usa = byCountry("USA");
+        PersonFilterInput ny = byState("NY");
+
+        search("  John   DOE ", and(usa, ny));
+        search("john doe", and(ny, usa, ny));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldReloadAfterInvalidation() {
+        search("john", byCountry("USA"));
+        cache.invalidate();
+        search("john", byCountry("USA"));
+
+        assertEquals(2, loads.get());
+    }
+
+    private void search(String text, PersonFilterInput filter) {
+        cache.get(text, filter, PageRequest.of(0, 10), null, PersonService.SearchSelection.ALL, () -> {
+            loads.incrementAndGet();
+            return new PersonService.PersonSearchResponse(Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), null, null, 0, 0);
+        });
+    }
+
+    private static PersonFilterInput and(PersonFilterInput... filters) {
+        return new PersonFilterInput(null, List.of(filters), null, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    private static PersonFilterInput byCountry(String country) {
+        return new PersonFilterInput(null, null, null, null, null, null, null, null, null, null, new StringFilter(country, null, null, null, null), null, null);
+    }
+
+    private static PersonFilterInput byState(String state) {
+        return new PersonFilterInput(null, null, null, null, null, null, null, null, null, null, null, new StringFilter(state, null, null, null, null), null);
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.graphql;
+
+import com.example.graphql.person.model.Person;
+import com.example.graphql.person.repository.jpa.PersonRepository;
+import com.example.graphql.platform.indexing.SearchIndexer;
+import com.example.graphql.platform.indexing.outbox.SearchDocumentsIndexedEvent;
+import com.example.graphql.platform.indexing.outbox.SearchOutbox;
+import com.example.graphql.platform.indexing.outbox.SearchOutboxEntry;
+import com.example.graphql.platform.indexing.outbox.SearchOutboxRepository;
+import com.example.graphql.platform.search.ElasticsearchBulkheads;
+import com.example.graphql.publications.service.PublicationAuthorPropagator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.ByQueryResponse;
+import org.springframework.data.elasticsearch.core.query.UpdateQuery;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("unchecked")
+class PublicationAuthorPropagatorTest {
+
+    private final SearchOutbox searchOutbox = mock(SearchOutbox.class);
+    private final SearchOutboxRepository outboxRepository = mock(SearchOutboxRepository.class);
+    private final PersonRepository personRepository = mock(PersonRepository.class);
+    private final ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+    private final SearchIndexer searchIndexer = mock(SearchIndexer.class);
+    private final ByQueryResponse response = mock(ByQueryResponse.class);
+
+    /** The propagation entries of the outbox table, oldest first. */
+    private final List<SearchOutboxEntry> outbox = new ArrayList<>();
+
+    private final PublicationAuthorPropagator propagator = new PublicationAuthorPropagator(searchOutbox, outboxRepository, personRepository,
+            operations, new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext()), searchIndexer,
+            new ElasticsearchBulkheads(new SimpleMeterRegistry(), 20, 200, 10, 100, 4, 16),
+            mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 2, 3);
+
+    @BeforeEach
+    void setUp() {
+        when(outboxRepository.findOldest(anyCollection(), any(Pageable.class))).thenAnswer(i -> {
+            Collection<String> types = i.getArgument(0);
+            Pageable page = i.getArgument(1);
+            return outbox.stream().filter(e -> types.contains(e.getAggregateType())).limit(page.getPageSize()).toList();
+        });
+        doAnswer(i -> outbox.removeIf(e -> ((Collection<Long>) i.getArgument(0)).contains(e.getId())))
+                .when(outboxRepository).deleteAllByIdInBatch(any());
+        when(personRepository.findAllWithAddressesByIdIn(anyCollection())).thenAnswer(i -> ((Collection<Long>) i.getArgument(0)).stream()
+                .map(id -> new Person(id, null, "Author " + id, 40, null, null, null, true, null, new ArrayList<>()))
+                .toList());
+        when(operations.updateByQuery(any(UpdateQuery.class), any(IndexCoordinates.class))).thenReturn(response);
+        when(response.getFailures()).thenReturn(List.of());
+    }
+
+    @Test
+    void shouldRecordAnOutboxEntryForEveryIndexedPerson() {
+        propagator.onIndexed(new SearchDocumentsIndexedEvent("person", List.of(1L, 2L)));
+        propagator.onIndexed(new SearchDocumentsIndexedEvent("publication", List.of(3L)));
+
+        verify(searchOutbox).record(PublicationAuthorPropagator.AGGREGATE_TYPE, 1L);
+        verify(searchOutbox).record(PublicationAuthorPropagator.AGGREGATE_TYPE, 2L);
+        verify(searchOutbox, times(2)).record(any(), any());
+    }
+
+    @Test
+    void shouldReplaceTheEmbeddedCopiesInBatchesAndThenDeleteTheEntries() {
+        // Person 1 was edited twice: both of its entries go in the first batch, one update covers them
+        outbox.addAll(List.of(entry(1, 1), entry(2, 1), entry(3, 2), entry(4, 3)));
+
+        propagator.propagate();
+
+        ArgumentCaptor<UpdateQuery> updates = ArgumentCaptor.forClass(UpdateQuery.class);
+        verify(operations, times(2)).updateByQuery(updates.capture(), any(IndexCoordinates.class));
+        assertEquals(List.of("1"), List.copyOf(persons(updates.getAllValues().get(0)).keySet()));
+        assertEquals(List.of("2", "3"), persons(updates.getAllValues().get(1)).keySet().stream().sorted().toList());
+        assertTrue(outbox.isEmpty());
+
+        // The script looks each embedded person up by id in params.persons and swaps in the rendered document
+        UpdateQuery update = updates.getAllValues().get(1);
+        assertEquals("painless", update.getLang());
+        assertTrue(update.getScript().contains("params.persons[String.valueOf(author.person.id)]"));
+        assertTrue(update.getScript().contains("author.person = person"));
+        assertFalse(update.getAbortOnVersionConflict());
+        assertEquals("Author 2", ((Map<String, Object>) persons(update).get("2")).get("name"));
+    }
+
+    @Test
+    void shouldKeepTheEntriesWhenAPublicationWasRewrittenConcurrently() {
+        outbox.addAll(List.of(entry(1, 1), entry(2, 2), entry(3, 3)));
+        when(response.getVersionConflicts()).thenReturn(1L);
+
+        propagator.propagate();
+
+        // The round stops at the conflict; the entries are run again next round
+        verify(operations, times(1)).updateByQuery(any(UpdateQuery.class), any(IndexCoordinates.class));
+        verify(outboxRepository, never()).deleteAllByIdInBatch(any());
+        assertEquals(3, outbox.size());
+
+        when(response.getVersionConflicts()).thenReturn(0L);
+        propagator.propagate();
+        assertTrue(outbox.isEmpty());
+    }
+
+    @Test
+    void shouldReplayPersonsRenamedDuringAReindexOnceItsAliasIsSwapped() {
+        // A chunk holding the old copy of person 7 may still be bulk loaded into the target after the first update
+        IndexCoordinates live = IndexCoordinates.of("publication");
+        IndexCoordinates target = IndexCoordinates.of("publication-20261017093000");
+        when(searchIndexer.mirrorOf(any())).thenReturn(target);
+        doAnswer(i -> outbox.add(entry(100 + outbox.size(), i.getArgument(0), i.<Long>getArgument(1))))
+                .when(searchOutbox).record(any(), any());
+        outbox.add(entry(1, 7));
+
+        propagator.propagate();
+
+        verify(operations).updateByQuery(any(UpdateQuery.class), index(live));
+        verify(operations).updateByQuery(any(UpdateQuery.class), index(target));
+        assertEquals(List.of(PublicationAuthorPropagator.REPLAY_AGGREGATE_TYPE), outbox.stream().map(SearchOutboxEntry::getAggregateType).toList());
+
+        // Held back while the reindex is still loading
+        propagator.propagate();
+        verify(operations, times(2)).updateByQuery(any(UpdateQuery.class), any(IndexCoordinates.class));
+
+        // Mirroring stops after the swap: the alias now reaches the new index, which gets the current copy
+        when(searchIndexer.mirrorOf(any())).thenReturn(null);
+        propagator.propagate();
+
+        ArgumentCaptor<UpdateQuery> replay = ArgumentCaptor.forClass(UpdateQuery.class);
+        verify(operations, times(2)).updateByQuery(replay.capture(), index(live));
+        assertEquals(List.of("7"), List.copyOf(persons(replay.getValue()).keySet()));
+        assertTrue(outbox.isEmpty());
+    }
+
+    private static IndexCoordinates index(IndexCoordinates index) {
+        return argThat(c -> c != null && c.getIndexName().equals(index.getIndexName()));
+    }
+
+    private static SearchOutboxEntry entry(long id, long personId) {
+        return entry(id, PublicationAuthorPropagator.AGGREGATE_TYPE, personId);
+    }
+
+    private static SearchOutboxEntry entry(long id, String aggregateType, long personId) {
+        return new SearchOutboxEntry(id, aggregateType, personId, Instant.now(), 0, null, null);
+    }
+
+    private static Map<String, Object> persons(UpdateQuery update) {
+        return (Map<String, Object>) update.getParams().get("persons");
+    }
+}
@@ -0,0 +1,28 @@
+package com.example.graphql;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/** Records the SQL of every statement Hibernate prepares, for tests that count round trips to the database. */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private static final Queue<String> STATEMENTS = new ConcurrentLinkedQueue<>();
+
+    @Override
+    public String inspect(String sql) {
+        STATEMENTS.add(sql);
+        return sql;
+    }
+
+    public static void clear() {
+        STATEMENTS.clear();
+    }
+
+    /** The statements since the last {@link #clear()}, except the background polling of the search outbox. */
+    public static List<String> statements() {
+        return STATEMENTS.stream().filter(sql -> !sql.contains("search_outbox")).toList();
+    }
+}
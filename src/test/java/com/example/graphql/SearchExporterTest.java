@@ -0,0 +1,154 @@
+package com.example.graphql;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.ClosePointInTimeRequest;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeResponse;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
+import co.elastic.clients.util.ObjectBuilder;
+import com.example.graphql.platform.search.SearchExporter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings({"unchecked", "rawtypes"})
+class SearchExporterTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private final ElasticsearchClient client = mock(ElasticsearchClient.class);
+    private final SearchExporter exporter = new SearchExporter(client, new SimpleMeterRegistry(), 2, Duration.ofMinutes(1));
+
+    /** The documents of the index, in _shard_doc order. */
+    private final List<ObjectNode> documents = new ArrayList<>();
+    /** Every slice request the exporter sent. */
+    private final List<SearchRequest> requests = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        OpenPointInTimeResponse opened = mock(OpenPointInTimeResponse.class);
+        when(opened.id()).thenReturn("pit-0");
+        when(client.openPointInTime(any(Function.class))).thenReturn(opened);
+        // Serves the slice after the request's search_after position; every response hands out a new pit id
+        when(client.search(any(Function.class), eq(ObjectNode.class))).thenAnswer(invocation -> {
+            Function<SearchRequest.Builder, ObjectBuilder<SearchRequest>> fn = invocation.getArgument(0);
+            SearchRequest request = fn.apply(new SearchRequest.Builder()).build();
+            requests.add(request);
+            int from = request.searchAfter().isEmpty() ? 0 : (int) request.searchAfter().get(0).longValue() + 1;
+            List<Hit<ObjectNode>> hits = new ArrayList<>();
+            for (int i = from; i < Math.min(from + request.size(), documents.size()); i++) {
+                int position = i;
+                hits.add(Hit.of(h -> h.index("person").id(String.valueOf(position)).source(documents.get(position))
+                        .sort(FieldValue.of(position))));
+            }
+            SearchResponse<ObjectNode> response = mock(SearchResponse.class);
+            when(response.pitId()).thenReturn("pit-" + requests.size());
+            when(response.hits()).thenReturn(HitsMetadata.of(m -> m.hits(hits)));
+            return response;
+        });
+    }
+
+    @Test
+    void shouldContinueEachSliceAfterTheLastHitOfThePreviousOne() throws Exception {
+        for (int i = 0; i < 5; i++) documents.add(person("Person " + i));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(5, exporter.export("person", null, SearchExporter.Format.NDJSON, List.of(), out));
+
+        // Slices of 2, 2 and 1: the short one ends the export
+        assertEquals(3, requests.size());
+        assertEquals(List.of(), requests.get(0).searchAfter());
+        assertEquals(1L, requests.get(1).searchAfter().get(0).longValue());
+        assertEquals(3L, requests.get(2).searchAfter().get(0).longValue());
+        // Always with the latest point-in-time id
+        assertEquals("pit-0", requests.get(0).pit().id());
+        assertEquals("pit-2", requests.get(2).pit().id());
+        assertEquals("pit-3", closedPointInTime());
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("Person 4", JSON.readTree(lines[4]).get("name").asText());
+    }
+
+    @Test
+    void shouldStopAtAnEmptySliceWhenTheLastOneWasFull() throws Exception {
+        for (int i = 0; i < 4; i++) documents.add(person("Person " + i));
+
+        assertEquals(4, exporter.export("person", null, SearchExporter.Format.NDJSON, List.of(), new ByteArrayOutputStream()));
+
+        assertEquals(3, requests.size());
+        assertEquals(3L, requests.get(2).searchAfter().get(0).longValue());
+    }
+
+    @Test
+    void shouldCloseThePointInTimeWhenWritingFails() throws Exception {
+        for (int i = 0; i < 3; i++) documents.add(person("Person " + i));
+        OutputStream broken = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+
+        assertThrows(IOException.class, () -> exporter.export("person", null, SearchExporter.Format.NDJSON, List.of(), broken));
+
+        assertEquals(1, requests.size());
+        assertEquals("pit-1", closedPointInTime());
+    }
+
+    @Test
+    void shouldQuoteCsvValuesAndJoinTheValuesOfNestedObjects() throws Exception {
+        ObjectNode quoted = person("Doe, \"JD\" John");
+        quoted.putArray("addresses").add(JSON.createObjectNode().put("city", "Berlin")).add(JSON.createObjectNode().put("city", "Paris"));
+        documents.add(quoted);
+        ObjectNode plain = person("Ann");
+        plain.put("email", "ann@example.com");
+        documents.add(plain);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        exporter.export("person", null, SearchExporter.Format.CSV, List.of("name", "email", "addresses.city"), out);
+
+        assertEquals("""
+                name,email,addresses.city
+                "Doe, ""JD"" John",,Berlin|Paris
+                Ann,ann@example.com,
+                """, out.toString(StandardCharsets.UTF_8));
+        // Only the columns are fetched
+        assertEquals(List.of("name", "email", "addresses.city"), requests.get(0).source().filter().includes());
+        assertNull(requests.get(0).query());
+    }
+
+    private String closedPointInTime() throws IOException {
+        ArgumentCaptor<Function> close = ArgumentCaptor.forClass(Function.class);
+        verify(client).closePointInTime(close.capture());
+        return ((ObjectBuilder<ClosePointInTimeRequest>) close.getValue().apply(new ClosePointInTimeRequest.Builder())).build().id();
+    }
+
+    private static ObjectNode person(String name) {
+        return JSON.createObjectNode().put("name", name);
+    }
+}
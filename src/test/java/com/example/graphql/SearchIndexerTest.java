@@ -0,0 +1,118 @@
+package com.example.graphql;
+
+import com.example.graphql.person.model.Person;
+import com.example.graphql.platform.indexing.SearchDocumentRejectedException;
+import com.example.graphql.platform.indexing.SearchIndexer;
+import com.example.graphql.platform.search.ElasticsearchBulkheads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.elasticsearch.BulkFailureException;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SearchIndexerTest {
+
+    private final ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+    private final SearchIndexer indexer = new SearchIndexer(
+            operations,
+            new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext()),
+            new SimpleMeterRegistry(),
+            new ElasticsearchBulkheads(new SimpleMeterRegistry(), 20, 200, 10, 100, 4, 16),
+            100, 50, Duration.ofMillis(500), 2, Duration.ofSeconds(1), 2, Duration.ofMillis(10));
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        indexer.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldCoalesceUpdatesOfTheSameDocumentIntoOneBulkRequest() throws Exception {
+        Person first = new Person(1L, null, "Old Name", 30, null, null, null, true, null, new ArrayList<>());
+        Person second = new Person(1L, null, "New Name", 31, null, null, null, true, null, new ArrayList<>());
+        Person other = new Person(2L, null, "Other", 40, null, null, null, true, null, new ArrayList<>());
+
+        CompletableFuture<Void> a = indexer.index(first);
+        CompletableFuture<Void> b = indexer.index(second);
+        CompletableFuture<Void> c = indexer.index(other);
+        CompletableFuture.allOf(a, b, c).get(5, TimeUnit.SECONDS);
+
+        ArgumentCaptor<List<IndexQuery>> queries = ArgumentCaptor.forClass(List.class);
+        verify(operations, times(1)).bulkIndex(queries.capture(), any(BulkOptions.class), any(IndexCoordinates.class));
+        assertEquals(2, queries.getValue().size());
+        assertTrue(queries.getValue().get(0).getSource().contains("New Name"));
+        assertEquals(0, indexer.queueDepth());
+    }
+
+    @Test
+    void shouldAcknowledgeTheDocumentsOfABulkRequestOneByOne() throws Exception {
+        when(operations.bulkIndex(any(List.class), any(BulkOptions.class), any(IndexCoordinates.class)))
+                .thenThrow(new BulkFailureException("1 failure", Map.of("2", new BulkFailureException.FailureDetails(400, "mapper_parsing_exception"))));
+
+        CompletableFuture<Void> good = indexer.index(new Person(1L, null, "Good", 30, null, null, null, true, null, new ArrayList<>()));
+        CompletableFuture<Void> bad = indexer.index(new Person(2L, null, "Bad", 30, null, null, null, true, null, new ArrayList<>()));
+
+        good.get(5, TimeUnit.SECONDS);
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        SearchDocumentRejectedException rejected = assertInstanceOf(SearchDocumentRejectedException.class, failure.getCause());
+        assertEquals("2", rejected.documentId());
+        // Refused for what it is, not for load: not retried
+        verify(operations, times(1)).bulkIndex(any(List.class), any(BulkOptions.class), any(IndexCoordinates.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void shouldSendBatchesConcurrentlyButNeverTheSameDocumentTwiceAtOnce() throws Exception {
+        CountDownLatch firstBatchWaits = new CountDownLatch(1);
+        List<List<String>> sent = new CopyOnWriteArrayList<>();
+        when(operations.bulkIndex(any(List.class), any(BulkOptions.class), any(IndexCoordinates.class))).thenAnswer(i -> {
+            List<String> ids = ((List<IndexQuery>) i.getArgument(0)).stream().map(IndexQuery::getId).toList();
+            sent.add(ids);
+            // Like wait_until: the first request only returns once the test lets it
+            if (sent.size() == 1) firstBatchWaits.await(5, TimeUnit.SECONDS);
+            return List.of();
+        });
+
+        CompletableFuture<Void> first = indexer.index(new Person(1L, null, "Old Name", 30, null, null, null, true, null, new ArrayList<>()));
+        verify(operations, timeout(2000)).bulkIndex(any(List.class), any(BulkOptions.class), any(IndexCoordinates.class));
+        CompletableFuture<Void> newer = indexer.index(new Person(1L, null, "New Name", 31, null, null, null, true, null, new ArrayList<>()));
+        CompletableFuture<Void> other = indexer.index(new Person(2L, null, "Other", 40, null, null, null, true, null, new ArrayList<>()));
+
+        // Person 2 goes out while the first request is still waiting; the newer snapshot of person 1 does not
+        other.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of("1"), List.of("2")), sent);
+        assertFalse(first.isDone());
+
+        firstBatchWaits.countDown();
+        CompletableFuture.allOf(first, newer).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(List.of("1"), List.of("2"), List.of("1")), sent);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.graphql;
+
+import com.example.graphql.person.model.Person;
+import com.example.graphql.publications.model.Publication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.elasticsearch.annotations.Setting;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.index.MappingBuilder;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** ES refuses to create an index whose mapping names an analyzer its settings do not define. */
+class SearchMappingTest {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final Set<String> BUILT_IN = Set.of("standard", "simple", "whitespace", "keyword", "stop", "pattern");
+
+    private final MappingBuilder mappingBuilder = new MappingBuilder(
+            new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext()));
+
+    @Test
+    void shouldDefineEveryAnalyzerOfThePersonMapping() throws Exception {
+        assertEquals(Set.of("reversed_keyword", "trigram"), customAnalyzers(Person.class));
+        assertAnalyzersDefined(Person.class);
+    }
+
+    @Test
+    void shouldDefineTheAnalyzersOfTheEmbeddedAuthorCopies() throws Exception {
+        JsonNode author = JSON.readTree(mappingBuilder.buildPropertyMapping(Publication.class))
+                .at("/properties/authors/properties/person/properties/name/fields/ngram");
+        assertEquals("trigram", author.path("analyzer").asText());
+        assertAnalyzersDefined(Publication.class);
+    }
+
+    private void assertAnalyzersDefined(Class<?> document) throws Exception {
+        Setting setting = document.getAnnotation(Setting.class);
+        assertNotNull(setting, document.getSimpleName() + " has no index settings");
+        JsonNode settings = JSON.readTree(new ClassPathResource(setting.settingPath()).getContentAsString(StandardCharsets.UTF_8));
+        for (String analyzer : customAnalyzers(document)) {
+            assertTrue(settings.path("analysis").path("analyzer").has(analyzer),
+                    "analyzer [" + analyzer + "] of " + document.getSimpleName() + " has not been configured");
+        }
+    }
+
+    private Set<String> customAnalyzers(Class<?> document) throws Exception {
+        Set<String> analyzers = new TreeSet<>();
+        collectAnalyzers(JSON.readTree(mappingBuilder.buildPropertyMapping(document)), analyzers);
+        analyzers.removeAll(BUILT_IN);
+        return analyzers;
+    }
+
+    private static void collectAnalyzers(JsonNode node, Set<String> analyzers) {
+        node.fields().forEachRemaining(field -> {
+            if ((field.getKey().equals("analyzer") || field.getKey().equals("search_analyzer")) && field.getValue().isTextual()) {
+                analyzers.add(field.getValue().asText());
+            } else if (field.getValue().isObject()) {
+                collectAnalyzers(field.getValue(), analyzers);
+            }
+        });
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.graphql;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.GetAliasResponse;
+import co.elastic.clients.elasticsearch.indices.UpdateAliasesRequest;
+import co.elastic.clients.elasticsearch.indices.get_alias.IndexAliases;
+import co.elastic.clients.elasticsearch.indices.update_aliases.Action;
+import co.elastic.clients.transport.endpoints.BooleanResponse;
+import co.elastic.clients.util.ObjectBuilder;
+import com.example.graphql.person.model.Person;
+import com.example.graphql.platform.indexing.SearchIndexer;
+import com.example.graphql.platform.indexing.outbox.SearchDocumentSource;
+import com.example.graphql.platform.indexing.reindex.ReindexPartition;
+import com.example.graphql.platform.indexing.reindex.ReindexPartitionRepository;
+import com.example.graphql.platform.indexing.reindex.SearchReindexer;
+import com.example.graphql.platform.search.ConcurrencyLimiter;
+import com.example.graphql.platform.search.ElasticsearchBulkheads;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.IndexOperations;
+import org.springframework.data.elasticsearch.core.convert.MappingElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.index.Settings;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+import org.springframework.data.elasticsearch.core.mapping.SimpleElasticsearchMappingContext;
+import org.springframework.data.elasticsearch.core.query.BulkOptions;
+import org.springframework.data.elasticsearch.core.query.IndexQuery;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings({"unchecked", "rawtypes"})
+class SearchReindexerTest {
+
+    private static final long MAX_ID = 10;
+
+    private final SearchDocumentSource source = mock(SearchDocumentSource.class);
+    private final ReindexPartitionRepository partitionRepository = mock(ReindexPartitionRepository.class);
+    private final SearchIndexer searchIndexer = mock(SearchIndexer.class);
+    private final ElasticsearchOperations operations = mock(ElasticsearchOperations.class);
+    private final IndexOperations entityIndex = mock(IndexOperations.class);
+    private final IndexOperations targetIndex = mock(IndexOperations.class);
+    private final ElasticsearchClient client = mock(ElasticsearchClient.class);
+    private final ElasticsearchIndicesClient indices = mock(ElasticsearchIndicesClient.class);
+    /** A single indexing permit, so a test can hold it. */
+    private final ElasticsearchBulkheads bulkheads = new ElasticsearchBulkheads(new SimpleMeterRegistry(), 20, 200, 10, 100, 1, 1);
+
+    /** The checkpoint table. */
+    private final List<ReindexPartition> stored = new ArrayList<>();
+    /** Ids of every document bulk loaded, in any order. */
+    private final Queue<String> loaded = new ConcurrentLinkedQueue<>();
+
+    private SearchReindexer reindexer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(source.aggregateType()).thenReturn("person");
+        doReturn(Person.class).when(source).documentType();
+        when(source.maxId()).thenReturn(MAX_ID);
+        when(source.idsAfter(anyLong(), anyLong(), anyInt())).thenAnswer(i -> {
+            long after = i.getArgument(0);
+            long upTo = Math.min(i.<Long>getArgument(1), MAX_ID);
+            return LongStream.rangeClosed(after + 1, upTo).limit(i.<Integer>getArgument(2)).boxed().toList();
+        });
+        when(source.loadForIndexing(any())).thenAnswer(i -> ((Collection<Long>) i.getArgument(0)).stream()
+                .map(id -> new Person(id, null, "Person " + id, 30, null, null, null, true, null, new ArrayList<>()))
+                .toList());
+
+        when(partitionRepository.findByAggregateTypeOrderByPartitionNo("person")).thenAnswer(i -> List.copyOf(stored));
+        when(partitionRepository.saveAll(any())).thenAnswer(i -> {
+            List<ReindexPartition> saved = new ArrayList<>((Collection<ReindexPartition>) i.getArgument(0));
+            stored.addAll(saved);
+            return saved;
+        });
+        when(partitionRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        doAnswer(i -> stored.removeAll((Collection<?>) i.getArgument(0))).when(partitionRepository).deleteAllInBatch(any());
+
+        when(operations.indexOps(Person.class)).thenReturn(entityIndex);
+        when(operations.indexOps(any(IndexCoordinates.class))).thenReturn(targetIndex);
+        when(entityIndex.createSettings()).thenReturn(new Settings());
+        when(entityIndex.createMapping()).thenReturn(Document.create());
+        when(targetIndex.exists()).thenReturn(true);
+        when(operations.bulkIndex(any(List.class), any(BulkOptions.class), any(IndexCoordinates.class))).thenAnswer(i -> {
+            for (IndexQuery query : (List<IndexQuery>) i.getArgument(0)) {
+                assertEquals(IndexQuery.OpType.CREATE, query.getOpType());
+                loaded.add(query.getId());
+            }
+            return List.of();
+        });
+
+        when(client.indices()).thenReturn(indices);
+        when(indices.existsAlias(any(Function.class))).thenReturn(new BooleanResponse(false));
+        when(indices.exists(any(Function.class))).thenReturn(new BooleanResponse(true));
+
+        reindexer = new SearchReindexer(List.of(source), partitionRepository, searchIndexer, operations, client, bulkheads,
+                new MappingElasticsearchConverter(new SimpleElasticsearchMappingContext()), mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), 2, 3);
+    }
+
+    @Test
+    void shouldMirrorBeforeFixingTheIdRangeAndLoadEveryPartition() throws Exception {
+        assertEquals("COMPLETED", runToEnd().state());
+
+        // Two partitions (0, 5] and (5, 10] in chunks of 3: every id exactly once
+        assertEquals(LongStream.rangeClosed(1, MAX_ID).mapToObj(String::valueOf).sorted().toList(), loaded.stream().sorted().toList());
+        InOrder order = inOrder(searchIndexer, source);
+        order.verify(searchIndexer).startMirroring(argThat(alias -> alias.getIndexName().equals("person")), any());
+        order.verify(source).maxId();
+        verify(searchIndexer).stopMirroring(argThat(alias -> alias.getIndexName().equals("person")));
+        assertTrue(stored.isEmpty(), "checkpoints are removed once the alias is swapped");
+
+        // First run: "person" is still the auto-created concrete index, replaced by the alias in the same call
+        List<Action> actions = aliasActions();
+        assertEquals(2, actions.size());
+        assertEquals("person", actions.get(0).removeIndex().index());
+        assertTrue(actions.get(1).add().index().startsWith("person-"));
+        assertEquals("person", actions.get(1).add().alias());
+        verify(indices, never()).delete(any(Function.class));
+    }
+
+    @Test
+    void shouldResumeFromTheCheckpointsAndMoveTheAlias() throws Exception {
+        Instant now = Instant.now();
+        stored.add(new ReindexPartition(1L, "person", "person-20260101000000", 0, 0, 5, 5, 5, true, now));
+        stored.add(new ReindexPartition(2L, "person", "person-20260101000000", 1, 5, 10, 7, 2, false, now));
+        GetAliasResponse current = mock(GetAliasResponse.class);
+        when(current.result()).thenReturn(Map.of("person-20250101000000", mock(IndexAliases.class)));
+        when(indices.existsAlias(any(Function.class))).thenReturn(new BooleanResponse(true));
+        when(indices.getAlias(any(Function.class))).thenReturn(current);
+
+        assertEquals("COMPLETED", runToEnd().state());
+
+        // Only what the checkpoints did not cover, into the same index
+        assertEquals(List.of("10", "8", "9"), loaded.stream().sorted().toList());
+        verify(targetIndex, never()).create(any(), any());
+        verify(source, never()).maxId();
+
+        List<Action> actions = aliasActions();
+        assertEquals(2, actions.size());
+        assertEquals("person-20250101000000", actions.get(0).remove().index());
+        assertEquals("person-20260101000000", actions.get(1).add().index());
+        verify(indices, times(1)).delete(any(Function.class));
+    }
+
+    @Test
+    void shouldStopMirroringAndDropTheTargetWhenARunFails() throws Exception {
+        when(operations.bulkIndex(any(List.class), any(BulkOptions.class), any(IndexCoordinates.class)))
+                .thenThrow(new IllegalStateException("cluster unavailable"));
+
+        SearchReindexer.ReindexStatus status = runToEnd();
+
+        assertEquals("FAILED", status.state());
+        verify(searchIndexer).stopMirroring(argThat(alias -> alias.getIndexName().equals("person")));
+        verify(targetIndex).delete();
+        verify(indices, never()).updateAliases(any(Function.class));
+        assertTrue(stored.isEmpty(), "a failed run is not resumed");
+    }
+
+    @Test
+    void shouldWaitForAPermitOfTheIndexingBulkheadInsteadOfFailing() throws Exception {
+        // A live write holds the only permit: every chunk is shed until it is released
+        ConcurrencyLimiter.Permit liveWrite = bulkheads.indexing().acquire();
+        reindexer.start("person");
+        Thread.sleep(500);
+        assertTrue(loaded.isEmpty(), "no chunk may be sent around the bulkhead");
+        assertEquals("RUNNING", reindexer.status("person").state());
+
+        liveWrite.success();
+
+        assertEquals("COMPLETED", runToEnd().state());
+        assertEquals(LongStream.rangeClosed(1, MAX_ID).mapToObj(String::valueOf).sorted().toList(), loaded.stream().sorted().toList());
+    }
+
+    private SearchReindexer.ReindexStatus runToEnd() throws InterruptedException {
+        reindexer.start("person");
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        SearchReindexer.ReindexStatus status = reindexer.status("person");
+        while (!status.state().equals("COMPLETED") && !status.state().equals("FAILED") && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            status = reindexer.status("person");
+        }
+        return status;
+    }
+
+    private List<Action> aliasActions() throws Exception {
+        ArgumentCaptor<Function> update = ArgumentCaptor.forClass(Function.class);
+        verify(indices).updateAliases(update.capture());
+        ObjectBuilder<UpdateAliasesRequest> request = (ObjectBuilder<UpdateAliasesRequest>) update.getValue().apply(new UpdateAliasesRequest.Builder());
+        return request.build().actions();
+    }
+}
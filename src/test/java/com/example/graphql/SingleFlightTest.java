@@ -0,0 +1,90 @@
+package com.example.graphql;
+
+import com.example.graphql.platform.search.SingleFlight;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldShareOneCallBetweenConcurrentIdenticalRequests() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>("test", Duration.ofSeconds(5), meterRegistry, () -> {});
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = executor.submit(() -> flights.execute("q", () -> {
+                loads.incrementAndGet();
+                leaderStarted.countDown();
+                await(release);
+                return "result";
+            }));
+            leaderStarted.await(5, TimeUnit.SECONDS);
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                followers.add(executor.submit(() -> flights.execute("q", () -> {
+                    loads.incrementAndGet();
+                    return "own";
+                })));
+            }
+            // Followers are parked on the leader's future once they are counted
+            while (meterRegistry.get("search.singleflight.calls").tag("role", "coalesced").counter().count() < 10) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            assertEquals("result", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> follower : followers) {
+                assertEquals("result", follower.get(5, TimeUnit.SECONDS));
+            }
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldTimeOutWaitersAndFreeTheKey() throws Exception {
+        SingleFlight<String, String> flights = new SingleFlight<>("test", Duration.ofMillis(50), meterRegistry, () -> {});
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            executor.submit(() -> flights.execute("q", () -> {
+                leaderStarted.countDown();
+                await(release);
+                return "stuck";
+            }));
+            leaderStarted.await(5, TimeUnit.SECONDS);
+
+            assertThrows(IllegalStateException.class, () -> flights.execute("q", () -> "own"));
+            // The stuck call no longer owns the key
+            assertEquals("fresh", flights.execute("q", () -> "fresh"));
+            release.countDown();
+        }
+        assertEquals(1.0, meterRegistry.get("search.singleflight.timeouts").counter().count());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}